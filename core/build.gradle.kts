@@ -1,3 +1,48 @@
 plugins {
     id("tel.schich.javacan.convention.native")
 }
+
+// The socket IO is bound through the foreign function interface on JDK 22+, see SocketIO. The classes are compiled
+// against the main classes and packaged as a multi-release jar, older JDKs keep using the JNI implementation.
+val java22 by sourceSets.registering {
+    java.srcDir("src/main/java22")
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+}
+
+val java22Toolchain = javaToolchains.compilerFor {
+    vendor = JvmVendorSpec.ADOPTIUM
+    languageVersion = JavaLanguageVersion.of(22)
+}
+
+tasks.named<JavaCompile>(java22.get().compileJavaTaskName) {
+    javaCompiler = java22Toolchain
+    options.release = 22
+}
+
+tasks.jar {
+    into("META-INF/versions/22") {
+        from(java22.map { it.output })
+    }
+    manifest {
+        attributes("Multi-Release" to "true")
+    }
+}
+
+val testForeign by tasks.registering(Test::class) {
+    description = "Runs the tests on JDK 22 with the socket IO bound through the foreign function interface."
+    group = LifecycleBasePlugin.VERIFICATION_GROUP
+    useJUnitPlatform()
+    javaLauncher = javaToolchains.launcherFor {
+        vendor = JvmVendorSpec.ADOPTIUM
+        languageVersion = JavaLanguageVersion.of(22)
+    }
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    // the versioned classes have to come first to replace their JNI counterparts on the class path
+    classpath = files(java22.map { it.output }) + sourceSets.test.get().runtimeClasspath
+    jvmArgs("--enable-native-access=ALL-UNNAMED")
+    systemProperty("javacan.test.foreign-socket-io", "true")
+}
+
+tasks.check {
+    dependsOn(testForeign)
+}
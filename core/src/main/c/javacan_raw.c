@@ -20,9 +20,11 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
  * THE SOFTWARE.
  */
+#define _GNU_SOURCE
 #include "common.h"
 #include <linux/can.h>
 #include <linux/can/raw.h>
+#include <linux/filter.h>
 #include <asm/socket.h>
 #include <string.h>
 #include <stdlib.h>
@@ -30,6 +32,8 @@
 #include <stddef.h>
 
 #define GET_FILTERS_DEFAULT_AMOUNT 10
+#define CONTROL_BUFFER_SIZE 200
+#define BATCH_MAX_SIZE 64
 
 inline int create_can_raw_socket() {
     return socket(PF_CAN, SOCK_RAW, CAN_RAW);
@@ -86,6 +90,42 @@ JNIEXPORT jobject JNICALL Java_tel_schich_javacan_SocketCAN_getFilters(JNIEnv *e
     return (*env)->NewDirectByteBuffer(env, filters, size);
 }
 
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_SocketCAN_attachBpfFilter(JNIEnv *env, jclass clazz, jint sock, jobject data, jint length) {
+    struct sock_fprog program = {
+        .len = (unsigned short) length,
+        .filter = (*env)->GetDirectBufferAddress(env, data),
+    };
+    int result = setsockopt(sock, SOL_SOCKET, SO_ATTACH_FILTER, &program, sizeof(program));
+    if (result == -1) {
+        throw_native_exception(env, "Unable to attach the BPF filter");
+    }
+    return result;
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_SocketCAN_detachBpfFilter(JNIEnv *env, jclass clazz, jint sock) {
+    int unused = 0;
+    int result = setsockopt(sock, SOL_SOCKET, SO_DETACH_FILTER, &unused, sizeof(unused));
+    if (result == -1) {
+        if (errno == ENOENT) {
+            // no filter has been attached
+            return 0;
+        }
+        throw_native_exception(env, "Unable to detach the BPF filter");
+    }
+    return result;
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_SocketCAN_getBpfFilter(JNIEnv *env, jclass clazz, jint sock, jobject data, jint maxLength) {
+    // for SO_GET_FILTER the length is given in instructions, a length of 0 only queries the program length
+    socklen_t length = (socklen_t) maxLength;
+    void *filter = data == NULL ? NULL : (*env)->GetDirectBufferAddress(env, data);
+    if (getsockopt(sock, SOL_SOCKET, SO_GET_FILTER, filter, &length) == -1) {
+        throw_native_exception(env, "Unable to get the BPF filter");
+        return -1;
+    }
+    return (jint) length;
+}
+
 JNIEXPORT jint JNICALL Java_tel_schich_javacan_SocketCAN_setLoopback(JNIEnv *env, jclass clazz, jint sock, jboolean enable) {
     jint result = set_boolean_opt(sock, SOL_CAN_RAW, CAN_RAW_LOOPBACK, enable);
     if (result == -1) {
@@ -180,10 +220,28 @@ struct raw_message_header_buffer {
     jlong hardware_timestamp_nanos;
 };
 
+static void parse_raw_message_headers(struct msghdr *header, struct raw_message_header_buffer *header_buffer) {
+    for (struct cmsghdr *cmsg = CMSG_FIRSTHDR(header); cmsg; cmsg = CMSG_NXTHDR(header, cmsg)) {
+        if (cmsg->cmsg_level == SOL_SOCKET) {
+            if (cmsg->cmsg_type == SO_RXQ_OVFL) {
+                memcpy(&header_buffer->drop_count, CMSG_DATA(cmsg), sizeof(__u32));
+            } else {
+                parse_timestamp(
+                    cmsg,
+                    &header_buffer->software_timestamp_seconds,
+                    &header_buffer->software_timestamp_nanos,
+                    &header_buffer->hardware_timestamp_seconds,
+                    &header_buffer->hardware_timestamp_nanos
+                );
+            }
+        }
+    }
+}
+
 JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_receiveWithRawHeaders(JNIEnv *env, jclass clazz, jint sock, jobject buffer, jint offset, jint len, jint flags, jobject headerBuffer, jint headerOffset) {
     void *raw_buf = (*env)->GetDirectBufferAddress(env, buffer);
     void *buf = raw_buf + offset;
-    char control[200];
+    char control[CONTROL_BUFFER_SIZE];
 
     void *raw_header_buf = (*env)->GetDirectBufferAddress(env, headerBuffer);
     struct raw_message_header_buffer* header_buffer = (struct raw_message_header_buffer*) (raw_header_buf + headerOffset);
@@ -210,23 +268,91 @@ JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_receiveWithRawHeaders(
         return bytes_received;
     }
 
-    for (struct cmsghdr *cmsg = CMSG_FIRSTHDR(&header); cmsg; cmsg = CMSG_NXTHDR(&header, cmsg)) {
-        if (cmsg->cmsg_level == SOL_SOCKET) {
-            if (cmsg->cmsg_type == SO_RXQ_OVFL) {
-                memcpy(&header_buffer->drop_count, CMSG_DATA(cmsg), sizeof(__u32));
-            } else {
-                parse_timestamp(
-                    cmsg,
-                    &header_buffer->software_timestamp_seconds,
-                    &header_buffer->software_timestamp_nanos,
-                    &header_buffer->hardware_timestamp_seconds,
-                    &header_buffer->hardware_timestamp_nanos
-                );
-            }
+    parse_raw_message_headers(&header, header_buffer);
+
+    return bytes_received;
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_SocketCAN_receiveBatchWithRawHeaders(JNIEnv *env, jclass clazz, jint sock, jobject buffer, jint offset, jint frameStride, jint count, jint flags, jintArray frameLengths, jobject headerBuffer, jint headerOffset) {
+    if (count <= 0) {
+        return 0;
+    }
+    if (count > BATCH_MAX_SIZE) {
+        count = BATCH_MAX_SIZE;
+    }
+
+    void *raw_buf = (*env)->GetDirectBufferAddress(env, buffer);
+    struct raw_message_header_buffer* header_buffers = NULL;
+    if (headerBuffer != NULL) {
+        void *raw_header_buf = (*env)->GetDirectBufferAddress(env, headerBuffer);
+        header_buffers = (struct raw_message_header_buffer*) (raw_header_buf + headerOffset);
+        memset(header_buffers, 0, sizeof(*header_buffers) * count);
+    }
+
+    struct mmsghdr messages[BATCH_MAX_SIZE];
+    struct iovec iovs[BATCH_MAX_SIZE];
+    char control[BATCH_MAX_SIZE][CONTROL_BUFFER_SIZE];
+    memset(messages, 0, sizeof(*messages) * count);
+
+    for (int i = 0; i < count; ++i) {
+        iovs[i].iov_base = raw_buf + offset + i * frameStride;
+        iovs[i].iov_len = (size_t) frameStride;
+        messages[i].msg_hdr.msg_iov = &iovs[i];
+        messages[i].msg_hdr.msg_iovlen = 1;
+        if (header_buffers != NULL) {
+            header_buffers[i].source_address.can_family = AF_CAN;
+            messages[i].msg_hdr.msg_name = &header_buffers[i].source_address;
+            messages[i].msg_hdr.msg_namelen = sizeof(struct sockaddr_can);
+            messages[i].msg_hdr.msg_control = control[i];
+            messages[i].msg_hdr.msg_controllen = CONTROL_BUFFER_SIZE;
         }
     }
 
-    return bytes_received;
+    // without MSG_WAITFORONE a blocking socket would wait until all slots have been filled
+    int received = recvmmsg(sock, messages, (unsigned int) count, flags | MSG_WAITFORONE, NULL);
+    if (received == -1) {
+        throw_native_exception(env, "Unable to recvmmsg from the socket");
+        return received;
+    }
+
+    jint lengths[BATCH_MAX_SIZE];
+    for (int i = 0; i < received; ++i) {
+        lengths[i] = (jint) messages[i].msg_len;
+        if (header_buffers != NULL) {
+            parse_raw_message_headers(&messages[i].msg_hdr, &header_buffers[i]);
+        }
+    }
+    (*env)->SetIntArrayRegion(env, frameLengths, 0, received, lengths);
+
+    return received;
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_SocketCAN_sendBatch(JNIEnv *env, jclass clazz, jint sock, jobject buffer, jint offset, jint frameStride, jint count, jint flags) {
+    if (count <= 0) {
+        return 0;
+    }
+    if (count > BATCH_MAX_SIZE) {
+        count = BATCH_MAX_SIZE;
+    }
+
+    void *raw_buf = (*env)->GetDirectBufferAddress(env, buffer);
+
+    struct mmsghdr messages[BATCH_MAX_SIZE];
+    struct iovec iovs[BATCH_MAX_SIZE];
+    memset(messages, 0, sizeof(*messages) * count);
+
+    for (int i = 0; i < count; ++i) {
+        iovs[i].iov_base = raw_buf + offset + i * frameStride;
+        iovs[i].iov_len = (size_t) frameStride;
+        messages[i].msg_hdr.msg_iov = &iovs[i];
+        messages[i].msg_hdr.msg_iovlen = 1;
+    }
+
+    int sent = sendmmsg(sock, messages, (unsigned int) count, flags);
+    if (sent == -1) {
+        throw_native_exception(env, "Unable to sendmmsg to the socket");
+    }
+    return sent;
 }
 
 JNIEXPORT jint JNICALL Java_tel_schich_javacan_RawReceiveMessageHeaderBuffer_getStructSize(JNIEnv *env, jclass clazz) {
@@ -21,6 +21,7 @@
  * THE SOFTWARE.
  */
 #include "common.h"
+#include <errno.h>
 #include <sys/socket.h>
 #include <unistd.h>
 #include <poll.h>
@@ -201,6 +202,40 @@ JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_receive(JNIEnv *env, j
     return bytes_received;
 }
 
+static jlong result_or_try_again(JNIEnv *env, ssize_t result, char *msg) {
+    if (result == -1) {
+        if (errno == EAGAIN || errno == EWOULDBLOCK) {
+            return -EAGAIN;
+        }
+        throw_native_exception(env, msg);
+    }
+    return result;
+}
+
+JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_tryWrite(JNIEnv *env, jclass clazz, jint sock, jobject buf, jint offset, jint len) {
+    void *raw_buf = (*env)->GetDirectBufferAddress(env, buf);
+    void *data_start = raw_buf + offset;
+    return result_or_try_again(env, write(sock, data_start, (size_t) len), "Unable to write to the socket");
+}
+
+JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_tryRead(JNIEnv *env, jclass clazz, jint sock, jobject buf, jint offset, jint len) {
+    void *raw_buf = (*env)->GetDirectBufferAddress(env, buf);
+    void *data_start = raw_buf + offset;
+    return result_or_try_again(env, read(sock, data_start, (size_t) len), "Unable to read from the socket");
+}
+
+JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_trySend(JNIEnv *env, jclass clazz, jint sock, jobject buf, jint offset, jint len, jint flags) {
+    void *raw_buf = (*env)->GetDirectBufferAddress(env, buf);
+    void *data_start = raw_buf + offset;
+    return result_or_try_again(env, send(sock, data_start, (size_t) len, flags), "Unable to send to the socket");
+}
+
+JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_tryReceive(JNIEnv *env, jclass clazz, jint sock, jobject buf, jint offset, jint len, jint flags) {
+    void *raw_buf = (*env)->GetDirectBufferAddress(env, buf);
+    void *data_start = raw_buf + offset;
+    return result_or_try_again(env, recv(sock, data_start, (size_t) len, flags), "Unable to recv from the socket");
+}
+
 JNIEXPORT jshort JNICALL Java_tel_schich_javacan_SocketCAN_poll(JNIEnv *env, jclass clazz, jint sock, jint events, jint timeout) {
     return poll_single(sock, (short) events, timeout);
 }
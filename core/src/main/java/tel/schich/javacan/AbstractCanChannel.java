@@ -43,6 +43,11 @@ import tel.schich.javacan.option.CanSocketOption;
  */
 public abstract class AbstractCanChannel implements NativeChannel<UnixFileDescriptor> {
 
+    /**
+     * The result of the try* IO operations (e.g. {@link #tryRead(ByteBuffer)}) if the operation would have blocked.
+     */
+    public static final long WOULD_BLOCK = -LinuxNativeOperationException.EAGAIN;
+
     private final int sock;
     private final UnixFileDescriptor fileDescriptor;
     private final AtomicBoolean open = new AtomicBoolean(true);
@@ -208,7 +213,7 @@ public abstract class AbstractCanChannel implements NativeChannel<UnixFileDescri
         ensureDirectBuffer(buffer);
         try {
             int pos = buffer.position();
-            int bytesRead = (int) SocketCAN.read(sock, buffer, pos, buffer.remaining());
+            int bytesRead = (int) SocketIO.read(sock, buffer, pos, buffer.remaining());
             buffer.position(pos + bytesRead);
             return bytesRead;
         } catch (LinuxNativeOperationException e) {
@@ -231,7 +236,7 @@ public abstract class AbstractCanChannel implements NativeChannel<UnixFileDescri
         ensureDirectBuffer(buffer);
         try {
             int pos = buffer.position();
-            int bytesReceived = (int) SocketCAN.receive(sock, buffer, pos, buffer.remaining(), flags);
+            int bytesReceived = (int) SocketIO.receive(sock, buffer, pos, buffer.remaining(), flags);
             buffer.position(pos + bytesReceived);
             return bytesReceived;
         } catch (LinuxNativeOperationException e) {
@@ -253,7 +258,7 @@ public abstract class AbstractCanChannel implements NativeChannel<UnixFileDescri
         ensureDirectBuffer(buffer);
         try {
             int pos = buffer.position();
-            int bytesWritten = (int) SocketCAN.write(sock, buffer, pos, buffer.remaining());
+            int bytesWritten = (int) SocketIO.write(sock, buffer, pos, buffer.remaining());
             buffer.position(pos + bytesWritten);
             return bytesWritten;
         } catch (LinuxNativeOperationException e) {
@@ -276,7 +281,7 @@ public abstract class AbstractCanChannel implements NativeChannel<UnixFileDescri
         ensureDirectBuffer(buffer);
         try {
             int pos = buffer.position();
-            int bytesReceived = (int) SocketCAN.send(sock, buffer, pos, buffer.remaining(), flags);
+            int bytesReceived = (int) SocketIO.send(sock, buffer, pos, buffer.remaining(), flags);
             buffer.position(pos + bytesReceived);
             return bytesReceived;
         } catch (LinuxNativeOperationException e) {
@@ -284,6 +289,121 @@ public abstract class AbstractCanChannel implements NativeChannel<UnixFileDescri
         }
     }
 
+    /**
+     * <p>
+     * Reads data from this socket into the given {@link java.nio.ByteBuffer} like {@link #readSocket(ByteBuffer)},
+     * but without throwing an exception if no data is available on a non-blocking channel.
+     * </p>
+     * <p>
+     * This method does not apply any checks on the data that has been read. It is primarily intended for polling
+     * loops on non-blocking channels, which would otherwise create an exception for every read on an empty socket.
+     * </p>
+     *
+     * @see <a href="https://man7.org/linux/man-pages/man2/read.2.html">read man page</a>
+     * @param buffer the buffer to read into
+     * @return The number of bytes read from the socket or {@link #WOULD_BLOCK}
+     * @throws IOException if the native call fails for any other reason than that it would block
+     */
+    public long tryRead(ByteBuffer buffer) throws IOException {
+        ensureDirectBuffer(buffer);
+        try {
+            int pos = buffer.position();
+            long bytesRead = SocketIO.tryRead(sock, buffer, pos, buffer.remaining());
+            if (bytesRead > 0) {
+                buffer.position(pos + (int) bytesRead);
+            }
+            return bytesRead;
+        } catch (LinuxNativeOperationException e) {
+            throw checkForClosedChannel(e);
+        }
+    }
+
+    /**
+     * <p>
+     * Receives a message from this socket into the given {@link java.nio.ByteBuffer} like
+     * {@link #receiveFromSocket(ByteBuffer, int)}, but without throwing an exception if no data is available on a
+     * non-blocking channel.
+     * </p>
+     * <p>
+     * This method does not apply any checks on the data that has been received. It is primarily intended for polling
+     * loops on non-blocking channels, which would otherwise create an exception for every receive on an empty socket.
+     * </p>
+     *
+     * @see <a href="https://man7.org/linux/man-pages/man2/recv.2.html">recv man page</a>
+     * @param buffer the buffer to receive into
+     * @return The number of bytes received from the socket or {@link #WOULD_BLOCK}
+     * @throws IOException if the native call fails for any other reason than that it would block
+     */
+    public long tryReceive(ByteBuffer buffer) throws IOException {
+        ensureDirectBuffer(buffer);
+        try {
+            int pos = buffer.position();
+            long bytesReceived = SocketIO.tryReceive(sock, buffer, pos, buffer.remaining(), 0);
+            if (bytesReceived > 0) {
+                buffer.position(pos + (int) bytesReceived);
+            }
+            return bytesReceived;
+        } catch (LinuxNativeOperationException e) {
+            throw checkForClosedChannel(e);
+        }
+    }
+
+    /**
+     * <p>
+     * Writes data to this socket from the given {@link java.nio.ByteBuffer} like {@link #writeSocket(ByteBuffer)},
+     * but without throwing an exception if the socket's send buffer is full on a non-blocking channel.
+     * </p>
+     * <p>
+     * This method does not apply any checks on the given buffer.
+     * </p>
+     *
+     * @see <a href="https://man7.org/linux/man-pages/man2/write.2.html">write man page</a>
+     * @param buffer the buffer to write from
+     * @return The number of bytes written to the socket or {@link #WOULD_BLOCK}
+     * @throws IOException if the native call fails for any other reason than that it would block
+     */
+    public long tryWrite(ByteBuffer buffer) throws IOException {
+        ensureDirectBuffer(buffer);
+        try {
+            int pos = buffer.position();
+            long bytesWritten = SocketIO.tryWrite(sock, buffer, pos, buffer.remaining());
+            if (bytesWritten > 0) {
+                buffer.position(pos + (int) bytesWritten);
+            }
+            return bytesWritten;
+        } catch (LinuxNativeOperationException e) {
+            throw checkForClosedChannel(e);
+        }
+    }
+
+    /**
+     * <p>
+     * Sends data to this socket from the given {@link java.nio.ByteBuffer} like {@link #sendToSocket(ByteBuffer, int)},
+     * but without throwing an exception if the socket's send buffer is full on a non-blocking channel.
+     * </p>
+     * <p>
+     * This method does not apply any checks on the given buffer.
+     * </p>
+     *
+     * @see <a href="https://man7.org/linux/man-pages/man2/send.2.html">send man page</a>
+     * @param buffer the buffer to send from
+     * @return The number of bytes sent to the socket or {@link #WOULD_BLOCK}
+     * @throws IOException if the native call fails for any other reason than that it would block
+     */
+    public long trySend(ByteBuffer buffer) throws IOException {
+        ensureDirectBuffer(buffer);
+        try {
+            int pos = buffer.position();
+            long bytesSent = SocketIO.trySend(sock, buffer, pos, buffer.remaining(), 0);
+            if (bytesSent > 0) {
+                buffer.position(pos + (int) bytesSent);
+            }
+            return bytesSent;
+        } catch (LinuxNativeOperationException e) {
+            throw checkForClosedChannel(e);
+        }
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "(device=" + getDevice() + ", handle=" + getHandle() + ")";
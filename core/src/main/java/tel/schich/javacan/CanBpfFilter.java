@@ -0,0 +1,321 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static tel.schich.javacan.CanFrame.HEADER_LENGTH;
+import static tel.schich.javacan.CanFrame.OFFSET_DATA_LENGTH;
+import static tel.schich.javacan.CanFrame.OFFSET_ID;
+import static tel.schich.javacan.CanId.ERR_FLAG;
+
+/**
+ * <p>
+ * This class represents a classic BPF program that is attached to a socket using
+ * {@link CanSocketOptions#BPF_FILTER}. In contrast to {@link CanFilter}s, it can inspect the whole frame including
+ * its data, so frames can be dropped by the kernel based on their content before they wake up the application.
+ * </p>
+ * <p>
+ * Programs are usually created using the {@link Builder}, which compiles a disjunction of rules, each of them being a
+ * conjunction of conditions on the CAN ID, the data length and individual data bytes.
+ * </p>
+ *
+ * @see <a href="https://www.kernel.org/doc/html/latest/networking/filter.html">Linux Socket Filtering</a>
+ */
+public final class CanBpfFilter {
+    /**
+     * The size of the native representation of a single instruction ({@code struct sock_filter}).
+     */
+    public static final int INSTRUCTION_BYTES = 8;
+
+    /**
+     * The maximum amount of instructions the kernel accepts for a program.
+     */
+    public static final int MAX_INSTRUCTIONS = 4096;
+
+    /**
+     * This filter represents the absence of a program, setting it detaches any previously attached program.
+     */
+    public static final CanBpfFilter DETACHED = new CanBpfFilter(new long[0]);
+
+    static final int LD_W_ABS = 0x20;
+    static final int LD_B_ABS = 0x30;
+    static final int ALU_AND_K = 0x54;
+    static final int JMP_JEQ_K = 0x15;
+    static final int RET_K = 0x06;
+
+    private static final int ACCEPT = -1;
+    private static final int DROP = 0;
+    private static final int MAX_JUMP = 0xFF;
+    private static final boolean SWAP_ID = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    private final long[] instructions;
+
+    private CanBpfFilter(long[] instructions) {
+        this.instructions = instructions;
+    }
+
+    /**
+     * Creates a program from raw instructions as created by {@link #instruction(int, int, int, int)}.
+     *
+     * @param instructions the instructions
+     * @return the program
+     */
+    public static CanBpfFilter of(long... instructions) {
+        if (instructions.length > MAX_INSTRUCTIONS) {
+            throw new IllegalArgumentException("A maximum of " + MAX_INSTRUCTIONS + " instructions are supported!");
+        }
+        return new CanBpfFilter(instructions.clone());
+    }
+
+    /**
+     * Encodes a single instruction.
+     *
+     * @param code the operation code
+     * @param jt the jump offset if the condition is true
+     * @param jf the jump offset if the condition is false
+     * @param k the generic operand
+     * @return the encoded instruction
+     */
+    public static long instruction(int code, int jt, int jf, int k) {
+        return ((long) (code & 0xFFFF) << 48) | ((long) (jt & 0xFF) << 40) | ((long) (jf & 0xFF) << 32) | (k & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the amount of instructions of this program.
+     *
+     * @return the amount of instructions
+     */
+    public int getInstructionCount() {
+        return instructions.length;
+    }
+
+    /**
+     * Returns the instructions of this program as encoded by {@link #instruction(int, int, int, int)}.
+     *
+     * @return a copy of the instructions
+     */
+    public long[] getInstructions() {
+        return instructions.clone();
+    }
+
+    ByteBuffer toBuffer() {
+        ByteBuffer buffer = JavaCAN.allocateOrdered(Math.max(1, instructions.length) * INSTRUCTION_BYTES);
+        for (long instruction : instructions) {
+            buffer.putShort((short) (instruction >>> 48));
+            buffer.put((byte) (instruction >>> 40));
+            buffer.put((byte) (instruction >>> 32));
+            buffer.putInt((int) instruction);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    static CanBpfFilter fromBuffer(ByteBuffer buffer, int count) {
+        long[] instructions = new long[count];
+        for (int i = 0; i < count; i++) {
+            int offset = i * INSTRUCTION_BYTES;
+            instructions[i] = instruction(buffer.getShort(offset), buffer.get(offset + 2), buffer.get(offset + 3), buffer.getInt(offset + 4));
+        }
+        return new CanBpfFilter(instructions);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        return Arrays.equals(instructions, ((CanBpfFilter) o).instructions);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(instructions);
+    }
+
+    @Override
+    public String toString() {
+        return "CanBpfFilter(instructions=" + instructions.length + ")";
+    }
+
+    /**
+     * This builder compiles rules into a {@link CanBpfFilter}. A frame is accepted if all conditions of at least one
+     * rule are met. A rule is completed by {@link #or()} or {@link #build()}, a rule without any conditions accepts all
+     * frames, as does a program built without any rules.
+     */
+    public static final class Builder {
+        private final List<long[]> rules = new ArrayList<>();
+        private final List<long[]> conditions = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        private Builder condition(int load, int offset, int mask, int fullMask, int value) {
+            if (mask == fullMask) {
+                conditions.add(new long[] {
+                    instruction(load, 0, 0, offset),
+                    instruction(JMP_JEQ_K, 0, 0, value & mask),
+                });
+            } else {
+                conditions.add(new long[] {
+                    instruction(load, 0, 0, offset),
+                    instruction(ALU_AND_K, 0, 0, mask),
+                    instruction(JMP_JEQ_K, 0, 0, value & mask),
+                });
+            }
+            return this;
+        }
+
+        /**
+         * Requires the CAN ID to match the given ID exactly, including the {@link CanId#EFF_FLAG} and the
+         * {@link CanId#RTR_FLAG}.
+         *
+         * @param id the CAN ID
+         * @return this builder
+         */
+        public Builder id(int id) {
+            return id(id, ~ERR_FLAG);
+        }
+
+        /**
+         * Requires the CAN ID to match the given ID under the given mask, just like a {@link CanFilter}.
+         *
+         * @param id the CAN ID
+         * @param mask the mask
+         * @return this builder
+         */
+        public Builder id(int id, int mask) {
+            // the kernel loads words in network byte order, but the CAN ID is stored in host byte order
+            if (SWAP_ID) {
+                return condition(LD_W_ABS, OFFSET_ID, Integer.reverseBytes(mask), -1, Integer.reverseBytes(id));
+            }
+            return condition(LD_W_ABS, OFFSET_ID, mask, -1, id);
+        }
+
+        /**
+         * Requires the data length of the frame to be equal to the given length.
+         *
+         * @param length the data length
+         * @return this builder
+         */
+        public Builder length(int length) {
+            return condition(LD_B_ABS, OFFSET_DATA_LENGTH, 0xFF, 0xFF, length);
+        }
+
+        /**
+         * Requires the data byte at the given index to be equal to the given value.
+         *
+         * @param index the index of the data byte
+         * @param value the value
+         * @return this builder
+         */
+        public Builder data(int index, int value) {
+            return data(index, value, 0xFF);
+        }
+
+        /**
+         * Requires the data byte at the given index to be equal to the given value under the given mask. Bytes beyond
+         * the data length are compared as they have been sent, so this should be combined with {@link #length(int)}
+         * if not all frames contain the byte.
+         *
+         * @param index the index of the data byte
+         * @param value the value
+         * @param mask the mask of the bits to compare
+         * @return this builder
+         */
+        public Builder data(int index, int value, int mask) {
+            if (index < 0 || index >= CanFrame.MAX_FD_DATA_LENGTH) {
+                throw new IllegalArgumentException("Data index out of range: " + index);
+            }
+            return condition(LD_B_ABS, HEADER_LENGTH + index, mask & 0xFF, 0xFF, value & 0xFF);
+        }
+
+        /**
+         * Completes the current rule and starts a new one.
+         *
+         * @return this builder
+         */
+        public Builder or() {
+            int length = 1;
+            for (long[] condition : conditions) {
+                length += condition.length;
+            }
+            if (length > MAX_JUMP + 1) {
+                throw new IllegalArgumentException("Too many conditions in a single rule!");
+            }
+
+            // a failed comparison skips the remaining rule including its return instruction
+            long[] rule = new long[length];
+            int i = 0;
+            for (long[] condition : conditions) {
+                System.arraycopy(condition, 0, rule, i, condition.length);
+                i += condition.length;
+                rule[i - 1] |= instruction(0, 0, length - i, 0);
+            }
+            rule[i] = instruction(RET_K, 0, 0, ACCEPT);
+            rules.add(rule);
+            conditions.clear();
+            return this;
+        }
+
+        /**
+         * Completes the current rule and compiles all rules.
+         *
+         * @return the program
+         */
+        public CanBpfFilter build() {
+            if (!conditions.isEmpty() || rules.isEmpty()) {
+                or();
+            }
+            int length = 1;
+            for (long[] rule : rules) {
+                length += rule.length;
+            }
+            if (length > MAX_INSTRUCTIONS) {
+                throw new IllegalArgumentException("The program exceeds " + MAX_INSTRUCTIONS + " instructions!");
+            }
+            long[] instructions = new long[length];
+            int i = 0;
+            for (long[] rule : rules) {
+                System.arraycopy(rule, 0, instructions, i, rule.length);
+                i += rule.length;
+            }
+            instructions[i] = instruction(RET_K, 0, 0, DROP);
+            return new CanBpfFilter(instructions);
+        }
+    }
+}
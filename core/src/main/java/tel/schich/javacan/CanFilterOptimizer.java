@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static tel.schich.javacan.CanFilter.INVERTED_BIT;
+
+/**
+ * <p>
+ * This class reduces a set of {@link CanFilter}s to a smaller set that accepts exactly the same CAN IDs, as the kernel
+ * compares every frame against every filter of a socket.
+ * </p>
+ * <p>
+ * Duplicates (after masking the ID) and filters that are subsumed by a more general filter are removed. Two filters
+ * with the same mask whose IDs differ in exactly one masked bit are merged into a single filter that ignores that bit,
+ * which is repeated until no more filters can be merged. Inverted filters are only deduplicated.
+ * </p>
+ * <p>
+ * The result is only equivalent for the default semantics of accepting a frame if any filter accepts it, it must not
+ * be used with {@link CanSocketOptions#JOIN_FILTERS} enabled.
+ * </p>
+ */
+public final class CanFilterOptimizer {
+    private CanFilterOptimizer() {
+    }
+
+    /**
+     * Optimizes the given filters.
+     *
+     * @param filters the filters
+     * @return the equivalent optimized filters, never more than given
+     */
+    public static CanFilter[] optimize(CanFilter... filters) {
+        return optimize(Arrays.asList(filters));
+    }
+
+    /**
+     * Optimizes the given filters.
+     *
+     * @param filters the filters
+     * @return the equivalent optimized filters, never more than given
+     */
+    public static CanFilter[] optimize(Collection<CanFilter> filters) {
+        Map<Integer, Set<Integer>> groups = new HashMap<>();
+        Set<CanFilter> inverted = new LinkedHashSet<>();
+
+        for (CanFilter filter : filters) {
+            final int mask = filter.getMask();
+            final int id = filter.getId() & mask;
+            if (filter.isInverted()) {
+                // an inverted filter without mask bits never accepts anything
+                if (mask != 0) {
+                    inverted.add(new CanFilter(id | INVERTED_BIT, mask));
+                }
+            } else if (mask == 0) {
+                return new CanFilter[] { CanFilter.ANY };
+            } else {
+                group(groups, mask).add(id);
+            }
+        }
+
+        merge(groups);
+        removeSubsumed(groups);
+
+        List<CanFilter> result = new ArrayList<>();
+        for (Map.Entry<Integer, Set<Integer>> entry : groups.entrySet()) {
+            for (int id : entry.getValue()) {
+                result.add(new CanFilter(id, entry.getKey()));
+            }
+        }
+        result.addAll(inverted);
+        return result.toArray(new CanFilter[0]);
+    }
+
+    private static Set<Integer> group(Map<Integer, Set<Integer>> groups, int mask) {
+        Set<Integer> group = groups.get(mask);
+        if (group == null) {
+            group = new HashSet<>();
+            groups.put(mask, group);
+        }
+        return group;
+    }
+
+    private static void merge(Map<Integer, Set<Integer>> groups) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Integer mask : new ArrayList<>(groups.keySet())) {
+                Set<Integer> ids = groups.get(mask);
+                for (Integer id : new ArrayList<>(ids)) {
+                    if (!ids.contains(id)) {
+                        // already merged with another ID
+                        continue;
+                    }
+                    for (int bits = mask; bits != 0; bits &= bits - 1) {
+                        final int bit = Integer.lowestOneBit(bits);
+                        if ((id & bit) == 0 && ids.remove(id | bit)) {
+                            ids.remove(id);
+                            group(groups, mask & ~bit).add(id);
+                            changed = true;
+                            break;
+                        }
+                    }
+                }
+                if (ids.isEmpty()) {
+                    groups.remove(mask);
+                }
+            }
+        }
+    }
+
+    private static void removeSubsumed(Map<Integer, Set<Integer>> groups) {
+        Integer[] masks = groups.keySet().toArray(new Integer[0]);
+        // more general masks first, as only they can subsume the others
+        Arrays.sort(masks, (a, b) -> Integer.compare(Integer.bitCount(a), Integer.bitCount(b)));
+        for (int i = 0; i < masks.length; i++) {
+            Set<Integer> ids = groups.get(masks[i]);
+            for (int j = 0; j < i; j++) {
+                final int general = masks[j];
+                if ((general & ~masks[i]) != 0) {
+                    continue;
+                }
+                Set<Integer> generalIds = groups.get(general);
+                if (generalIds == null) {
+                    continue;
+                }
+                ids.removeIf(id -> generalIds.contains(id & general));
+            }
+            if (ids.isEmpty()) {
+                groups.remove(masks[i]);
+            }
+        }
+    }
+}
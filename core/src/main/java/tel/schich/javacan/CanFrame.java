@@ -23,6 +23,7 @@
 package tel.schich.javacan;
 
 import tel.schich.javacan.util.BufferHelper;
+import tel.schich.javacan.util.FrameBufferPool;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -68,12 +69,16 @@ public class CanFrame {
      */
     public static final int MAX_FD_DATA_LENGTH = 64;
 
-    private static final int OFFSET_ID = 0;
-    private static final int SIZE_ID = Integer.BYTES;
-    private static final int OFFSET_DATA_LENGTH = OFFSET_ID + SIZE_ID;
-    private static final int SIZE_DATA_LENGTH = 1;
-    private static final int OFFSET_FLAGS = OFFSET_DATA_LENGTH + SIZE_DATA_LENGTH;
-    private static final int OFFSET_DATA = HEADER_LENGTH;
+    static final int OFFSET_ID = 0;
+    static final int SIZE_ID = Integer.BYTES;
+
+    /**
+     * The offset of the data length byte within the header of a CAN frame.
+     */
+    public static final int OFFSET_DATA_LENGTH = OFFSET_ID + SIZE_ID;
+    static final int SIZE_DATA_LENGTH = 1;
+    static final int OFFSET_FLAGS = OFFSET_DATA_LENGTH + SIZE_DATA_LENGTH;
+    static final int OFFSET_DATA = HEADER_LENGTH;
 
     private final ByteBuffer buffer;
     private final int base;
@@ -407,13 +412,70 @@ public class CanFrame {
      * @return the newly created frame
      */
     public static CanFrame createRaw(int id, byte flags, byte[] data, int offset, int length) {
-        int bufSize;
-        if (isFDFrame(flags, data.length)) {
-            bufSize = RawCanChannel.FD_MTU;
+        return createRaw(JavaCAN.allocateOrdered(frameSize(flags, data.length)), id, flags, data, offset, length);
+    }
+
+    /**
+     * Creates a new SFF frame like {@link #create(int, byte, byte[])}, but the backing buffer is acquired from the
+     * given {@link FrameBufferPool}. The frame can be returned to the pool using {@link FrameBufferPool#release(CanFrame)}.
+     *
+     * @param id the CAN ID
+     * @param flags the CAN FD flags, ignored for non-FD frames
+     * @param data the data
+     * @param pool the pool to acquire the backing buffer from
+     * @return the newly created frame
+     */
+    public static CanFrame create(int id, byte flags, byte[] data, FrameBufferPool pool) {
+        return createRaw(id & CanId.SFF_MASK, flags, data, 0, data.length, pool);
+    }
+
+    /**
+     * Creates a new EFF frame like {@link #createExtended(int, byte, byte[])}, but the backing buffer is acquired from
+     * the given {@link FrameBufferPool}. The frame can be returned to the pool using
+     * {@link FrameBufferPool#release(CanFrame)}.
+     *
+     * @param id the CAN ID
+     * @param flags the CAN FD flags, ignored for non-FD frames
+     * @param data the data
+     * @param pool the pool to acquire the backing buffer from
+     * @return the newly created frame
+     */
+    public static CanFrame createExtended(int id, byte flags, byte[] data, FrameBufferPool pool) {
+        return createRaw((id & CanId.EFF_MASK) | CanId.EFF_FLAG, flags, data, 0, data.length, pool);
+    }
+
+    /**
+     * Creates a new frame like {@link #createRaw(int, byte, byte[], int, int)}, but the backing buffer is acquired from
+     * the given {@link FrameBufferPool}. The frame can be returned to the pool using
+     * {@link FrameBufferPool#release(CanFrame)}.
+     *
+     * @param id the CAN ID
+     * @param flags the CAN FD flags, ignored for non-FD frames
+     * @param data the data
+     * @param offset the offset within data
+     * @param length amount of bytes to use from data
+     * @param pool the pool to acquire the backing buffer from
+     * @return the newly created frame
+     */
+    public static CanFrame createRaw(int id, byte flags, byte[] data, int offset, int length, FrameBufferPool pool) {
+        ByteBuffer buffer = pool.acquire(frameSize(flags, data.length));
+        try {
+            return createRaw(buffer, id, flags, data, offset, length);
+        } catch (RuntimeException e) {
+            pool.release(buffer);
+            throw e;
+        }
+    }
+
+    private static int frameSize(byte flags, int dataLength) {
+        if (isFDFrame(flags, dataLength)) {
+            return RawCanChannel.FD_MTU;
         } else {
-            bufSize = RawCanChannel.MTU;
+            return RawCanChannel.MTU;
         }
-        ByteBuffer buffer = JavaCAN.allocateOrdered(bufSize);
+    }
+
+    private static CanFrame createRaw(ByteBuffer buffer, int id, byte flags, byte[] data, int offset, int length) {
         buffer.putInt(id)
                 .put((byte) length)
                 .put(flags)
@@ -465,7 +527,7 @@ public class CanFrame {
         return new CanFrame(buffer);
     }
 
-    private static boolean isFDFrame(byte flags, int dataLength) {
+    static boolean isFDFrame(byte flags, int dataLength) {
         return (flags & FD_FLAG_FD_FRAME) == FD_FLAG_FD_FRAME || dataLength > MAX_DATA_LENGTH;
     }
 }
@@ -0,0 +1,285 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static tel.schich.javacan.CanFrame.*;
+
+/**
+ * <p>
+ * This class is a mutable flyweight over a CAN frame in a {@link java.nio.ByteBuffer}. Unlike a {@link CanFrame}, a
+ * view can be re-pointed at any frame using {@link #point(ByteBuffer, int, int)}, which allows iterating over the
+ * frames in a buffer holding several frames (e.g. filled by
+ * {@link RawCanChannel#receiveBatch(ByteBuffer, int, int[], RawReceiveMessageHeaderBuffer[])}) without allocating.
+ * </p>
+ * <p>
+ * All accessors read directly from the buffer using absolute positions and never modify the buffer's position or
+ * limit. The view only stays valid as long as the underlying buffer content is not changed, use
+ * {@link #toImmutable()} to keep a frame. Views are not thread-safe.
+ * </p>
+ */
+public final class CanFrameView {
+    @Nullable
+    private ByteBuffer buffer;
+    private int base;
+    private int size;
+
+    /**
+     * Points this view at the frame at the given offset in the given buffer.
+     *
+     * @param buffer the buffer in native byte order
+     * @param base the offset of the frame within the buffer
+     * @param size the size of the frame, either {@link RawCanChannel#MTU} or {@link RawCanChannel#FD_MTU}
+     * @return this view
+     */
+    public CanFrameView point(ByteBuffer buffer, int base, int size) {
+        if (buffer.order() != ByteOrder.nativeOrder()) {
+            throw new IllegalArgumentException("byte order (" + buffer.order() + ") of the given buffer must be the native order (" + ByteOrder.nativeOrder() + ")!");
+        }
+        if (size != RawCanChannel.MTU && size != RawCanChannel.FD_MTU) {
+            throw new IllegalArgumentException("size must be either MTU or FD_MTU, but was " + size + "!");
+        }
+        if (base < 0 || base + size > buffer.limit()) {
+            throw new IndexOutOfBoundsException("The frame at " + base + " with size " + size + " exceeds the buffer's limit of " + buffer.limit() + "!");
+        }
+        this.buffer = buffer;
+        this.base = base;
+        this.size = size;
+        return this;
+    }
+
+    /**
+     * Points this view at the given frame.
+     *
+     * @param frame the frame
+     * @return this view
+     */
+    public CanFrameView point(CanFrame frame) {
+        return point(frame.getBuffer(), frame.getBase(), frame.getSize());
+    }
+
+    /**
+     * Checks whether this view has been pointed at a frame.
+     *
+     * @return true if the view is pointed at a frame
+     */
+    public boolean isPointed() {
+        return buffer != null;
+    }
+
+    private ByteBuffer buffer() {
+        ByteBuffer buffer = this.buffer;
+        if (buffer == null) {
+            throw new IllegalStateException("The view has not been pointed at a frame!");
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns the bare CAN ID (so just 11 or 29 bits from the LSB).
+     *
+     * @return the CAN ID
+     * @see CanFrame#getId()
+     */
+    public int getId() {
+        return CanId.getId(getRawId());
+    }
+
+    /**
+     * Returns the full 32 bit CAN ID as given by the kernel.
+     *
+     * @return the CAN ID as given by the kernel
+     * @see CanFrame#getRawId()
+     */
+    public int getRawId() {
+        return buffer().getInt(base + OFFSET_ID);
+    }
+
+    /**
+     * Returns the CAN FD flags of this frame as-is. If this frame is not an FD frame the result is undefined.
+     *
+     * @return the CAN FD flags or an undefined byte for non-FD frames
+     */
+    public byte getFlags() {
+        return buffer().get(base + OFFSET_FLAGS);
+    }
+
+    /**
+     * Returns the data length as given by the kernel.
+     *
+     * @return the data length
+     */
+    public int getDataLength() {
+        return buffer().get(base + OFFSET_DATA_LENGTH);
+    }
+
+    /**
+     * Returns the maximum data length depending on whether this is an FD frame or not.
+     *
+     * @return the maximum data length
+     */
+    public int getMaxDataLength() {
+        return isFDFrame() ? MAX_FD_DATA_LENGTH : MAX_DATA_LENGTH;
+    }
+
+    /**
+     * Returns the buffer this view is currently pointed at. The buffer's position and limit are not related to the
+     * frame, use {@link #getBase()} and {@link #getSize()}.
+     *
+     * @return the buffer
+     */
+    public ByteBuffer getBuffer() {
+        return buffer();
+    }
+
+    /**
+     * Returns the base offset of the CAN frame within the buffer.
+     *
+     * @return the base offset.
+     */
+    public int getBase() {
+        return base;
+    }
+
+    /**
+     * Returns the size of the frame, either {@link RawCanChannel#MTU} or {@link RawCanChannel#FD_MTU}.
+     *
+     * @return the size of the frame
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns a single data byte of this frame.
+     *
+     * @param index the index within the data
+     * @return the data byte
+     */
+    public byte getData(int index) {
+        if (index < 0 || index >= getDataLength()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for data length " + getDataLength());
+        }
+        return buffer().get(base + OFFSET_DATA + index);
+    }
+
+    /**
+     * Write the data of this frame into the given destination buffer at the given offset.
+     *
+     * @param dest the destination buffer
+     * @param offset the offset in the destination buffer
+     * @param length the amount of bytes to write to the destination
+     */
+    public void getData(byte[] dest, int offset, int length) {
+        final ByteBuffer buffer = buffer();
+        final int dataOffset = base + OFFSET_DATA;
+        for (int i = 0; i < length; i++) {
+            dest[offset + i] = buffer.get(dataOffset + i);
+        }
+    }
+
+    /**
+     * Writes the data of this frame into the given destination {@link java.nio.ByteBuffer}.
+     *
+     * @param dest the destination buffer.
+     */
+    public void getData(ByteBuffer dest) {
+        final ByteBuffer buffer = buffer();
+        final int dataOffset = base + OFFSET_DATA;
+        final int length = getDataLength();
+        for (int i = 0; i < length; i++) {
+            dest.put(buffer.get(dataOffset + i));
+        }
+    }
+
+    /**
+     * Checks if this frame is an FD frame.
+     *
+     * @return true if this frame is an FD frame
+     */
+    public boolean isFDFrame() {
+        return CanFrame.isFDFrame(getFlags(), getDataLength());
+    }
+
+    /**
+     * Checks if this frame uses the extended frame format.
+     *
+     * @return true if this frame uses the extended format
+     */
+    public boolean isExtended() {
+        return CanId.isExtended(getRawId());
+    }
+
+    /**
+     * Checks if this frame is an error frame.
+     *
+     * @return true if this frame is an error frame.
+     */
+    public boolean isError() {
+        return CanId.isError(getRawId());
+    }
+
+    /**
+     * Gets the error from the CAN ID. In case this is not an error frame, the result is undefined.
+     *
+     * @return the error from the CAN ID or an undefined integer
+     */
+    public int getError() {
+        return CanId.getError(getRawId());
+    }
+
+    /**
+     * Checks if this frame is a remote-transmission-request.
+     *
+     * @return true if this frame is a remote-transmission-request
+     */
+    public boolean isRemoteTransmissionRequest() {
+        return CanId.isRemoteTransmissionRequest(getRawId());
+    }
+
+    /**
+     * Copies the frame this view is pointed at into a new {@link CanFrame} with its own heap buffer.
+     *
+     * @return an immutable copy of the frame
+     */
+    public CanFrame toImmutable() {
+        final ByteBuffer buffer = buffer();
+        final ByteBuffer copy = ByteBuffer.allocate(size).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < size; i++) {
+            copy.put(i, buffer.get(base + i));
+        }
+        return CanFrame.create(copy);
+    }
+
+    @Override
+    public String toString() {
+        if (!isPointed()) {
+            return "CanFrameView(unpointed)";
+        }
+        return "CanFrameView(" + toImmutable() + ")";
+    }
+}
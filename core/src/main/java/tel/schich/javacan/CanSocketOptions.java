@@ -31,6 +31,7 @@ import java.util.Collections;
 import java.util.EnumSet;
 
 import tel.schich.javacan.platform.linux.LinuxSocketOptionHandler;
+import tel.schich.javacan.platform.linux.UnixFileDescriptor;
 import tel.schich.javacan.option.CanSocketOption;
 
 import static java.time.temporal.ChronoUnit.MICROS;
@@ -126,13 +127,7 @@ public class CanSocketOptions {
         }
     });
 
-    /**
-     * Option to configure the CAN filters.
-     *
-     * @see <a href="https://man7.org/linux/man-pages/man2/setsockopt.2.html">setsockopt man page</a>
-     * @see <a href="https://man7.org/linux/man-pages/man2/getsockopt.2.html">getsockopt man page</a>
-     */
-    public static final SocketOption<CanFilter[]> FILTER = new CanSocketOption<>("FILTER", CanFilter[].class, new LinuxSocketOptionHandler<CanFilter[]>() {
+    private static final LinuxSocketOptionHandler<CanFilter[]> FILTER_HANDLER = new LinuxSocketOptionHandler<CanFilter[]>() {
 
         @Override
         public void set(int sock, CanFilter[] val, boolean validate) throws IOException {
@@ -168,6 +163,62 @@ public class CanSocketOptions {
 
             return filters;
         }
+    };
+
+    /**
+     * Option to configure the CAN filters.
+     *
+     * @see <a href="https://man7.org/linux/man-pages/man2/setsockopt.2.html">setsockopt man page</a>
+     * @see <a href="https://man7.org/linux/man-pages/man2/getsockopt.2.html">getsockopt man page</a>
+     */
+    public static final SocketOption<CanFilter[]> FILTER = new CanSocketOption<>("FILTER", CanFilter[].class, FILTER_HANDLER);
+
+    /**
+     * Option to configure the CAN filters like {@link #FILTER}, but the filters are reduced by the
+     * {@link CanFilterOptimizer} before being passed to the kernel. Reading this option returns the optimized filters.
+     * This option must not be used together with {@link #JOIN_FILTERS}.
+     *
+     * @see CanFilterOptimizer
+     */
+    public static final SocketOption<CanFilter[]> OPTIMIZED_FILTER = new CanSocketOption<>("OPTIMIZED_FILTER", CanFilter[].class, new CanSocketOption.Handler<CanFilter[]>() {
+
+        @Override
+        public void set(UnixFileDescriptor handle, CanFilter[] val, boolean validate) throws IOException {
+            FILTER_HANDLER.set(handle, CanFilterOptimizer.optimize(val), validate);
+        }
+
+        @Override
+        public CanFilter[] get(UnixFileDescriptor handle) throws IOException {
+            return FILTER_HANDLER.get(handle);
+        }
+    });
+
+    /**
+     * Option to attach a classic BPF program to the socket, which is able to filter frames based on their data in
+     * addition to the {@link #FILTER}. Setting {@link CanBpfFilter#DETACHED} detaches the current program.
+     *
+     * @see CanBpfFilter
+     * @see <a href="https://man7.org/linux/man-pages/man7/socket.7.html">socket man page</a>
+     */
+    public static final SocketOption<CanBpfFilter> BPF_FILTER = new CanSocketOption<>("BPF_FILTER", CanBpfFilter.class, new LinuxSocketOptionHandler<CanBpfFilter>() {
+        @Override
+        public void set(int sock, CanBpfFilter val, boolean validate) throws IOException {
+            if (val.getInstructionCount() == 0) {
+                SocketCAN.detachBpfFilter(sock);
+            } else {
+                SocketCAN.attachBpfFilter(sock, val.toBuffer(), val.getInstructionCount());
+            }
+        }
+
+        @Override
+        public CanBpfFilter get(int sock) throws IOException {
+            final int count = SocketCAN.getBpfFilter(sock, null, 0);
+            if (count == 0) {
+                return CanBpfFilter.DETACHED;
+            }
+            ByteBuffer program = JavaCAN.allocateOrdered(count * CanBpfFilter.INSTRUCTION_BYTES);
+            return CanBpfFilter.fromBuffer(program, SocketCAN.getBpfFilter(sock, program, count));
+        }
     });
 
     /**
@@ -0,0 +1,274 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
+import tel.schich.javacan.util.CanIdTable;
+
+import static tel.schich.javacan.CanId.ERR_FLAG;
+import static tel.schich.javacan.CanId.SFF_MASK;
+
+/**
+ * <p>
+ * This class is a set of {@link CanFilter}s compiled into a matcher that is evaluated in user space after frames have
+ * been received, which lifts the limit of {@link CanSocketOptions#MAX_FILTERS} filters per socket and keeps the cost
+ * per frame nearly constant regardless of the amount of filters.
+ * </p>
+ * <p>
+ * Exact filters for standard IDs are compiled into a bitset covering all 2048 IDs, the remaining exact filters into a
+ * hash table. All other filters are grouped by their mask, each group being a hash table of the masked IDs, so
+ * matching costs one lookup per distinct mask. Inverted filters are checked one by one. Just like the kernel, a frame
+ * is accepted if any of the filters accepts it, and the {@link CanId#ERR_FLAG} is never compared.
+ * </p>
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ * </p>
+ */
+public final class CompiledCanFilter {
+    private static final int ID_BITS = ~ERR_FLAG;
+
+    /**
+     * This compiled filter accepts no CAN ID at all.
+     */
+    public static final CompiledCanFilter NONE = compile();
+
+    /**
+     * This compiled filter accepts any CAN ID.
+     */
+    public static final CompiledCanFilter ANY = compile(CanFilter.ANY);
+
+    private final int filterCount;
+    private final boolean matchesAll;
+    private final long[] standardIds;
+    private final CanIdTable exactIds;
+    private final int[] groupMasks;
+    private final CanIdTable[] groups;
+    private final int[] invertedIds;
+    private final int[] invertedMasks;
+
+    private CompiledCanFilter(int filterCount, boolean matchesAll, long[] standardIds, CanIdTable exactIds,
+                              int[] groupMasks, CanIdTable[] groups, int[] invertedIds, int[] invertedMasks) {
+        this.filterCount = filterCount;
+        this.matchesAll = matchesAll;
+        this.standardIds = standardIds;
+        this.exactIds = exactIds;
+        this.groupMasks = groupMasks;
+        this.groups = groups;
+        this.invertedIds = invertedIds;
+        this.invertedMasks = invertedMasks;
+    }
+
+    /**
+     * Compiles the given filters.
+     *
+     * @param filters the filters, any amount is supported
+     * @return the compiled filter
+     */
+    public static CompiledCanFilter compile(CanFilter... filters) {
+        return compile(Arrays.asList(filters));
+    }
+
+    /**
+     * Compiles the given filters.
+     *
+     * @param filters the filters, any amount is supported
+     * @return the compiled filter
+     */
+    public static CompiledCanFilter compile(Collection<CanFilter> filters) {
+        boolean matchesAll = false;
+        long[] standardIds = new long[(SFF_MASK + 1) / Long.SIZE];
+        Set<Integer> exactIds = new HashSet<>();
+        Map<Integer, Set<Integer>> groups = new LinkedHashMap<>();
+        List<CanFilter> inverted = new ArrayList<>();
+
+        for (CanFilter filter : filters) {
+            final int mask = filter.getMask();
+            // the error flag is never compared
+            final int id = filter.getId() & mask & ID_BITS;
+            if (filter.isInverted()) {
+                inverted.add(filter);
+            } else if (mask == 0) {
+                matchesAll = true;
+            } else if (mask == ID_BITS && (id & ~SFF_MASK) == 0) {
+                standardIds[id >>> 6] |= 1L << id;
+            } else if (mask == ID_BITS) {
+                exactIds.add(id);
+            } else {
+                Set<Integer> group = groups.get(mask);
+                if (group == null) {
+                    group = new HashSet<>();
+                    groups.put(mask, group);
+                }
+                group.add(id);
+            }
+        }
+
+        int[] groupMasks = new int[groups.size()];
+        CanIdTable[] groupTables = new CanIdTable[groups.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Set<Integer>> entry : groups.entrySet()) {
+            groupMasks[i] = entry.getKey();
+            groupTables[i] = toTable(entry.getValue());
+            i++;
+        }
+
+        int[] invertedIds = new int[inverted.size()];
+        int[] invertedMasks = new int[inverted.size()];
+        for (i = 0; i < invertedIds.length; i++) {
+            CanFilter filter = inverted.get(i);
+            invertedMasks[i] = filter.getMask();
+            invertedIds[i] = filter.getId() & filter.getMask();
+        }
+
+        return new CompiledCanFilter(filters.size(), matchesAll, standardIds, toTable(exactIds), groupMasks, groupTables,
+                invertedIds, invertedMasks);
+    }
+
+    /**
+     * Returns the amount of filters this matcher has been compiled from.
+     *
+     * @return the amount of filters
+     */
+    public int getFilterCount() {
+        return filterCount;
+    }
+
+    /**
+     * Matches the given CAN ID against the compiled filters.
+     *
+     * @param rawId the full 32 bit CAN ID as given by the kernel
+     * @return true if any of the filters accepts the CAN ID
+     */
+    public boolean matches(int rawId) {
+        if (matchesAll) {
+            return true;
+        }
+        final int id = rawId & ID_BITS;
+        if ((id & ~SFF_MASK) == 0) {
+            if ((standardIds[id >>> 6] & (1L << id)) != 0) {
+                return true;
+            }
+        } else if (contains(exactIds, id)) {
+            return true;
+        }
+        for (int i = 0; i < groups.length; i++) {
+            if (contains(groups[i], id & groupMasks[i])) {
+                return true;
+            }
+        }
+        for (int i = 0; i < invertedIds.length; i++) {
+            if ((id & invertedMasks[i]) != invertedIds[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matches the given frame against the compiled filters.
+     *
+     * @param frame the frame
+     * @return true if any of the filters accepts the frame
+     */
+    public boolean matches(CanFrame frame) {
+        return matches(frame.getRawId());
+    }
+
+    /**
+     * Matches the frame the given view currently points to against the compiled filters.
+     *
+     * @param view the frame view
+     * @return true if any of the filters accepts the frame
+     */
+    public boolean matches(CanFrameView view) {
+        return matches(view.getRawId());
+    }
+
+    /**
+     * Removes all frames that are not accepted by this filter from a batch received by
+     * {@link RawCanChannel#receiveBatch(ByteBuffer, int, int[], RawReceiveMessageHeaderBuffer[])}. The accepted frames,
+     * their lengths and their message headers are moved to the front keeping their order and the buffer's limit is
+     * adjusted to the remaining frames.
+     *
+     * @param buffer the buffer holding the frames starting at its position
+     * @param frameStride the size of a frame slot within the buffer
+     * @param frameLengths the size of each frame
+     * @param count the amount of frames in the batch
+     * @param messageHeaderBuffers the message headers of the batch or null if none were received
+     * @return the amount of frames that have been retained
+     */
+    public int retain(ByteBuffer buffer, int frameStride, int[] frameLengths, int count, RawReceiveMessageHeaderBuffer @Nullable [] messageHeaderBuffers) {
+        final int base = buffer.position();
+        int retained = 0;
+        for (int i = 0; i < count; i++) {
+            if (!matches(buffer.getInt(base + i * frameStride))) {
+                continue;
+            }
+            if (retained != i) {
+                copy(buffer, base + i * frameStride, buffer, base + retained * frameStride, frameLengths[i]);
+                frameLengths[retained] = frameLengths[i];
+                if (messageHeaderBuffers != null) {
+                    RawReceiveMessageHeaderBuffer from = messageHeaderBuffers[i];
+                    RawReceiveMessageHeaderBuffer to = messageHeaderBuffers[retained];
+                    copy(from.getBuffer(), from.getOffset(), to.getBuffer(), to.getOffset(), RawReceiveMessageHeaderBuffer.BYTES);
+                }
+            }
+            retained++;
+        }
+        buffer.limit(base + retained * frameStride);
+        return retained;
+    }
+
+    private static void copy(ByteBuffer from, int fromOffset, ByteBuffer to, int toOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            to.put(toOffset + i, from.get(fromOffset + i));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledCanFilter(filters=" + filterCount + ", groups=" + groups.length + ", inverted=" + invertedIds.length + ")";
+    }
+
+    private static CanIdTable toTable(Collection<Integer> ids) {
+        CanIdTable table = new CanIdTable(CanIdTable.capacityFor(ids.size()));
+        for (int id : ids) {
+            table.claim(id);
+        }
+        return table;
+    }
+
+    private static boolean contains(CanIdTable table, int id) {
+        return table.find(id) >= 0;
+    }
+}
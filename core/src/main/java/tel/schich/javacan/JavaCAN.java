@@ -65,4 +65,20 @@ public class JavaCAN {
     public static ByteBuffer allocateUnordered(int capacity) {
         return ByteBuffer.allocateDirect(capacity);
     }
+
+    /**
+     * A simple helper to create a view on a region of a buffer as needed by the underlying native code. Unlike
+     * {@link ByteBuffer#slice()}, the view uses the native byte order regardless of the order of {@code buffer}.
+     *
+     * @param buffer the buffer to create the view on, its position and limit are not modified
+     * @param offset the absolute offset of the region within the buffer
+     * @param length the length of the region
+     * @return the view in native byte order, with its position at the start of the region
+     */
+    public static ByteBuffer sliceOrdered(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + length).position(offset);
+        // slices do not inherit the byte order
+        return view.slice().order(ByteOrder.nativeOrder());
+    }
 }
@@ -0,0 +1,246 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static tel.schich.javacan.CanFrame.HEADER_LENGTH;
+import static tel.schich.javacan.CanFrame.MAX_DATA_LENGTH;
+
+/**
+ * <p>
+ * This class is an immutable and compact heap representation of a classic (non-FD) CAN frame. The raw ID, the data
+ * length and the flags are packed into one {@code long}, the up to 8 data bytes into another one, so keeping large
+ * amounts of frames in memory costs little more than the frame content itself.
+ * </p>
+ * <p>
+ * Data bytes beyond the data length are always zero, equality and the hash code are based on the two packed values.
+ * </p>
+ */
+public final class PackedCanFrame {
+    private static final boolean NATIVE_LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    private final long header;
+    private final long data;
+
+    private PackedCanFrame(long header, long data) {
+        this.header = header;
+        this.data = data;
+    }
+
+    /**
+     * Returns the full 32 bit CAN ID as given by the kernel.
+     *
+     * @return the raw CAN ID
+     * @see CanFrame#getRawId()
+     */
+    public int getRawId() {
+        return (int) (header >>> 32);
+    }
+
+    /**
+     * Returns the bare CAN ID (so just 11 or 29 bits from the LSB).
+     *
+     * @return the CAN ID
+     */
+    public int getId() {
+        return CanId.getId(getRawId());
+    }
+
+    /**
+     * Returns the data length.
+     *
+     * @return the data length
+     */
+    public int getDataLength() {
+        return (int) ((header >>> 8) & 0xFF);
+    }
+
+    /**
+     * Returns the flags of the frame as-is.
+     *
+     * @return the flags
+     */
+    public byte getFlags() {
+        return (byte) header;
+    }
+
+    /**
+     * Returns the data bytes packed into a {@code long}, the first byte being the least significant one.
+     *
+     * @return the packed data
+     */
+    public long getPackedData() {
+        return data;
+    }
+
+    /**
+     * Returns a single data byte.
+     *
+     * @param index the index within the data
+     * @return the data byte
+     */
+    public byte getData(int index) {
+        if (index < 0 || index >= getDataLength()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for data length " + getDataLength());
+        }
+        return (byte) (data >>> (index * Byte.SIZE));
+    }
+
+    /**
+     * Writes the data of this frame into the given destination buffer at the given offset.
+     *
+     * @param dest the destination buffer
+     * @param offset the offset in the destination buffer
+     * @param length the amount of bytes to write to the destination
+     */
+    public void getData(byte[] dest, int offset, int length) {
+        if (length > getDataLength()) {
+            throw new IndexOutOfBoundsException("Length " + length + " exceeds the data length " + getDataLength());
+        }
+        for (int i = 0; i < length; i++) {
+            dest[offset + i] = (byte) (data >>> (i * Byte.SIZE));
+        }
+    }
+
+    /**
+     * Checks if this frame uses the extended frame format.
+     *
+     * @return true if this frame uses the extended format
+     */
+    public boolean isExtended() {
+        return CanId.isExtended(getRawId());
+    }
+
+    /**
+     * Checks if this frame is an error frame.
+     *
+     * @return true if this frame is an error frame.
+     */
+    public boolean isError() {
+        return CanId.isError(getRawId());
+    }
+
+    /**
+     * Checks if this frame is a remote-transmission-request.
+     *
+     * @return true if this frame is a remote-transmission-request
+     */
+    public boolean isRemoteTransmissionRequest() {
+        return CanId.isRemoteTransmissionRequest(getRawId());
+    }
+
+    /**
+     * Converts this frame into a {@link CanFrame} backed by a new heap buffer in native byte order.
+     *
+     * @return the frame
+     */
+    public CanFrame toCanFrame() {
+        ByteBuffer buffer = ByteBuffer.allocate(RawCanChannel.MTU).order(ByteOrder.nativeOrder());
+        buffer.putInt(0, getRawId())
+                .put(4, (byte) getDataLength())
+                .put(5, getFlags())
+                .putLong(HEADER_LENGTH, NATIVE_LITTLE_ENDIAN ? data : Long.reverseBytes(data));
+        return CanFrame.create(buffer);
+    }
+
+    /**
+     * Packs the given classic CAN frame.
+     *
+     * @param frame the frame
+     * @return the packed frame
+     * @throws IllegalArgumentException if the frame is an FD frame
+     */
+    public static PackedCanFrame of(CanFrame frame) {
+        if (frame.getSize() != RawCanChannel.MTU) {
+            throw new IllegalArgumentException("Only classic CAN frames can be packed!");
+        }
+        ByteBuffer buffer = frame.getBuffer();
+        long data = buffer.getLong(frame.getBase() + HEADER_LENGTH);
+        if (buffer.order() != ByteOrder.LITTLE_ENDIAN) {
+            data = Long.reverseBytes(data);
+        }
+        return of(frame.getRawId(), frame.getFlags(), frame.getDataLength(), data);
+    }
+
+    /**
+     * Packs the given frame content.
+     *
+     * @param rawId the full 32 bit CAN ID
+     * @param flags the flags
+     * @param data the data, at most 8 bytes
+     * @return the packed frame
+     */
+    public static PackedCanFrame of(int rawId, byte flags, byte[] data) {
+        if (data.length > MAX_DATA_LENGTH) {
+            throw new IllegalArgumentException("payload must fit in " + MAX_DATA_LENGTH + " bytes, but has a length of " + data.length + "!");
+        }
+        long packed = 0;
+        for (int i = 0; i < data.length; i++) {
+            packed |= (data[i] & 0xFFL) << (i * Byte.SIZE);
+        }
+        return of(rawId, flags, data.length, packed);
+    }
+
+    private static PackedCanFrame of(int rawId, byte flags, int length, long data) {
+        if (length < 0 || length > MAX_DATA_LENGTH) {
+            throw new IllegalArgumentException("payload must fit in " + MAX_DATA_LENGTH + " bytes, but specifies a length of " + length + "!");
+        }
+        long header = ((rawId & 0xFFFFFFFFL) << 32) | ((long) length << 8) | (flags & 0xFFL);
+        // bytes beyond the length are padding and must not take part in equality
+        long mask = length == MAX_DATA_LENGTH ? -1L : (1L << (length * Byte.SIZE)) - 1;
+        return new PackedCanFrame(header, data & mask);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PackedCanFrame)) return false;
+        PackedCanFrame b = (PackedCanFrame) o;
+        return header == b.header && data == b.data;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(header) + Long.hashCode(data);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("PackedCanFrame(ID=")
+                .append(String.format("%02X", getId()))
+                .append(", FLAGS=")
+                .append(String.format("%X", getFlags()))
+                .append(", LEN=")
+                .append(getDataLength())
+                .append(", DATA=[");
+        for (int i = 0; i < getDataLength(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(String.format("%02X", getData(i)));
+        }
+        return sb.append("])").toString();
+    }
+}
@@ -23,6 +23,7 @@
 package tel.schich.javacan;
 
 import org.eclipse.jdt.annotation.Nullable;
+import tel.schich.javacan.util.FrameBufferPool;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -50,6 +51,11 @@ public abstract class RawCanChannel extends AbstractCanChannel {
      */
     public static final int FD_MTU = HEADER_LENGTH + MAX_FD_DATA_LENGTH;
 
+    /**
+     * The maximum amount of frames that can be transferred by a single batch operation.
+     */
+    public static final int MAX_BATCH_SIZE = 64;
+
     /**
      * Binds this channel to a device. The channel will be non-functional until bound.
      *
@@ -69,6 +75,24 @@ public abstract class RawCanChannel extends AbstractCanChannel {
      */
     public abstract CanFrame read() throws IOException;
 
+    /**
+     * Reads CAN frames from the channel until one is accepted by the given user space filter, which allows more than
+     * {@link CanSocketOptions#MAX_FILTERS} filters to be applied. The kernel filters still apply before.
+     *
+     * @param filter the filter that is applied after receiving a frame
+     * @return the first accepted CAN frame
+     * @throws IOException if the IO operations failed or invalid data was read.
+     * @see CompiledCanFilter
+     */
+    public CanFrame read(CompiledCanFilter filter) throws IOException {
+        while (true) {
+            CanFrame frame = read();
+            if (filter.matches(frame)) {
+                return frame;
+            }
+        }
+    }
+
     /**
      * Receives a CAM frame from the channel by internally allocating a new direct {@link ByteBuffer}.
      *
@@ -88,6 +112,30 @@ public abstract class RawCanChannel extends AbstractCanChannel {
      */
     public abstract CanFrame receive(@Nullable RawReceiveMessageHeaderBuffer messageHeaderBuffer) throws IOException;
 
+    /**
+     * Reads a CAN frame from the channel into a buffer acquired from the given {@link FrameBufferPool}.
+     * The frame should be returned to the pool using {@link FrameBufferPool#release(CanFrame)} once it is not needed
+     * anymore.
+     *
+     * @param pool the pool to acquire the buffer from
+     * @return the CAN frame
+     * @throws IOException if the IO operations failed or invalid data was read.
+     * @see <a href="https://man7.org/linux/man-pages/man2/read.2.html">read man page</a>
+     */
+    public abstract CanFrame read(FrameBufferPool pool) throws IOException;
+
+    /**
+     * Receives a CAN frame from the channel into a buffer acquired from the given {@link FrameBufferPool}.
+     * The frame should be returned to the pool using {@link FrameBufferPool#release(CanFrame)} once it is not needed
+     * anymore.
+     *
+     * @param pool the pool to acquire the buffer from
+     * @return the CAN frame
+     * @throws IOException if the IO operations failed or invalid data was read.
+     * @see <a href="https://man7.org/linux/man-pages/man2/recv.2.html">read man page</a>
+     */
+    public abstract CanFrame receive(FrameBufferPool pool) throws IOException;
+
     /**
      * Reads a CAM frame from the channel using the supplied buffer.
      *
@@ -174,6 +222,34 @@ public abstract class RawCanChannel extends AbstractCanChannel {
      */
     public abstract long receiveUnsafe(ByteBuffer buffer, @Nullable RawReceiveMessageHeaderBuffer messageHeaderBuffer) throws IOException;
 
+    /**
+     * <p>
+     * Receives multiple CAN frames and their related message headers from the channel using a single system call.
+     * </p>
+     * <p>
+     * The frames are stored back to back starting at the buffer's position, each frame occupying a slot of
+     * {@code frameStride} bytes, which must be either {@link #MTU} or {@link #FD_MTU}. The actual size of each received
+     * frame is stored at the corresponding index in {@code frameLengths}. The message headers of the i-th frame are
+     * stored into the i-th element of {@code messageHeaderBuffers}, which must have been created using
+     * {@link RawReceiveMessageHeaderBuffer#allocateBatch(int)}.
+     * </p>
+     * <p>
+     * At most {@link #MAX_BATCH_SIZE} frames are received, fewer if either {@code frameLengths} or the buffer are
+     * not able to hold that many frames. A blocking channel only waits for the first frame and then returns the frames
+     * that are already available.
+     * </p>
+     *
+     * @param buffer the buffer to receive into. The buffer's {@link ByteOrder} will be set to native, and it will be
+     *               flipped after the receive has been completed.
+     * @param frameStride the size of a frame slot within the buffer, either {@link #MTU} or {@link #FD_MTU}.
+     * @param frameLengths the array to store the size of each received frame into.
+     * @param messageHeaderBuffers the buffers to read message headers into or null if no headers should be received.
+     * @return the number of frames received
+     * @throws IOException if the IO operations failed.
+     * @see <a href="https://man7.org/linux/man-pages/man2/recvmmsg.2.html">recvmmsg man page</a>
+     */
+    public abstract int receiveBatch(ByteBuffer buffer, int frameStride, int[] frameLengths, RawReceiveMessageHeaderBuffer @Nullable [] messageHeaderBuffers) throws IOException;
+
     /**
      * Writes the given CAN frame.
      *
@@ -226,6 +302,26 @@ public abstract class RawCanChannel extends AbstractCanChannel {
      */
     public abstract long sendUnsafe(ByteBuffer buffer) throws IOException;
 
+    /**
+     * <p>
+     * Sends multiple CAN frames from the given buffer using a single system call.
+     * </p>
+     * <p>
+     * The frames are expected back to back between the buffer's position and limit, each frame occupying exactly
+     * {@code frameStride} bytes, which must be either {@link #MTU} or {@link #FD_MTU}. At most {@link #MAX_BATCH_SIZE}
+     * frames are sent per call. The buffer's position is advanced past the frames that have been accepted by the kernel,
+     * so if fewer frames than given have been sent (e.g. because the device's transmit queue is full), the remaining
+     * frames can be retried by calling this method again with the same buffer.
+     * </p>
+     *
+     * @param buffer the buffer containing the frames to be sent.
+     * @param frameStride the size of each frame within the buffer, either {@link #MTU} or {@link #FD_MTU}.
+     * @return the number of frames sent.
+     * @throws IOException if the IO operations failed.
+     * @see <a href="https://man7.org/linux/man-pages/man2/sendmmsg.2.html">sendmmsg man page</a>
+     */
+    public abstract int sendBatch(ByteBuffer buffer, int frameStride) throws IOException;
+
     /**
      * Allocates a buffer that is large enough to hold any supported CAN frame.
      *
@@ -23,12 +23,15 @@
 package tel.schich.javacan;
 
 import java.io.IOException;
+import java.net.SocketOption;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.NotYetBoundException;
 
 import org.eclipse.jdt.annotation.Nullable;
 import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
 import tel.schich.javacan.platform.linux.LinuxNetworkDevice;
+import tel.schich.javacan.util.FrameBufferPool;
 
 /**
  * Naming has been adopted from the JDK here (Interface + InterfaceImpl)
@@ -38,6 +41,9 @@ final class RawCanChannelImpl extends RawCanChannel {
     @Nullable
     private NetworkDevice device;
 
+    // the frame size derived from FD_FRAMES, 0 if unknown, which avoids a getsockopt call for every allocation
+    private volatile int frameSize = 0;
+
     RawCanChannelImpl(int sock) {
         super(sock);
     }
@@ -69,9 +75,39 @@ final class RawCanChannelImpl extends RawCanChannel {
         return this.device != null;
     }
 
+    private int getFrameSize() throws IOException {
+        int size = frameSize;
+        if (size == 0) {
+            size = getOption(CanSocketOptions.FD_FRAMES) ? FD_MTU : MTU;
+            frameSize = size;
+        }
+        return size;
+    }
+
+    @Override
+    public <T> void setOption(SocketOption<T> option, T value) throws IOException {
+        try {
+            super.setOption(option, value);
+        } finally {
+            if (option == CanSocketOptions.FD_FRAMES) {
+                frameSize = 0;
+            }
+        }
+    }
+
+    @Override
+    public <T> void setOptionUnsafe(SocketOption<T> option, T value) throws IOException {
+        try {
+            super.setOptionUnsafe(option, value);
+        } finally {
+            if (option == CanSocketOptions.FD_FRAMES) {
+                frameSize = 0;
+            }
+        }
+    }
+
     private ByteBuffer allocateBuffer() throws IOException {
-        int length = getOption(CanSocketOptions.FD_FRAMES) ? FD_MTU : MTU;
-        return JavaCAN.allocateOrdered(length);
+        return JavaCAN.allocateOrdered(getFrameSize());
     }
 
     @Override
@@ -89,6 +125,28 @@ final class RawCanChannelImpl extends RawCanChannel {
         return receive(allocateBuffer(), messageHeaderBuffer);
     }
 
+    @Override
+    public CanFrame read(FrameBufferPool pool) throws IOException {
+        ByteBuffer buffer = pool.acquire(getFrameSize());
+        try {
+            return read(buffer);
+        } catch (IOException | RuntimeException e) {
+            pool.release(buffer);
+            throw e;
+        }
+    }
+
+    @Override
+    public CanFrame receive(FrameBufferPool pool) throws IOException {
+        ByteBuffer buffer = pool.acquire(getFrameSize());
+        try {
+            return receive(buffer);
+        } catch (IOException | RuntimeException e) {
+            pool.release(buffer);
+            throw e;
+        }
+    }
+
     @Override
     public CanFrame read(ByteBuffer buffer) throws IOException {
         readUnsafe(buffer);
@@ -149,6 +207,45 @@ final class RawCanChannelImpl extends RawCanChannel {
         }
     }
 
+    @Override
+    public int receiveBatch(ByteBuffer buffer, int frameStride, int[] frameLengths, RawReceiveMessageHeaderBuffer @Nullable [] messageHeaderBuffers) throws IOException {
+        ensureDirectBuffer(buffer);
+        ensureValidFrameStride(frameStride);
+        final int count = Math.min(MAX_BATCH_SIZE, Math.min(frameLengths.length, buffer.remaining() / frameStride));
+        if (count == 0) {
+            throw new IllegalArgumentException("The buffer and the lengths array must be able to hold at least one frame!");
+        }
+
+        ByteBuffer headerBuffer = null;
+        int headerOffset = 0;
+        if (messageHeaderBuffers != null) {
+            RawReceiveMessageHeaderBuffer.ensureBatch(messageHeaderBuffers, count);
+            headerBuffer = messageHeaderBuffers[0].getBuffer();
+            headerOffset = messageHeaderBuffers[0].getOffset();
+        }
+
+        try {
+            final int offset = buffer.position();
+            final int framesReceived = SocketCAN.receiveBatchWithRawHeaders(
+                getSocket(),
+                buffer,
+                offset,
+                frameStride,
+                count,
+                0,
+                frameLengths,
+                headerBuffer,
+                headerOffset
+            );
+            buffer.order(ByteOrder.nativeOrder());
+            buffer.position(offset + framesReceived * frameStride);
+            buffer.flip();
+            return framesReceived;
+        } catch (LinuxNativeOperationException e) {
+            throw checkForClosedChannel(e);
+        }
+    }
+
     @Override
     public RawCanChannel write(CanFrame frame) throws IOException {
         long written = writeUnsafe(frame.getBuffer());
@@ -171,6 +268,34 @@ final class RawCanChannelImpl extends RawCanChannel {
         }
     }
 
+    @Override
+    public int sendBatch(ByteBuffer buffer, int frameStride) throws IOException {
+        ensureDirectBuffer(buffer);
+        ensureValidFrameStride(frameStride);
+        if (buffer.remaining() % frameStride != 0) {
+            throw new IllegalArgumentException("The buffer must contain a whole number of frames of size " + frameStride + "!");
+        }
+        final int count = Math.min(MAX_BATCH_SIZE, buffer.remaining() / frameStride);
+        if (count == 0) {
+            return 0;
+        }
+
+        try {
+            final int offset = buffer.position();
+            final int framesSent = SocketCAN.sendBatch(getSocket(), buffer, offset, frameStride, count, 0);
+            buffer.position(offset + framesSent * frameStride);
+            return framesSent;
+        } catch (LinuxNativeOperationException e) {
+            throw checkForClosedChannel(e);
+        }
+    }
+
+    private static void ensureValidFrameStride(int frameStride) {
+        if (frameStride != MTU && frameStride != FD_MTU) {
+            throw new IllegalArgumentException("frameStride must be either MTU or FD_MTU, but was " + frameStride + "!");
+        }
+    }
+
     @Override
     public long writeUnsafe(ByteBuffer buffer) throws IOException {
         return writeSocket(buffer);
@@ -58,11 +58,55 @@ public final class RawReceiveMessageHeaderBuffer implements RawReceiveMessageHea
         this.offset = offset;
     }
 
+    /**
+     * Allocates a batch of message header buffers that share a single contiguous backing buffer as required by
+     * {@link RawCanChannel#receiveBatch(ByteBuffer, int, int[], RawReceiveMessageHeaderBuffer[])}.
+     *
+     * @param count the amount of message headers
+     * @return the header buffers in the order of their location within the backing buffer
+     */
+    public static RawReceiveMessageHeaderBuffer[] allocateBatch(int count) {
+        final ByteBuffer buffer = JavaCAN.allocateOrdered(count * BYTES);
+        final RawReceiveMessageHeaderBuffer[] batch = new RawReceiveMessageHeaderBuffer[count];
+        for (int i = 0; i < count; i++) {
+            batch[i] = new RawReceiveMessageHeaderBuffer(buffer, i * BYTES);
+        }
+        return batch;
+    }
+
+    static void ensureBatch(RawReceiveMessageHeaderBuffer[] batch, int count) {
+        if (batch.length < count) {
+            throw new IllegalArgumentException("At least " + count + " message header buffers are required, but only " + batch.length + " were given!");
+        }
+        final ByteBuffer buffer = batch[0].buffer;
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("The message header buffers must be backed by a direct buffer!");
+        }
+        final int offset = batch[0].offset;
+        for (int i = 1; i < count; i++) {
+            if (batch[i].buffer != buffer || batch[i].offset != offset + i * BYTES) {
+                throw new IllegalArgumentException("The message header buffers must be laid out contiguously within a single buffer!");
+            }
+        }
+        if (buffer.capacity() < offset + count * BYTES) {
+            throw new IllegalArgumentException("The backing buffer is too small for " + count + " message headers!");
+        }
+    }
+
     @Override
     public LinuxNetworkDevice getDevice() {
         return LinuxNetworkDevice.fromDeviceIndex(buffer.getInt(offset + DEVICE_INDEX_OFFSET));
     }
 
+    /**
+     * Returns the interface index of the device the message has been received from, without looking up the device.
+     *
+     * @return the interface index
+     */
+    public int getDeviceIndex() {
+        return buffer.getInt(offset + DEVICE_INDEX_OFFSET);
+    }
+
     public RawReceiveMessageHeaderBuffer setDevice(LinuxNetworkDevice device) {
         buffer.putInt(offset + DEVICE_INDEX_OFFSET, device.getIndex());
         return this;
@@ -83,6 +127,15 @@ public final class RawReceiveMessageHeaderBuffer implements RawReceiveMessageHea
         return Instant.ofEpochSecond(buffer.getLong(offset + SOFTWARE_TIMESTAMP_SECONDS_OFFSET), buffer.getLong(offset + SOFTWARE_TIMESTAMP_NANOS_OFFSET));
     }
 
+    /**
+     * Returns the software timestamp as nanoseconds since the epoch, without allocating an {@link Instant}.
+     *
+     * @return the software timestamp in nanoseconds
+     */
+    public long getSoftwareTimestampNanos() {
+        return buffer.getLong(offset + SOFTWARE_TIMESTAMP_SECONDS_OFFSET) * 1_000_000_000L + buffer.getLong(offset + SOFTWARE_TIMESTAMP_NANOS_OFFSET);
+    }
+
     public RawReceiveMessageHeaderBuffer setSoftwareTimestamp(Instant timestamp) {
         buffer.putLong(offset + SOFTWARE_TIMESTAMP_SECONDS_OFFSET, timestamp.getEpochSecond());
         buffer.putLong(offset + SOFTWARE_TIMESTAMP_NANOS_OFFSET, timestamp.getNano());
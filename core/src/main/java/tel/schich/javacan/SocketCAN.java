@@ -24,6 +24,8 @@ package tel.schich.javacan;
 
 import java.nio.ByteBuffer;
 
+import org.eclipse.jdt.annotation.Nullable;
+
 import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
 
 /**
@@ -83,10 +85,25 @@ class SocketCAN {
 
     public static native long receive(int sock, ByteBuffer buf, int offset, int len, int flags) throws LinuxNativeOperationException;
 
+    // the try* variants return -EAGAIN instead of throwing if the operation would block
+    public static native long tryWrite(int sock, ByteBuffer buf, int offset, int len) throws LinuxNativeOperationException;
+
+    public static native long tryRead(int sock, ByteBuffer buf, int offset, int len) throws LinuxNativeOperationException;
+
+    public static native long trySend(int sock, ByteBuffer buf, int offset, int len, int flags) throws LinuxNativeOperationException;
+
+    public static native long tryReceive(int sock, ByteBuffer buf, int offset, int len, int flags) throws LinuxNativeOperationException;
+
     public static native int setFilters(int sock, ByteBuffer data) throws LinuxNativeOperationException;
 
     public static native ByteBuffer getFilters(int sock) throws LinuxNativeOperationException;
 
+    public static native int attachBpfFilter(int sock, ByteBuffer data, int length) throws LinuxNativeOperationException;
+
+    public static native int detachBpfFilter(int sock) throws LinuxNativeOperationException;
+
+    public static native int getBpfFilter(int sock, @Nullable ByteBuffer data, int maxLength) throws LinuxNativeOperationException;
+
     public static native int setLoopback(int sock, boolean enable) throws LinuxNativeOperationException;
 
     public static native int getLoopback(int sock) throws LinuxNativeOperationException;
@@ -163,6 +180,10 @@ class SocketCAN {
 
     public static native long receiveWithRawHeaders(int sock, ByteBuffer buffer, int offset, int len, int flags, ByteBuffer headerBuffer, int headerOffset) throws LinuxNativeOperationException;
 
+    public static native int receiveBatchWithRawHeaders(int sock, ByteBuffer buffer, int offset, int frameStride, int count, int flags, int[] frameLengths, @Nullable ByteBuffer headerBuffer, int headerOffset) throws LinuxNativeOperationException;
+
+    public static native int sendBatch(int sock, ByteBuffer buffer, int offset, int frameStride, int count, int flags) throws LinuxNativeOperationException;
+
     public static native int setReceiveQueueOverflow(int sock, boolean enable) throws LinuxNativeOperationException;
 
     public static native boolean getReceiveQueueOverflow(int sock) throws LinuxNativeOperationException;
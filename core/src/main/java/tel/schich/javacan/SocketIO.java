@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import java.nio.ByteBuffer;
+
+import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
+
+/**
+ * This class performs the plain socket IO of the channels. This implementation delegates to the JNI functions of
+ * {@link SocketCAN}, the multi-release jar replaces it on JDK 22 and later with an implementation that calls the C
+ * library through the foreign function interface.
+ * Just like {@link SocketCAN} this is only meant for internal consumption and can change at any point!
+ */
+final class SocketIO {
+    private SocketIO() {
+    }
+
+    /**
+     * Checks if the socket IO is performed through the foreign function interface.
+     *
+     * @return true if the foreign function interface is used, false if JNI is used
+     */
+    static boolean isForeign() {
+        return false;
+    }
+
+    static long write(int sock, ByteBuffer buf, int offset, int len) throws LinuxNativeOperationException {
+        return SocketCAN.write(sock, buf, offset, len);
+    }
+
+    static long read(int sock, ByteBuffer buf, int offset, int len) throws LinuxNativeOperationException {
+        return SocketCAN.read(sock, buf, offset, len);
+    }
+
+    static long send(int sock, ByteBuffer buf, int offset, int len, int flags) throws LinuxNativeOperationException {
+        return SocketCAN.send(sock, buf, offset, len, flags);
+    }
+
+    static long receive(int sock, ByteBuffer buf, int offset, int len, int flags) throws LinuxNativeOperationException {
+        return SocketCAN.receive(sock, buf, offset, len, flags);
+    }
+
+    static long tryWrite(int sock, ByteBuffer buf, int offset, int len) throws LinuxNativeOperationException {
+        return SocketCAN.tryWrite(sock, buf, offset, len);
+    }
+
+    static long tryRead(int sock, ByteBuffer buf, int offset, int len) throws LinuxNativeOperationException {
+        return SocketCAN.tryRead(sock, buf, offset, len);
+    }
+
+    static long trySend(int sock, ByteBuffer buf, int offset, int len, int flags) throws LinuxNativeOperationException {
+        return SocketCAN.trySend(sock, buf, offset, len, flags);
+    }
+
+    static long tryReceive(int sock, ByteBuffer buf, int offset, int len, int flags) throws LinuxNativeOperationException {
+        return SocketCAN.tryReceive(sock, buf, offset, len, flags);
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.dbc;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * The message and signal definitions of a DBC file. Only the parts relevant for decoding are parsed: messages
+ * ({@code BO_}), their signals ({@code SG_}) including simple multiplexing, and floating point value types
+ * ({@code SIG_VALTYPE_}). All other sections, like nodes, comments, attributes and value tables, are skipped.
+ * Extended multiplexing ({@code SG_MUL_VAL_}) is not supported.
+ * </p>
+ * <p>
+ * Use {@link SignalDecoder#compile(DbcDatabase)} to decode frames.
+ * </p>
+ */
+public final class DbcDatabase {
+    private static final Pattern MESSAGE = Pattern.compile(
+            "^BO_\\s+(\\d+)\\s+(\\w+)\\s*:\\s*(\\d+)\\s+(\\w+)");
+    private static final Pattern SIGNAL = Pattern.compile(
+            "^SG_\\s+(\\w+)\\s*(M|m\\d+M?)?\\s*:\\s*(\\d+)\\s*\\|\\s*(\\d+)\\s*@\\s*([01])\\s*([+-])\\s*" +
+            "\\(\\s*([^,\\s]+)\\s*,\\s*([^)\\s]+)\\s*\\)\\s*\\[\\s*([^|\\s]+)\\s*\\|\\s*([^]\\s]+)\\s*]\\s*\"([^\"]*)\"");
+    private static final Pattern VALUE_TYPE = Pattern.compile(
+            "^SIG_VALTYPE_\\s+(\\d+)\\s+(\\w+)\\s*:\\s*([012])\\s*;");
+
+    private final List<DbcMessage> messages;
+    private final Map<Integer, DbcMessage> messagesById;
+
+    /**
+     * Creates a database from the given messages.
+     *
+     * @param messages the message definitions
+     */
+    public DbcDatabase(List<DbcMessage> messages) {
+        this.messages = Collections.unmodifiableList(new ArrayList<>(messages));
+        this.messagesById = new HashMap<>();
+        for (DbcMessage message : messages) {
+            if (messagesById.put(message.getRawId(), message) != null) {
+                throw new IllegalArgumentException("Duplicate message ID " + Integer.toHexString(message.getRawId()) + "!");
+            }
+        }
+    }
+
+    public List<DbcMessage> getMessages() {
+        return messages;
+    }
+
+    /**
+     * Finds the message with the given raw CAN ID.
+     *
+     * @param rawId the raw CAN ID, with {@link tel.schich.javacan.CanId#EFF_FLAG} set for extended IDs
+     * @return the message or null if there is none
+     */
+    public @Nullable DbcMessage getMessage(int rawId) {
+        return messagesById.get(rawId);
+    }
+
+    /**
+     * Parses the given DBC content.
+     *
+     * @param dbc the DBC file content
+     * @return the parsed database
+     * @throws IllegalArgumentException if the content contains malformed definitions
+     */
+    public static DbcDatabase parse(String dbc) {
+        try {
+            return parse(new StringReader(dbc));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses a DBC file from the given reader. The reader is not closed.
+     *
+     * @param reader the reader providing the DBC file content
+     * @return the parsed database
+     * @throws IOException if reading fails
+     * @throws IllegalArgumentException if the content contains malformed definitions
+     */
+    public static DbcDatabase parse(Reader reader) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        Map<Integer, MessageDefinition> definitions = new LinkedHashMap<>();
+        Map<Integer, Map<String, Integer>> valueTypes = new HashMap<>();
+        @Nullable MessageDefinition current = null;
+        boolean inString = false;
+        int lineNumber = 0;
+
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            // strings (e.g. in comments) may span multiple lines and contain anything
+            boolean startsInString = inString;
+            inString ^= (countQuotes(line) % 2) == 1;
+            if (startsInString) {
+                continue;
+            }
+            String trimmed = line.trim();
+
+            if (trimmed.startsWith("BO_ ")) {
+                Matcher m = MESSAGE.matcher(trimmed);
+                if (!m.find()) {
+                    throw malformed(lineNumber, "message", line);
+                }
+                int rawId = (int) Long.parseLong(m.group(1));
+                current = new MessageDefinition(rawId, m.group(2), Integer.parseInt(m.group(3)), m.group(4));
+                if (definitions.put(rawId, current) != null) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": duplicate message ID " + m.group(1) + "!");
+                }
+            } else if (trimmed.startsWith("SG_ ")) {
+                if (current == null) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": signal outside of a message!");
+                }
+                Matcher m = SIGNAL.matcher(trimmed);
+                if (!m.find()) {
+                    throw malformed(lineNumber, "signal", line);
+                }
+                current.signals.add(parseSignal(m, lineNumber));
+            } else if (trimmed.startsWith("SIG_VALTYPE_ ")) {
+                Matcher m = VALUE_TYPE.matcher(trimmed);
+                if (!m.find()) {
+                    throw malformed(lineNumber, "signal value type", line);
+                }
+                int rawId = (int) Long.parseLong(m.group(1));
+                valueTypes.computeIfAbsent(rawId, id -> new HashMap<>()).put(m.group(2), Integer.parseInt(m.group(3)));
+            } else if (!trimmed.isEmpty()) {
+                current = null;
+            }
+        }
+
+        List<DbcMessage> messages = new ArrayList<>(definitions.size());
+        for (MessageDefinition definition : definitions.values()) {
+            Map<String, Integer> types = valueTypes.getOrDefault(definition.rawId, Collections.emptyMap());
+            List<DbcSignal> signals = new ArrayList<>(definition.signals.size());
+            for (DbcSignal signal : definition.signals) {
+                Integer type = types.get(signal.getName());
+                signals.add(type == null ? signal : signal.withValueType(type));
+            }
+            messages.add(new DbcMessage(definition.rawId, definition.name, definition.length, definition.transmitter, signals));
+        }
+        return new DbcDatabase(messages);
+    }
+
+    private static DbcSignal parseSignal(Matcher m, int lineNumber) {
+        String mux = m.group(2);
+        boolean multiplexor = false;
+        int multiplexValue = DbcSignal.NOT_MULTIPLEXED;
+        if (mux != null) {
+            if (mux.equals("M")) {
+                multiplexor = true;
+            } else {
+                multiplexor = mux.endsWith("M");
+                multiplexValue = Integer.parseInt(mux.substring(1, multiplexor ? mux.length() - 1 : mux.length()));
+            }
+        }
+        try {
+            return new DbcSignal(
+                    m.group(1),
+                    Integer.parseInt(m.group(3)),
+                    Integer.parseInt(m.group(4)),
+                    m.group(5).equals("1"),
+                    m.group(6).equals("-"),
+                    DbcSignal.VALUE_TYPE_INTEGER,
+                    Double.parseDouble(m.group(7)),
+                    Double.parseDouble(m.group(8)),
+                    Double.parseDouble(m.group(9)),
+                    Double.parseDouble(m.group(10)),
+                    m.group(11),
+                    multiplexor,
+                    multiplexValue);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": malformed number in signal " + m.group(1) + "!", e);
+        }
+    }
+
+    private static int countQuotes(String line) {
+        int count = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static IllegalArgumentException malformed(int lineNumber, String what, String line) {
+        return new IllegalArgumentException("Line " + lineNumber + ": malformed " + what + " definition: " + line);
+    }
+
+    private static final class MessageDefinition {
+        final int rawId;
+        final String name;
+        final int length;
+        final String transmitter;
+        final List<DbcSignal> signals = new ArrayList<>();
+
+        MessageDefinition(int rawId, String name, int length, String transmitter) {
+            this.rawId = rawId;
+            this.name = name;
+            this.length = length;
+            this.transmitter = transmitter;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.dbc;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A message definition as found in the {@code BO_} lines of a DBC file.
+ */
+public final class DbcMessage {
+    private final int rawId;
+    private final String name;
+    private final int length;
+    private final String transmitter;
+    private final List<DbcSignal> signals;
+
+    /**
+     * Creates a new message definition.
+     *
+     * @param rawId the raw CAN ID, with {@link tel.schich.javacan.CanId#EFF_FLAG} set for extended IDs (which is also
+     *              how DBC files mark them)
+     * @param name the name of the message
+     * @param length the length of the payload in bytes
+     * @param transmitter the name of the transmitting node
+     * @param signals the signals of the message
+     */
+    public DbcMessage(int rawId, String name, int length, String transmitter, List<DbcSignal> signals) {
+        this.rawId = rawId;
+        this.name = name;
+        this.length = length;
+        this.transmitter = transmitter;
+        this.signals = Collections.unmodifiableList(signals);
+    }
+
+    public int getRawId() {
+        return rawId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public String getTransmitter() {
+        return transmitter;
+    }
+
+    public List<DbcSignal> getSignals() {
+        return signals;
+    }
+
+    @Override
+    public String toString() {
+        return "DbcMessage(" +
+                "rawId=" + String.format("%X", rawId) +
+                ", name=" + name +
+                ", length=" + length +
+                ", signals=" + signals.size() +
+                ')';
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.dbc;
+
+/**
+ * A signal definition of a {@link DbcMessage} as found in the {@code SG_} lines of a DBC file.
+ */
+public final class DbcSignal {
+    /**
+     * The signal is not multiplexed and always present.
+     */
+    public static final int NOT_MULTIPLEXED = -1;
+
+    /**
+     * The raw value of the signal is an integer.
+     */
+    public static final int VALUE_TYPE_INTEGER = 0;
+    /**
+     * The raw value of the signal is a 32 bit IEEE float.
+     */
+    public static final int VALUE_TYPE_FLOAT = 1;
+    /**
+     * The raw value of the signal is a 64 bit IEEE double.
+     */
+    public static final int VALUE_TYPE_DOUBLE = 2;
+
+    private final String name;
+    private final int startBit;
+    private final int length;
+    private final boolean littleEndian;
+    private final boolean signed;
+    private final int valueType;
+    private final double factor;
+    private final double offset;
+    private final double minimum;
+    private final double maximum;
+    private final String unit;
+    private final boolean multiplexor;
+    private final int multiplexValue;
+
+    /**
+     * Creates a new signal definition.
+     *
+     * @param name the name of the signal
+     * @param startBit the start bit as given in the DBC file: the LSB for little endian signals, the MSB for big endian
+     *                 signals
+     * @param length the length of the signal in bits
+     * @param littleEndian true for little endian (Intel, {@code @1}), false for big endian (Motorola, {@code @0})
+     * @param signed whether the raw integer value is signed
+     * @param valueType the type of the raw value, one of the {@code VALUE_TYPE_} constants
+     * @param factor the factor applied to the raw value
+     * @param offset the offset added to the scaled value
+     * @param minimum the minimum physical value
+     * @param maximum the maximum physical value
+     * @param unit the unit of the physical value
+     * @param multiplexor whether this signal is the multiplexor of its message
+     * @param multiplexValue the multiplexor value this signal is present for or {@link #NOT_MULTIPLEXED}
+     */
+    public DbcSignal(String name, int startBit, int length, boolean littleEndian, boolean signed, int valueType,
+                     double factor, double offset, double minimum, double maximum, String unit, boolean multiplexor,
+                     int multiplexValue) {
+        this.name = name;
+        this.startBit = startBit;
+        this.length = length;
+        this.littleEndian = littleEndian;
+        this.signed = signed;
+        this.valueType = valueType;
+        this.factor = factor;
+        this.offset = offset;
+        this.minimum = minimum;
+        this.maximum = maximum;
+        this.unit = unit;
+        this.multiplexor = multiplexor;
+        this.multiplexValue = multiplexValue;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getStartBit() {
+        return startBit;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public boolean isLittleEndian() {
+        return littleEndian;
+    }
+
+    public boolean isSigned() {
+        return signed;
+    }
+
+    public int getValueType() {
+        return valueType;
+    }
+
+    public double getFactor() {
+        return factor;
+    }
+
+    public double getOffset() {
+        return offset;
+    }
+
+    public double getMinimum() {
+        return minimum;
+    }
+
+    public double getMaximum() {
+        return maximum;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public boolean isMultiplexor() {
+        return multiplexor;
+    }
+
+    public int getMultiplexValue() {
+        return multiplexValue;
+    }
+
+    /**
+     * Creates a copy of this signal with a different value type, as declared by a {@code SIG_VALTYPE_} line.
+     *
+     * @param valueType the type of the raw value, one of the {@code VALUE_TYPE_} constants
+     * @return the new signal
+     */
+    public DbcSignal withValueType(int valueType) {
+        return new DbcSignal(name, startBit, length, littleEndian, signed, valueType, factor, offset, minimum, maximum,
+                unit, multiplexor, multiplexValue);
+    }
+
+    @Override
+    public String toString() {
+        return "DbcSignal(" +
+                "name=" + name +
+                ", startBit=" + startBit +
+                ", length=" + length +
+                ", littleEndian=" + littleEndian +
+                ", signed=" + signed +
+                ", factor=" + factor +
+                ", offset=" + offset +
+                ", unit=" + unit +
+                ')';
+    }
+}
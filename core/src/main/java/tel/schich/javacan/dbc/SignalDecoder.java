@@ -0,0 +1,391 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.dbc;
+
+import org.eclipse.jdt.annotation.Nullable;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.CanId;
+import tel.schich.javacan.util.CanIdTable;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static tel.schich.javacan.CanFrame.HEADER_LENGTH;
+import static tel.schich.javacan.CanFrame.OFFSET_DATA_LENGTH;
+
+/**
+ * <p>
+ * This decoder extracts the signal values of CAN frames based on the definitions of a {@link DbcDatabase}. Each
+ * message definition is compiled into a {@link MessageDecoder}, a flat extraction plan of byte ranges, shifts and
+ * masks per signal, which reads directly from the buffer backing a {@link CanFrame} or from a batch buffer filled by
+ * {@link tel.schich.javacan.RawCanChannel#receiveBatch(ByteBuffer, int, int[], tel.schich.javacan.RawReceiveMessageHeaderBuffer[])}
+ * into caller-provided primitive arrays, without allocating.
+ * </p>
+ * <p>
+ * The decoder of a frame is found in constant time: standard IDs index a flat table, extended IDs are looked up in an
+ * open-addressed hash table. This class is immutable and thread-safe.
+ * </p>
+ */
+public final class SignalDecoder {
+    private static final int STANDARD_IDS = CanId.SFF_MASK + 1;
+
+    private final DbcDatabase database;
+    private final @Nullable MessageDecoder[] standard;
+    private final CanIdTable extendedKeys;
+    private final @Nullable MessageDecoder[] extended;
+
+    private SignalDecoder(DbcDatabase database) {
+        this.database = database;
+        this.standard = new MessageDecoder[STANDARD_IDS];
+        int extendedCount = 0;
+        for (DbcMessage message : database.getMessages()) {
+            if (isDecodable(message) && CanId.isExtended(message.getRawId())) {
+                extendedCount++;
+            }
+        }
+        this.extendedKeys = new CanIdTable(CanIdTable.capacityFor(extendedCount));
+        this.extended = new MessageDecoder[extendedKeys.capacity()];
+
+        for (DbcMessage message : database.getMessages()) {
+            if (!isDecodable(message)) {
+                continue;
+            }
+            int key = key(message.getRawId());
+            MessageDecoder decoder = new MessageDecoder(message);
+            if (CanId.isExtended(key)) {
+                extended[extendedKeys.claim(key)] = decoder;
+            } else {
+                standard[key] = decoder;
+            }
+        }
+    }
+
+    private static boolean isDecodable(DbcMessage message) {
+        // messages without payload, like the VECTOR__INDEPENDENT_SIG_MSG pseudo message that collects signals not
+        // assigned to any message, never carry signal values
+        return message.getLength() > 0;
+    }
+
+    /**
+     * Compiles all message definitions of the given database. Messages with a length of 0 are skipped.
+     *
+     * @param database the database
+     * @return the decoder
+     * @throws IllegalArgumentException if a signal does not fit into its message or has an unsupported layout
+     */
+    public static SignalDecoder compile(DbcDatabase database) {
+        return new SignalDecoder(database);
+    }
+
+    public DbcDatabase getDatabase() {
+        return database;
+    }
+
+    private static int key(int rawId) {
+        if (CanId.isExtended(rawId)) {
+            return CanId.EFF_FLAG | (rawId & CanId.EFF_MASK);
+        }
+        return rawId & CanId.SFF_MASK;
+    }
+
+    /**
+     * Finds the decoder for the given raw CAN ID.
+     *
+     * @param rawId the raw CAN ID, with {@link CanId#EFF_FLAG} set for extended IDs, other flags are ignored
+     * @return the decoder or null if the database has no message with this ID
+     */
+    public @Nullable MessageDecoder forId(int rawId) {
+        final int key = key(rawId);
+        if (!CanId.isExtended(key)) {
+            return standard[key];
+        }
+        int slot = extendedKeys.find(key);
+        return slot < 0 ? null : extended[slot];
+    }
+
+    /**
+     * Decodes the physical values of all signals of the given frame, see
+     * {@link MessageDecoder#decode(ByteBuffer, int, double[], int)}.
+     *
+     * @param frame the frame
+     * @param out the array receiving the values, indexed like {@link DbcMessage#getSignals()}
+     * @return the decoder that has been used or null if the database has no message with the ID of the frame
+     */
+    public @Nullable MessageDecoder decode(CanFrame frame, double[] out) {
+        MessageDecoder decoder = forId(frame.getRawId());
+        if (decoder != null) {
+            decoder.decode(frame.getBuffer(), frame.getBase(), out, 0);
+        }
+        return decoder;
+    }
+
+    /**
+     * Decodes the physical values of all signals of the frame at the given offset of the buffer, see
+     * {@link MessageDecoder#decode(ByteBuffer, int, double[], int)}.
+     *
+     * @param buffer the buffer containing the frame in native byte order
+     * @param base the offset of the frame in the buffer
+     * @param out the array receiving the values
+     * @param outOffset the index in the array to write the first value to
+     * @return the decoder that has been used or null if the database has no message with the ID of the frame
+     */
+    public @Nullable MessageDecoder decode(ByteBuffer buffer, int base, double[] out, int outOffset) {
+        MessageDecoder decoder = forId(buffer.getInt(base));
+        if (decoder != null) {
+            decoder.decode(buffer, base, out, outOffset);
+        }
+        return decoder;
+    }
+
+    /**
+     * The compiled extraction plan of a single message. The signals are kept in flat primitive arrays indexed like
+     * {@link DbcMessage#getSignals()}.
+     */
+    public static final class MessageDecoder {
+        private static final int MAX_BYTES_PER_SIGNAL = 9;
+
+        private final DbcMessage message;
+        private final int multiplexor;
+        private final int[] firstByte;
+        private final int[] lastByte;
+        private final int[] shift;
+        private final long[] mask;
+        private final int[] signBits;
+        private final boolean[] bigEndian;
+        private final int[] valueType;
+        private final double[] factor;
+        private final double[] offset;
+        private final int[] multiplexValue;
+
+        MessageDecoder(DbcMessage message) {
+            this.message = message;
+            List<DbcSignal> signals = message.getSignals();
+            int count = signals.size();
+            this.firstByte = new int[count];
+            this.lastByte = new int[count];
+            this.shift = new int[count];
+            this.mask = new long[count];
+            this.signBits = new int[count];
+            this.bigEndian = new boolean[count];
+            this.valueType = new int[count];
+            this.factor = new double[count];
+            this.offset = new double[count];
+            this.multiplexValue = new int[count];
+
+            int multiplexor = -1;
+            for (int i = 0; i < count; i++) {
+                DbcSignal signal = signals.get(i);
+                int start = signal.getStartBit();
+                int length = signal.getLength();
+                if (length < 1 || length > Long.SIZE) {
+                    throw invalid(signal, "must have a length between 1 and 64 bits");
+                }
+                if (signal.getValueType() == DbcSignal.VALUE_TYPE_FLOAT && length != Float.SIZE
+                        || signal.getValueType() == DbcSignal.VALUE_TYPE_DOUBLE && length != Double.SIZE) {
+                    throw invalid(signal, "has a length that does not match its floating point type");
+                }
+                if (signal.isLittleEndian()) {
+                    firstByte[i] = start / Byte.SIZE;
+                    lastByte[i] = (start + length - 1) / Byte.SIZE;
+                    shift[i] = start % Byte.SIZE;
+                } else {
+                    // the start bit is the MSB in the sawtooth numbering, convert it into a linear position
+                    int msb = (start / Byte.SIZE) * Byte.SIZE + (Byte.SIZE - 1 - start % Byte.SIZE);
+                    int lsb = msb + length - 1;
+                    firstByte[i] = msb / Byte.SIZE;
+                    lastByte[i] = lsb / Byte.SIZE;
+                    shift[i] = Byte.SIZE - 1 - lsb % Byte.SIZE;
+                }
+                if (lastByte[i] >= message.getLength()) {
+                    throw invalid(signal, "does not fit into " + message.getLength() + " bytes");
+                }
+                mask[i] = length == Long.SIZE ? -1L : (1L << length) - 1;
+                signBits[i] = signal.isSigned() && signal.getValueType() == DbcSignal.VALUE_TYPE_INTEGER ? Long.SIZE - length : -1;
+                bigEndian[i] = !signal.isLittleEndian();
+                valueType[i] = signal.getValueType();
+                factor[i] = signal.getFactor();
+                offset[i] = signal.getOffset();
+                multiplexValue[i] = signal.getMultiplexValue();
+                if (signal.isMultiplexor()) {
+                    if (multiplexor != -1) {
+                        throw invalid(signal, "is a second multiplexor");
+                    }
+                    multiplexor = i;
+                }
+            }
+            this.multiplexor = multiplexor;
+        }
+
+        private IllegalArgumentException invalid(DbcSignal signal, String reason) {
+            return new IllegalArgumentException("Signal " + signal.getName() + " of message " + message.getName() + " " + reason + "!");
+        }
+
+        public DbcMessage getMessage() {
+            return message;
+        }
+
+        public int getSignalCount() {
+            return firstByte.length;
+        }
+
+        /**
+         * Finds the index of a signal by its name.
+         *
+         * @param name the name of the signal
+         * @return the index or -1 if the message has no such signal
+         */
+        public int indexOf(String name) {
+            List<DbcSignal> signals = message.getSignals();
+            for (int i = 0; i < signals.size(); i++) {
+                if (signals.get(i).getName().equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private long extract(ByteBuffer buffer, int data, int signal) {
+            final int first = data + firstByte[signal];
+            final int bytes = lastByte[signal] - firstByte[signal] + 1;
+            final int end = first + Math.min(bytes, Long.BYTES);
+            final int s = shift[signal];
+            long raw = 0;
+            if (bigEndian[signal]) {
+                for (int i = first; i < end; i++) {
+                    raw = (raw << Byte.SIZE) | (buffer.get(i) & 0xFF);
+                }
+                if (bytes == MAX_BYTES_PER_SIGNAL) {
+                    raw = (raw << (Byte.SIZE - s)) | ((buffer.get(end) & 0xFF) >>> s);
+                } else {
+                    raw >>>= s;
+                }
+            } else {
+                for (int i = end - 1; i >= first; i--) {
+                    raw = (raw << Byte.SIZE) | (buffer.get(i) & 0xFF);
+                }
+                raw >>>= s;
+                if (bytes == MAX_BYTES_PER_SIGNAL) {
+                    raw |= (long) (buffer.get(end) & 0xFF) << (Long.SIZE - s);
+                }
+            }
+            raw &= mask[signal];
+            final int signBit = signBits[signal];
+            if (signBit > 0) {
+                raw = (raw << signBit) >> signBit;
+            }
+            return raw;
+        }
+
+        private boolean isPresent(int dataLength, int signal, long multiplexValue) {
+            return lastByte[signal] < dataLength
+                    && (this.multiplexValue[signal] == DbcSignal.NOT_MULTIPLEXED || this.multiplexValue[signal] == multiplexValue);
+        }
+
+        private long multiplexValue(ByteBuffer buffer, int data, int dataLength) {
+            if (multiplexor == -1 || lastByte[multiplexor] >= dataLength) {
+                return -1;
+            }
+            return extract(buffer, data, multiplexor);
+        }
+
+        /**
+         * Decodes the physical values ({@code raw * factor + offset}) of all signals of the frame at the given offset of
+         * the buffer. Signals that are not present, because the frame is shorter than the signal's position or the
+         * multiplexor selects a different group, are set to {@link Double#NaN}.
+         *
+         * @param buffer the buffer containing the frame in native byte order
+         * @param base the offset of the frame in the buffer
+         * @param out the array receiving the values
+         * @param outOffset the index in the array to write the value of the first signal to
+         */
+        public void decode(ByteBuffer buffer, int base, double[] out, int outOffset) {
+            final int data = base + HEADER_LENGTH;
+            final int dataLength = buffer.get(base + OFFSET_DATA_LENGTH) & 0xFF;
+            final long multiplexValue = multiplexValue(buffer, data, dataLength);
+            for (int i = 0; i < firstByte.length; i++) {
+                if (!isPresent(dataLength, i, multiplexValue)) {
+                    out[outOffset + i] = Double.NaN;
+                    continue;
+                }
+                final long raw = extract(buffer, data, i);
+                final double value;
+                switch (valueType[i]) {
+                    case DbcSignal.VALUE_TYPE_FLOAT:
+                        value = Float.intBitsToFloat((int) raw);
+                        break;
+                    case DbcSignal.VALUE_TYPE_DOUBLE:
+                        value = Double.longBitsToDouble(raw);
+                        break;
+                    default:
+                        if (raw < 0 && signBits[i] < 0) {
+                            // an unsigned 64 bit signal with its top bit set
+                            value = (raw >>> 1) * 2.0 + (raw & 1);
+                        } else {
+                            value = raw;
+                        }
+                        break;
+                }
+                out[outOffset + i] = value * factor[i] + offset[i];
+            }
+        }
+
+        /**
+         * Decodes the physical values of all signals of the given frame, see {@link #decode(ByteBuffer, int, double[], int)}.
+         *
+         * @param frame the frame
+         * @param out the array receiving the values, indexed like {@link DbcMessage#getSignals()}
+         */
+        public void decode(CanFrame frame, double[] out) {
+            decode(frame.getBuffer(), frame.getBase(), out, 0);
+        }
+
+        /**
+         * Extracts the raw values of all signals of the frame at the given offset of the buffer, sign-extended for signed
+         * integer signals and as bit patterns for floating point signals, without applying the factor and offset. Unsigned
+         * 64 bit signals are returned as their bit pattern, so values above {@link Long#MAX_VALUE} appear negative.
+         *
+         * @param buffer the buffer containing the frame in native byte order
+         * @param base the offset of the frame in the buffer
+         * @param out the array receiving the values
+         * @param outOffset the index in the array to write the value of the first signal to
+         * @return a bit set of the signals that are present, signals beyond the 64th are always considered present
+         */
+        public long decodeRaw(ByteBuffer buffer, int base, long[] out, int outOffset) {
+            final int data = base + HEADER_LENGTH;
+            final int dataLength = buffer.get(base + OFFSET_DATA_LENGTH) & 0xFF;
+            final long multiplexValue = multiplexValue(buffer, data, dataLength);
+            long present = -1L;
+            for (int i = 0; i < firstByte.length; i++) {
+                if (isPresent(dataLength, i, multiplexValue)) {
+                    out[outOffset + i] = extract(buffer, data, i);
+                } else {
+                    out[outOffset + i] = 0;
+                    if (i < Long.SIZE) {
+                        present &= ~(1L << i);
+                    }
+                }
+            }
+            return present;
+        }
+    }
+}
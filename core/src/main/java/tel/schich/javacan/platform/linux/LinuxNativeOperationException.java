@@ -48,6 +48,11 @@ public class LinuxNativeOperationException extends IOException {
      */
     public static final int ENODEV = 19;
 
+    /**
+     * No buffer space available
+     */
+    public static final int ENOBUFS = 105;
+
     /**
      * The native error number or 0 if no native error code was provided.
      */
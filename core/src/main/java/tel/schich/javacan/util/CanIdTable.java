@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import tel.schich.javacan.CanId;
+
+/**
+ * A fixed capacity open addressing hash table of CAN IDs with linear probing. The table only maps keys to slots,
+ * callers keep the associated values in their own arrays or buffers indexed by the slot. Keys never have the
+ * {@link CanId#ERR_FLAG} set, which makes it available as the marker of empty slots.
+ * <p>
+ * Keys can be claimed concurrently, but never removed. Lookups are safe while other threads claim keys.
+ * </p>
+ */
+public final class CanIdTable {
+    private static final int EMPTY = CanId.ERR_FLAG;
+
+    private final AtomicIntegerArray keys;
+    private final int mask;
+
+    /**
+     * Creates a new empty table.
+     *
+     * @param capacity the amount of slots, must be a power of two
+     */
+    public CanIdTable(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of two, but was " + capacity + "!");
+        }
+        this.keys = new AtomicIntegerArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            keys.lazySet(i, EMPTY);
+        }
+    }
+
+    /**
+     * Computes a capacity that keeps the load factor of a table with the given amount of keys at most at 0.5.
+     *
+     * @param count the amount of keys
+     * @return a power of two
+     */
+    public static int capacityFor(int count) {
+        return Integer.highestOneBit(Math.max(1, count) * 2 - 1) << 1;
+    }
+
+    /**
+     * Spreads the bits of a CAN ID, so that consecutive IDs are distributed over the lower bits.
+     *
+     * @param key the key
+     * @return the hash
+     */
+    public static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Finds the slot of the given key.
+     *
+     * @param key the key, without the {@link CanId#ERR_FLAG}
+     * @return the slot or -1 if the key is not in the table
+     */
+    public int find(int key) {
+        int slot = hash(key) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            int existing = keys.get(slot);
+            if (existing == key) {
+                return slot;
+            }
+            if (existing == EMPTY) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the slot of the given key, claiming a free slot for it if it is not yet in the table.
+     *
+     * @param key the key, without the {@link CanId#ERR_FLAG}
+     * @return the slot or -1 if the key is not in the table and the table is full
+     * @throws IllegalArgumentException if the key has the {@link CanId#ERR_FLAG} set
+     */
+    public int claim(int key) {
+        if ((key & EMPTY) != 0) {
+            throw new IllegalArgumentException("The key must not have the error flag set!");
+        }
+        int slot = hash(key) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            int existing = keys.get(slot);
+            if (existing == key) {
+                return slot;
+            }
+            if (existing == EMPTY) {
+                if (keys.compareAndSet(slot, EMPTY, key)) {
+                    return slot;
+                }
+                // another thread claimed the slot, check whether it was for the same key
+                if (keys.get(slot) == key) {
+                    return slot;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the key in the given slot.
+     *
+     * @param slot the slot
+     * @return the key or {@link CanId#ERR_FLAG} if the slot is empty
+     */
+    public int keyAt(int slot) {
+        return keys.get(slot);
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.eclipse.jdt.annotation.Nullable;
+import tel.schich.javacan.CanFilter;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.RawReceiveMessageHeaderBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static tel.schich.javacan.CanFrame.HEADER_LENGTH;
+import static tel.schich.javacan.CanFrame.MAX_DATA_LENGTH;
+import static tel.schich.javacan.CanFrame.MAX_FD_DATA_LENGTH;
+
+/**
+ * <p>
+ * This class stores CAN frames in a struct-of-arrays layout: the raw CAN ID, the data length, the flags, the receive
+ * timestamp, the device index and the payload are kept in separate primitive columns, which grow in off-heap chunks.
+ * Scans like {@link #count(CanFilter)} or {@link #selectTimeRange(long, long)} only touch the columns they need and
+ * run as tight loops over primitive values instead of chasing {@link CanFrame} objects.
+ * </p>
+ * <p>
+ * Frames can only be appended, either one by one or in bulk from the buffers filled by
+ * {@link RawCanChannel#receiveBatch(ByteBuffer, int, int[], RawReceiveMessageHeaderBuffer[])}. This class is not
+ * thread-safe.
+ * </p>
+ */
+public final class ColumnarFrameStore {
+    public static final int DEFAULT_CHUNK_CAPACITY = 1 << 16;
+
+    private static final int[] NO_INDICES = new int[0];
+
+    private final int chunkShift;
+    private final int chunkMask;
+    private final int payloadWidth;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private int size;
+
+    public ColumnarFrameStore() {
+        this(DEFAULT_CHUNK_CAPACITY, false);
+    }
+
+    /**
+     * Creates a new store.
+     *
+     * @param chunkCapacity the amount of frames per chunk, must be a power of two
+     * @param fd whether FD payloads (up to 64 bytes) should be stored, otherwise payloads are truncated to 8 bytes
+     */
+    public ColumnarFrameStore(int chunkCapacity, boolean fd) {
+        if (chunkCapacity < 1 || Integer.bitCount(chunkCapacity) != 1) {
+            throw new IllegalArgumentException("The chunk capacity must be a power of two!");
+        }
+        this.chunkShift = Integer.numberOfTrailingZeros(chunkCapacity);
+        this.chunkMask = chunkCapacity - 1;
+        this.payloadWidth = fd ? MAX_FD_DATA_LENGTH : MAX_DATA_LENGTH;
+    }
+
+    /**
+     * The amount of frames in this store.
+     *
+     * @return the amount of frames
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all frames while keeping the allocated chunks.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    private Chunk writableChunk() {
+        int chunkIndex = size >>> chunkShift;
+        if (chunkIndex == chunks.size()) {
+            chunks.add(new Chunk(chunkMask + 1, payloadWidth));
+        }
+        return chunks.get(chunkIndex);
+    }
+
+    private void appendRaw(ByteBuffer frames, int base, int rawId, int length, byte flags, long timestampNanos, int deviceIndex) {
+        Chunk chunk = writableChunk();
+        int i = size & chunkMask;
+        int storedLength = Math.min(length, payloadWidth);
+        chunk.ids.putInt(i * Integer.BYTES, rawId);
+        chunk.lengths.put(i, (byte) length);
+        chunk.flags.put(i, flags);
+        chunk.timestamps.putLong(i * Long.BYTES, timestampNanos);
+        chunk.devices.putInt(i * Integer.BYTES, deviceIndex);
+        int payloadBase = i * payloadWidth;
+        int dataOffset = base + HEADER_LENGTH;
+        for (int j = 0; j < storedLength; j++) {
+            chunk.payloads.put(payloadBase + j, frames.get(dataOffset + j));
+        }
+        size++;
+    }
+
+    /**
+     * Appends a single frame.
+     *
+     * @param frame the frame
+     * @param timestampNanos the receive timestamp in nanoseconds since the epoch
+     * @param deviceIndex the index of the device the frame has been received from
+     */
+    public void append(CanFrame frame, long timestampNanos, int deviceIndex) {
+        ByteBuffer buffer = frame.getBuffer();
+        appendRaw(buffer, frame.getBase(), frame.getRawId(), frame.getDataLength(), frame.getFlags(), timestampNanos, deviceIndex);
+    }
+
+    /**
+     * Appends the frames received by
+     * {@link RawCanChannel#receiveBatch(ByteBuffer, int, int[], RawReceiveMessageHeaderBuffer[])}, starting at the
+     * buffer's position. The buffer's position and limit are not changed.
+     *
+     * @param buffer the buffer containing the frames in native byte order
+     * @param frameStride the distance between the frames in the buffer
+     * @param count the amount of frames to append
+     * @param messageHeaderBuffers the message headers of the frames, which provide the timestamps and device indices,
+     *                             or null to use the given timestamp and device index for all frames
+     * @param timestampNanos the timestamp to use if no message headers are given
+     * @param deviceIndex the device index to use if no message headers are given
+     */
+    public void appendBatch(ByteBuffer buffer, int frameStride, int count, RawReceiveMessageHeaderBuffer @Nullable [] messageHeaderBuffers, long timestampNanos, int deviceIndex) {
+        if (messageHeaderBuffers != null && messageHeaderBuffers.length < count) {
+            throw new IllegalArgumentException("A message header buffer is required for every frame!");
+        }
+        int base = buffer.position();
+        for (int i = 0; i < count; i++) {
+            int frameBase = base + i * frameStride;
+            int rawId = buffer.getInt(frameBase);
+            int length = buffer.get(frameBase + Integer.BYTES);
+            byte flags = buffer.get(frameBase + Integer.BYTES + 1);
+            if (messageHeaderBuffers != null) {
+                RawReceiveMessageHeaderBuffer header = messageHeaderBuffers[i];
+                appendRaw(buffer, frameBase, rawId, length, flags, header.getSoftwareTimestampNanos(), header.getDeviceIndex());
+            } else {
+                appendRaw(buffer, frameBase, rawId, length, flags, timestampNanos, deviceIndex);
+            }
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+
+    private Chunk chunkOf(int index) {
+        checkIndex(index);
+        return chunks.get(index >>> chunkShift);
+    }
+
+    /**
+     * Returns the full 32 bit CAN ID of a frame.
+     *
+     * @param index the index of the frame
+     * @return the raw CAN ID
+     */
+    public int getRawId(int index) {
+        return chunkOf(index).ids.getInt((index & chunkMask) * Integer.BYTES);
+    }
+
+    /**
+     * Returns the data length of a frame.
+     *
+     * @param index the index of the frame
+     * @return the data length
+     */
+    public int getDataLength(int index) {
+        return chunkOf(index).lengths.get(index & chunkMask);
+    }
+
+    /**
+     * Returns the flags of a frame.
+     *
+     * @param index the index of the frame
+     * @return the flags
+     */
+    public byte getFlags(int index) {
+        return chunkOf(index).flags.get(index & chunkMask);
+    }
+
+    /**
+     * Returns the receive timestamp of a frame.
+     *
+     * @param index the index of the frame
+     * @return the timestamp in nanoseconds since the epoch
+     */
+    public long getTimestampNanos(int index) {
+        return chunkOf(index).timestamps.getLong((index & chunkMask) * Long.BYTES);
+    }
+
+    /**
+     * Returns the index of the device a frame has been received from.
+     *
+     * @param index the index of the frame
+     * @return the device index
+     */
+    public int getDeviceIndex(int index) {
+        return chunkOf(index).devices.getInt((index & chunkMask) * Integer.BYTES);
+    }
+
+    /**
+     * Copies the stored payload of a frame into the given array.
+     *
+     * @param index the index of the frame
+     * @param dest the destination array
+     * @param offset the offset within the destination array
+     * @return the amount of bytes copied, which might be less than the data length if the payload has been truncated
+     */
+    public int getData(int index, byte[] dest, int offset) {
+        Chunk chunk = chunkOf(index);
+        int length = Math.min(getDataLength(index), payloadWidth);
+        int payloadBase = (index & chunkMask) * payloadWidth;
+        for (int i = 0; i < length; i++) {
+            dest[offset + i] = chunk.payloads.get(payloadBase + i);
+        }
+        return length;
+    }
+
+    /**
+     * Counts the frames matching the given filter, honoring inverted filters.
+     *
+     * @param filter the filter
+     * @return the amount of matching frames
+     */
+    public int count(CanFilter filter) {
+        return count(filter.getId(), filter.getMask(), filter.isInverted());
+    }
+
+    private int count(int id, int mask, boolean inverted) {
+        final int expected = id & mask;
+        int count = 0;
+        int remaining = size;
+        for (int c = 0; remaining > 0; c++) {
+            ByteBuffer ids = chunks.get(c).ids;
+            int n = Math.min(remaining, chunkMask + 1);
+            for (int i = 0; i < n; i++) {
+                if (((ids.getInt(i * Integer.BYTES) & mask) == expected) != inverted) {
+                    count++;
+                }
+            }
+            remaining -= n;
+        }
+        return count;
+    }
+
+    /**
+     * Selects the indices of the frames matching the given filter, honoring inverted filters.
+     *
+     * @param filter the filter
+     * @return the indices of all matching frames in ascending order
+     */
+    public int[] select(CanFilter filter) {
+        final int mask = filter.getMask();
+        final int expected = filter.getId() & mask;
+        final boolean inverted = filter.isInverted();
+        IndexCollector out = new IndexCollector();
+        int remaining = size;
+        for (int c = 0; remaining > 0; c++) {
+            ByteBuffer ids = chunks.get(c).ids;
+            int n = Math.min(remaining, chunkMask + 1);
+            int chunkBase = c << chunkShift;
+            for (int i = 0; i < n; i++) {
+                if (((ids.getInt(i * Integer.BYTES) & mask) == expected) != inverted) {
+                    out.add(chunkBase + i);
+                }
+            }
+            remaining -= n;
+        }
+        return out.toArray();
+    }
+
+    /**
+     * Counts the frames with a timestamp in the given range.
+     *
+     * @param fromNanos the inclusive start of the range in nanoseconds since the epoch
+     * @param toNanos the exclusive end of the range in nanoseconds since the epoch
+     * @return the amount of frames within the range
+     */
+    public int countTimeRange(long fromNanos, long toNanos) {
+        int count = 0;
+        int remaining = size;
+        for (int c = 0; remaining > 0; c++) {
+            ByteBuffer timestamps = chunks.get(c).timestamps;
+            int n = Math.min(remaining, chunkMask + 1);
+            for (int i = 0; i < n; i++) {
+                long ts = timestamps.getLong(i * Long.BYTES);
+                if (ts >= fromNanos && ts < toNanos) {
+                    count++;
+                }
+            }
+            remaining -= n;
+        }
+        return count;
+    }
+
+    /**
+     * Selects the indices of the frames with a timestamp in the given range.
+     *
+     * @param fromNanos the inclusive start of the range in nanoseconds since the epoch
+     * @param toNanos the exclusive end of the range in nanoseconds since the epoch
+     * @return the indices of all frames within the range in ascending order
+     */
+    public int[] selectTimeRange(long fromNanos, long toNanos) {
+        IndexCollector out = new IndexCollector();
+        int remaining = size;
+        for (int c = 0; remaining > 0; c++) {
+            ByteBuffer timestamps = chunks.get(c).timestamps;
+            int n = Math.min(remaining, chunkMask + 1);
+            int chunkBase = c << chunkShift;
+            for (int i = 0; i < n; i++) {
+                long ts = timestamps.getLong(i * Long.BYTES);
+                if (ts >= fromNanos && ts < toNanos) {
+                    out.add(chunkBase + i);
+                }
+            }
+            remaining -= n;
+        }
+        return out.toArray();
+    }
+
+    private static final class Chunk {
+        final ByteBuffer ids;
+        final ByteBuffer lengths;
+        final ByteBuffer flags;
+        final ByteBuffer timestamps;
+        final ByteBuffer devices;
+        final ByteBuffer payloads;
+
+        Chunk(int capacity, int payloadWidth) {
+            this.ids = JavaCAN.allocateOrdered(capacity * Integer.BYTES);
+            this.lengths = JavaCAN.allocateOrdered(capacity);
+            this.flags = JavaCAN.allocateOrdered(capacity);
+            this.timestamps = JavaCAN.allocateOrdered(capacity * Long.BYTES);
+            this.devices = JavaCAN.allocateOrdered(capacity * Integer.BYTES);
+            this.payloads = JavaCAN.allocateOrdered(capacity * payloadWidth);
+        }
+    }
+
+    private static final class IndexCollector {
+        private int[] indices = NO_INDICES;
+        private int size;
+
+        void add(int index) {
+            if (size == indices.length) {
+                indices = Arrays.copyOf(indices, Math.max(16, indices.length * 2));
+            }
+            indices[size++] = index;
+        }
+
+        int[] toArray() {
+            return size == indices.length ? indices : Arrays.copyOf(indices, size);
+        }
+    }
+}
@@ -27,7 +27,9 @@ package tel.schich.javacan.util;
  * view, as the last message is always in the last array position. Debugging is the <strong>only</strong> intended use-case
  * for this queue!
  * @param <T> The element type, should provide a good toString() implementation for debug purposes
+ * @deprecated use {@link FrameHistory} to keep recent frames, it does not lock and supports snapshots
  */
+@Deprecated
 public final class EvictingQueue<T> {
     private int i;
     private final T[] buf;
@@ -0,0 +1,154 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.RawCanChannel;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * <p>
+ * This pool hands out direct {@link ByteBuffer}s with a size of either {@link RawCanChannel#MTU} or
+ * {@link RawCanChannel#FD_MTU} bytes in native byte order. The buffers are slices of larger slabs that are allocated
+ * on demand and never freed, so allocating frames and receive buffers from the pool avoids the cost of allocating
+ * individual direct buffers and ties their lifecycle to explicit {@link #release(ByteBuffer)} calls instead of the GC.
+ * </p>
+ * <p>
+ * A released buffer must not be used anymore, including any {@link CanFrame} backed by it. Only buffers acquired from
+ * this pool must be released to it. This class is thread-safe.
+ * </p>
+ */
+public final class FrameBufferPool {
+    public static final int DEFAULT_SLOTS_PER_SLAB = 64;
+
+    private final SlotClass mtuSlots;
+    private final SlotClass fdMtuSlots;
+
+    public FrameBufferPool() {
+        this(DEFAULT_SLOTS_PER_SLAB);
+    }
+
+    /**
+     * Creates a new pool.
+     *
+     * @param slotsPerSlab the amount of buffers allocated at once when the pool runs out of free buffers
+     */
+    public FrameBufferPool(int slotsPerSlab) {
+        if (slotsPerSlab < 1) {
+            throw new IllegalArgumentException("A slab needs at least one slot!");
+        }
+        this.mtuSlots = new SlotClass(RawCanChannel.MTU, slotsPerSlab);
+        this.fdMtuSlots = new SlotClass(RawCanChannel.FD_MTU, slotsPerSlab);
+    }
+
+    private SlotClass slotsFor(int size) {
+        if (size == RawCanChannel.MTU) {
+            return mtuSlots;
+        } else if (size == RawCanChannel.FD_MTU) {
+            return fdMtuSlots;
+        } else {
+            throw new IllegalArgumentException("size must be either MTU or FD_MTU, but was " + size + "!");
+        }
+    }
+
+    /**
+     * Acquires a cleared buffer with the given size from this pool.
+     *
+     * @param size either {@link RawCanChannel#MTU} or {@link RawCanChannel#FD_MTU}
+     * @return the buffer
+     */
+    public ByteBuffer acquire(int size) {
+        return slotsFor(size).acquire();
+    }
+
+    /**
+     * Returns a buffer to this pool.
+     *
+     * @param buffer the buffer that has been acquired from this pool
+     */
+    public void release(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("The buffer has not been acquired from a pool!");
+        }
+        slotsFor(buffer.capacity()).release(buffer);
+    }
+
+    /**
+     * Returns the backing buffer of a frame to this pool.
+     *
+     * @param frame a frame that has been created from a buffer of this pool
+     */
+    public void release(CanFrame frame) {
+        release(frame.getBuffer());
+    }
+
+    /**
+     * The amount of buffers that are currently available without allocating a new slab.
+     *
+     * @param size either {@link RawCanChannel#MTU} or {@link RawCanChannel#FD_MTU}
+     * @return the amount of free buffers
+     */
+    public int getFreeCount(int size) {
+        return slotsFor(size).getFreeCount();
+    }
+
+    private static final class SlotClass {
+        private final int size;
+        private final int slotsPerSlab;
+        private final ArrayDeque<ByteBuffer> free;
+
+        SlotClass(int size, int slotsPerSlab) {
+            this.size = size;
+            this.slotsPerSlab = slotsPerSlab;
+            this.free = new ArrayDeque<>(slotsPerSlab);
+        }
+
+        synchronized ByteBuffer acquire() {
+            ByteBuffer buffer = free.poll();
+            if (buffer == null) {
+                allocateSlab();
+                buffer = free.remove();
+            }
+            return buffer;
+        }
+
+        synchronized void release(ByteBuffer buffer) {
+            buffer.clear();
+            free.push(buffer);
+        }
+
+        synchronized int getFreeCount() {
+            return free.size();
+        }
+
+        private void allocateSlab() {
+            ByteBuffer slab = JavaCAN.allocateOrdered(size * slotsPerSlab);
+            for (int i = 0; i < slotsPerSlab; i++) {
+                free.add(JavaCAN.sliceOrdered(slab, i * size, size));
+            }
+        }
+    }
+}
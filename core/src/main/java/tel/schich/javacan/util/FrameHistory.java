@@ -0,0 +1,238 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.RawCanChannel;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * <p>
+ * This class keeps the most recent CAN frames together with their receive timestamps in a single direct ring buffer,
+ * overwriting the oldest frame once it is full. It is meant for keeping the last seconds of bus traffic around for
+ * fault snapshots, without slowing down the thread that receives the frames.
+ * </p>
+ * <p>
+ * There must only be a single writer calling {@link #record(CanFrame, long)}, but any amount of threads can take
+ * snapshots concurrently. Readers never block the writer: the slots are grouped into segments, each guarded by a
+ * {@link StampedLock} that is only ever used for optimistic reads. A reader copies a slot and validates the stamp of
+ * its segment afterwards, retrying if the writer touched the segment in the meantime (seqlock-style). Frames that got
+ * overwritten while a snapshot was taken are simply missing from it.
+ * </p>
+ * <p>
+ * Snapshots are written into a caller-provided buffer as consecutive records of {@link #RECORD_SIZE} bytes, oldest
+ * first. Each record holds the timestamp at {@link #OFFSET_TIMESTAMP}, the frame length at {@link #OFFSET_LENGTH}
+ * and the frame itself at {@link #OFFSET_FRAME}, all in native byte order.
+ * </p>
+ */
+public final class FrameHistory {
+    public static final int OFFSET_TIMESTAMP = 0;
+    public static final int OFFSET_LENGTH = OFFSET_TIMESTAMP + Long.BYTES;
+    public static final int OFFSET_FRAME = OFFSET_LENGTH + Long.BYTES;
+    public static final int RECORD_SIZE = OFFSET_FRAME + RawCanChannel.FD_MTU;
+
+    private static final int OFFSET_SEQUENCE = RECORD_SIZE;
+    private static final int SLOT_SIZE = OFFSET_SEQUENCE + Long.BYTES;
+    private static final int SLOTS_PER_SEGMENT = 16;
+
+    private final int mask;
+    private final int segmentShift;
+    private final ByteBuffer ring;
+    private final StampedLock[] segments;
+    private final AtomicLong head = new AtomicLong(-1);
+
+    /**
+     * Creates a new history.
+     *
+     * @param capacity the amount of frames to keep, must be a power of two
+     */
+    public FrameHistory(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of two, but was " + capacity + "!");
+        }
+        this.mask = capacity - 1;
+        int slotsPerSegment = Math.min(capacity, SLOTS_PER_SEGMENT);
+        this.segmentShift = Integer.numberOfTrailingZeros(slotsPerSegment);
+        this.ring = JavaCAN.allocateOrdered(capacity * SLOT_SIZE);
+        this.segments = new StampedLock[capacity / slotsPerSegment];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new StampedLock();
+        }
+        for (int i = 0; i < capacity; i++) {
+            ring.putLong(i * SLOT_SIZE + OFFSET_SEQUENCE, -1);
+        }
+    }
+
+    /**
+     * The maximum amount of frames kept by this history.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * The amount of frames recorded since this history has been created, including those that have been overwritten.
+     *
+     * @return the amount of recorded frames
+     */
+    public long getRecordedCount() {
+        return head.get() + 1;
+    }
+
+    /**
+     * Records a frame, overwriting the oldest frame if the history is full. This must only be called by a single
+     * thread.
+     *
+     * @param frame the frame
+     * @param timestampNanos the receive timestamp in nanoseconds since the epoch
+     */
+    public void record(CanFrame frame, long timestampNanos) {
+        record(frame.getBuffer(), frame.getBase(), frame.getSize(), timestampNanos);
+    }
+
+    /**
+     * Records a frame from the given buffer, for example one of the frames received by
+     * {@link RawCanChannel#receiveBatch(ByteBuffer, int, int[], tel.schich.javacan.RawReceiveMessageHeaderBuffer[])}.
+     * This must only be called by a single thread.
+     *
+     * @param buffer the buffer containing the frame in native byte order
+     * @param base the offset of the frame in the buffer
+     * @param length the length of the frame, either {@link RawCanChannel#MTU} or {@link RawCanChannel#FD_MTU}
+     * @param timestampNanos the receive timestamp in nanoseconds since the epoch
+     */
+    public void record(ByteBuffer buffer, int base, int length, long timestampNanos) {
+        if (length != RawCanChannel.MTU && length != RawCanChannel.FD_MTU) {
+            throw new IllegalArgumentException("length must be either MTU or FD_MTU, but was " + length + "!");
+        }
+        final long sequence = head.get() + 1;
+        final int slot = (int) (sequence & mask);
+        final int offset = slot * SLOT_SIZE;
+        final StampedLock segment = segments[slot >>> segmentShift];
+
+        // readers only ever read optimistically, so this never waits
+        final long stamp = segment.writeLock();
+        try {
+            ring.putLong(offset + OFFSET_TIMESTAMP, timestampNanos);
+            ring.putLong(offset + OFFSET_LENGTH, length);
+            for (int i = 0; i < length; i += Long.BYTES) {
+                ring.putLong(offset + OFFSET_FRAME + i, buffer.getLong(base + i));
+            }
+            ring.putLong(offset + OFFSET_SEQUENCE, sequence);
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+        head.set(sequence);
+    }
+
+    /**
+     * Copies all frames currently in this history into the given buffer, see {@link #snapshot(ByteBuffer, long, long)}.
+     *
+     * @param dest the buffer to write the records to, starting at its position
+     * @return the amount of records written
+     */
+    public int snapshot(ByteBuffer dest) {
+        return snapshot(dest, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Copies the frames with a timestamp within {@code [fromNanos, toNanos]} into the given buffer as consecutive
+     * records, oldest first, and advances its position accordingly. If the buffer is too small to hold all of them,
+     * only the oldest frames are copied, so a buffer of {@link #getCapacity()} * {@link #RECORD_SIZE} bytes is enough
+     * for any snapshot.
+     *
+     * @param dest the buffer to write the records to, starting at its position, must use native byte order
+     * @param fromNanos the lower bound of the timestamps (inclusive)
+     * @param toNanos the upper bound of the timestamps (inclusive)
+     * @return the amount of records written
+     */
+    public int snapshot(ByteBuffer dest, long fromNanos, long toNanos) {
+        if (dest.order() != ByteOrder.nativeOrder()) {
+            throw new IllegalArgumentException("The buffer must use the native byte order!");
+        }
+        final long last = head.get();
+        final long first = Math.max(0, last - mask);
+        int position = dest.position();
+        int count = 0;
+        for (long sequence = first; sequence <= last && dest.limit() - position >= RECORD_SIZE; sequence++) {
+            final int slot = (int) (sequence & mask);
+            final int offset = slot * SLOT_SIZE;
+            final StampedLock segment = segments[slot >>> segmentShift];
+            long storedSequence;
+            long timestamp;
+            while (true) {
+                final long stamp = segment.tryOptimisticRead();
+                if (stamp == 0) {
+                    Thread.yield();
+                    continue;
+                }
+                storedSequence = ring.getLong(offset + OFFSET_SEQUENCE);
+                timestamp = ring.getLong(offset + OFFSET_TIMESTAMP);
+                for (int i = 0; i < OFFSET_SEQUENCE; i += Long.BYTES) {
+                    dest.putLong(position + i, ring.getLong(offset + i));
+                }
+                if (segment.validate(stamp)) {
+                    break;
+                }
+            }
+            if (storedSequence == sequence && timestamp >= fromNanos && timestamp <= toNanos) {
+                position += RECORD_SIZE;
+                count++;
+            }
+        }
+        dest.position(position);
+        return count;
+    }
+
+    /**
+     * Reads the timestamp of a record written by {@link #snapshot(ByteBuffer, long, long)}.
+     *
+     * @param records the buffer containing the records
+     * @param base the offset of the snapshot in the buffer
+     * @param index the index of the record
+     * @return the receive timestamp in nanoseconds since the epoch
+     */
+    public static long getTimestamp(ByteBuffer records, int base, int index) {
+        return records.getLong(base + index * RECORD_SIZE + OFFSET_TIMESTAMP);
+    }
+
+    /**
+     * Creates a frame backed by a record written by {@link #snapshot(ByteBuffer, long, long)}.
+     *
+     * @param records the buffer containing the records
+     * @param base the offset of the snapshot in the buffer
+     * @param index the index of the record
+     * @return the frame
+     */
+    public static CanFrame getFrame(ByteBuffer records, int base, int index) {
+        int offset = base + index * RECORD_SIZE;
+        int length = (int) records.getLong(offset + OFFSET_LENGTH);
+        return CanFrame.create(JavaCAN.sliceOrdered(records, offset + OFFSET_FRAME, length));
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.SymbolLookup;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * This class performs the plain socket IO of the channels by calling the C library through the foreign function
+ * interface, which avoids the JNI transitions and allows the JIT to optimize across the call. {@code errno} is captured
+ * by the linker, so the exceptions are created in Java with the same messages as the JNI functions of
+ * {@link SocketCAN}.
+ * <p>
+ * If the downcall handles can not be created, e.g. because native access has been denied or {@code size_t} is not 64
+ * bits wide, all calls are delegated to the JNI functions instead.
+ * </p>
+ * Just like {@link SocketCAN} this is only meant for internal consumption and can change at any point!
+ */
+final class SocketIO {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SocketIO.class);
+
+    private static final int EWOULDBLOCK = LinuxNativeOperationException.EAGAIN;
+
+    private static final StructLayout CALL_STATE = Linker.Option.captureStateLayout();
+    private static final long ERRNO_OFFSET = CALL_STATE.byteOffset(MemoryLayout.PathElement.groupElement("errno"));
+    private static final ThreadLocal<MemorySegment> CALL_STATES =
+            ThreadLocal.withInitial(() -> Arena.ofAuto().allocate(CALL_STATE));
+
+    private static final MethodHandle WRITE;
+    private static final MethodHandle READ;
+    private static final MethodHandle SEND;
+    private static final MethodHandle RECV;
+    private static final MethodHandle STRERROR;
+    private static final boolean FOREIGN;
+
+    static {
+        MethodHandle write = null;
+        MethodHandle read = null;
+        MethodHandle send = null;
+        MethodHandle recv = null;
+        MethodHandle strerror = null;
+        boolean foreign = false;
+        if (ADDRESS.byteSize() == Long.BYTES) {
+            try {
+                Linker linker = Linker.nativeLinker();
+                SymbolLookup libc = linker.defaultLookup();
+                Linker.Option errno = Linker.Option.captureCallState("errno");
+                // ssize_t read(int fd, void *buf, size_t count), write has the same signature
+                FunctionDescriptor io = FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG);
+                // ssize_t recv(int sockfd, void *buf, size_t len, int flags), send has the same signature
+                FunctionDescriptor socketIo = FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG, JAVA_INT);
+                write = linker.downcallHandle(libc.find("write").orElseThrow(), io, errno);
+                read = linker.downcallHandle(libc.find("read").orElseThrow(), io, errno);
+                send = linker.downcallHandle(libc.find("send").orElseThrow(), socketIo, errno);
+                recv = linker.downcallHandle(libc.find("recv").orElseThrow(), socketIo, errno);
+                strerror = linker.downcallHandle(libc.find("strerror").orElseThrow(), FunctionDescriptor.of(ADDRESS, JAVA_INT));
+                foreign = true;
+            } catch (RuntimeException e) {
+                LOGGER.debug("Unable to bind the socket IO through the foreign function interface, falling back to JNI", e);
+            }
+        }
+        WRITE = write;
+        READ = read;
+        SEND = send;
+        RECV = recv;
+        STRERROR = strerror;
+        FOREIGN = foreign;
+    }
+
+    private SocketIO() {
+    }
+
+    /**
+     * Checks if the socket IO is performed through the foreign function interface.
+     *
+     * @return true if the foreign function interface is used, false if JNI is used
+     */
+    static boolean isForeign() {
+        return FOREIGN;
+    }
+
+    static long write(int sock, ByteBuffer buf, int offset, int len) throws LinuxNativeOperationException {
+        if (!FOREIGN) {
+            return SocketCAN.write(sock, buf, offset, len);
+        }
+        return orThrow(io(WRITE, sock, buf, offset, len), "Unable to write to the socket");
+    }
+
+    static long read(int sock, ByteBuffer buf, int offset, int len) throws LinuxNativeOperationException {
+        if (!FOREIGN) {
+            return SocketCAN.read(sock, buf, offset, len);
+        }
+        return orThrow(io(READ, sock, buf, offset, len), "Unable to read from the socket");
+    }
+
+    static long send(int sock, ByteBuffer buf, int offset, int len, int flags) throws LinuxNativeOperationException {
+        if (!FOREIGN) {
+            return SocketCAN.send(sock, buf, offset, len, flags);
+        }
+        return orThrow(socketIo(SEND, sock, buf, offset, len, flags), "Unable to send to the socket");
+    }
+
+    static long receive(int sock, ByteBuffer buf, int offset, int len, int flags) throws LinuxNativeOperationException {
+        if (!FOREIGN) {
+            return SocketCAN.receive(sock, buf, offset, len, flags);
+        }
+        return orThrow(socketIo(RECV, sock, buf, offset, len, flags), "Unable to recv from the socket");
+    }
+
+    static long tryWrite(int sock, ByteBuffer buf, int offset, int len) throws LinuxNativeOperationException {
+        if (!FOREIGN) {
+            return SocketCAN.tryWrite(sock, buf, offset, len);
+        }
+        return orTryAgain(io(WRITE, sock, buf, offset, len), "Unable to write to the socket");
+    }
+
+    static long tryRead(int sock, ByteBuffer buf, int offset, int len) throws LinuxNativeOperationException {
+        if (!FOREIGN) {
+            return SocketCAN.tryRead(sock, buf, offset, len);
+        }
+        return orTryAgain(io(READ, sock, buf, offset, len), "Unable to read from the socket");
+    }
+
+    static long trySend(int sock, ByteBuffer buf, int offset, int len, int flags) throws LinuxNativeOperationException {
+        if (!FOREIGN) {
+            return SocketCAN.trySend(sock, buf, offset, len, flags);
+        }
+        return orTryAgain(socketIo(SEND, sock, buf, offset, len, flags), "Unable to send to the socket");
+    }
+
+    static long tryReceive(int sock, ByteBuffer buf, int offset, int len, int flags) throws LinuxNativeOperationException {
+        if (!FOREIGN) {
+            return SocketCAN.tryReceive(sock, buf, offset, len, flags);
+        }
+        return orTryAgain(socketIo(RECV, sock, buf, offset, len, flags), "Unable to recv from the socket");
+    }
+
+    /**
+     * The address of the byte at the given absolute offset of the direct buffer.
+     */
+    private static MemorySegment pointer(ByteBuffer buf, int offset) {
+        // segments of buffers start at the buffer's position
+        long base = MemorySegment.ofBuffer(buf).address() - buf.position();
+        return MemorySegment.ofAddress(base + offset);
+    }
+
+    private static long io(MethodHandle handle, int sock, ByteBuffer buf, int offset, int len) {
+        MemorySegment state = CALL_STATES.get();
+        try {
+            long result = (long) handle.invokeExact(state, sock, pointer(buf, offset), (long) len);
+            return result == -1 ? -errno(state) : result;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Foreign call failed unexpectedly", t);
+        }
+    }
+
+    private static long socketIo(MethodHandle handle, int sock, ByteBuffer buf, int offset, int len, int flags) {
+        MemorySegment state = CALL_STATES.get();
+        try {
+            long result = (long) handle.invokeExact(state, sock, pointer(buf, offset), (long) len, flags);
+            return result == -1 ? -errno(state) : result;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Foreign call failed unexpectedly", t);
+        }
+    }
+
+    private static int errno(MemorySegment state) {
+        // errno is never 0 after a failed call, which keeps the negated value distinguishable from a result
+        return Math.max(1, state.get(JAVA_INT, ERRNO_OFFSET));
+    }
+
+    private static long orThrow(long result, String message) throws LinuxNativeOperationException {
+        if (result < 0) {
+            throw exception(message, (int) -result);
+        }
+        return result;
+    }
+
+    private static long orTryAgain(long result, String message) throws LinuxNativeOperationException {
+        if (result < 0) {
+            int errorNumber = (int) -result;
+            if (errorNumber == LinuxNativeOperationException.EAGAIN || errorNumber == EWOULDBLOCK) {
+                return -LinuxNativeOperationException.EAGAIN;
+            }
+            throw exception(message, errorNumber);
+        }
+        return result;
+    }
+
+    private static LinuxNativeOperationException exception(String message, int errorNumber) {
+        return new LinuxNativeOperationException(message, errorNumber, strerror(errorNumber));
+    }
+
+    private static String strerror(int errorNumber) {
+        try {
+            MemorySegment message = ((MemorySegment) STRERROR.invokeExact(errorNumber)).reinterpret(Long.MAX_VALUE);
+            long length = 0;
+            while (message.get(JAVA_BYTE, length) != 0) {
+                length++;
+            }
+            return new String(message.asSlice(0, length).toArray(JAVA_BYTE), StandardCharsets.UTF_8);
+        } catch (Throwable t) {
+            return "errno " + errorNumber;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanBpfFilter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.CanId.EFF_FLAG;
+
+class CanBpfFilterTest {
+
+    /**
+     * Runs the subset of classic BPF used by the builder the way the kernel does on a CAN frame.
+     */
+    private static boolean run(CanBpfFilter filter, int id, byte... data) {
+        ByteBuffer frame = ByteBuffer.allocate(16).order(ByteOrder.nativeOrder());
+        frame.putInt(0, id);
+        frame.put(4, (byte) data.length);
+        for (int i = 0; i < data.length; i++) {
+            frame.put(8 + i, data[i]);
+        }
+        frame.order(ByteOrder.BIG_ENDIAN);
+
+        long[] program = filter.getInstructions();
+        int a = 0;
+        for (int pc = 0; pc < program.length; pc++) {
+            int code = (int) (program[pc] >>> 48);
+            int jt = (int) (program[pc] >>> 40) & 0xFF;
+            int jf = (int) (program[pc] >>> 32) & 0xFF;
+            int k = (int) program[pc];
+            switch (code) {
+                case 0x20: a = frame.getInt(k); break;
+                case 0x30: a = frame.get(k) & 0xFF; break;
+                case 0x54: a &= k; break;
+                case 0x15: pc += a == k ? jt : jf; break;
+                case 0x06: return k != 0;
+                default: fail("Unexpected instruction " + Integer.toHexString(code));
+            }
+        }
+        fail("Program did not return");
+        return false;
+    }
+
+    @Test
+    void idAndData() {
+        CanBpfFilter filter = CanBpfFilter.builder()
+                .id(0x7EA)
+                .data(0, 0x02)
+                .build();
+
+        assertTrue(run(filter, 0x7EA, (byte) 0x02, (byte) 0x52));
+        assertFalse(run(filter, 0x7EA, (byte) 0x01, (byte) 0x52));
+        assertFalse(run(filter, 0x7EB, (byte) 0x02));
+        assertFalse(run(filter, EFF_FLAG | 0x7EA, (byte) 0x02));
+    }
+
+    @Test
+    void rules() {
+        CanBpfFilter filter = CanBpfFilter.builder()
+                .id(EFF_FLAG | 0x18FEF100, EFF_FLAG | 0x03FFFF00)
+                .length(8)
+                .data(3, 0x40, 0xF0)
+                .or()
+                .id(0x100, EFF_FLAG | 0x700)
+                .build();
+
+        assertTrue(run(filter, EFF_FLAG | 0x18FEF1AB, new byte[]{0, 0, 0, 0x4F, 0, 0, 0, 0}));
+        assertFalse(run(filter, EFF_FLAG | 0x18FEF1AB, new byte[]{0, 0, 0, 0x5F, 0, 0, 0, 0}));
+        assertFalse(run(filter, EFF_FLAG | 0x18FEF1AB, (byte) 0, (byte) 0, (byte) 0, (byte) 0x4F));
+        assertTrue(run(filter, 0x1FF));
+        assertFalse(run(filter, 0x200));
+    }
+
+    @Test
+    void acceptAll() {
+        assertTrue(run(CanBpfFilter.builder().build(), 0x123));
+        assertEquals(0, CanBpfFilter.DETACHED.getInstructionCount());
+        assertEquals(CanBpfFilter.builder().id(1).build(), CanBpfFilter.builder().id(1).or().build());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanFilter;
+import tel.schich.javacan.CanFilterOptimizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.CanFilter.INVERTED_BIT;
+import static tel.schich.javacan.CanId.EFF_FLAG;
+import static tel.schich.javacan.CanId.ERR_FLAG;
+import static tel.schich.javacan.CanId.SFF_MASK;
+
+class CanFilterOptimizerTest {
+
+    private static boolean accepts(List<CanFilter> filters, int id) {
+        for (CanFilter filter : filters) {
+            if (filter.isInverted() != filter.matchId(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void assertEquivalent(List<CanFilter> filters, CanFilter[] optimized, Random random) {
+        List<CanFilter> result = Arrays.asList(optimized);
+        for (CanFilter filter : filters) {
+            assertEquals(accepts(filters, filter.getId()), accepts(result, filter.getId()));
+        }
+        for (int id = 0; id <= SFF_MASK; id++) {
+            assertEquals(accepts(filters, id), accepts(result, id), String.format("ID %X", id));
+        }
+        for (int i = 0; i < 10000; i++) {
+            int id = random.nextInt();
+            assertEquals(accepts(filters, id), accepts(result, id), String.format("ID %X", id));
+        }
+    }
+
+    @Test
+    void mergeRange() {
+        List<CanFilter> filters = new ArrayList<>();
+        for (int id = 0x100; id < 0x108; id++) {
+            filters.add(new CanFilter(id));
+        }
+        CanFilter[] optimized = CanFilterOptimizer.optimize(filters);
+
+        assertArrayEquals(new CanFilter[] { new CanFilter(0x100, ~0x7) }, optimized);
+        assertEquivalent(filters, optimized, new Random(1));
+    }
+
+    @Test
+    void removeSubsumed() {
+        List<CanFilter> filters = Arrays.asList(
+            new CanFilter(0x123),
+            new CanFilter(0x123),
+            new CanFilter(0x120, 0x7F0),
+            new CanFilter(0x12F, ~ERR_FLAG)
+        );
+        CanFilter[] optimized = CanFilterOptimizer.optimize(filters);
+
+        assertArrayEquals(new CanFilter[] { new CanFilter(0x120, 0x7F0) }, optimized);
+        assertEquivalent(filters, optimized, new Random(2));
+    }
+
+    @Test
+    void anyAndInverted() {
+        assertArrayEquals(new CanFilter[] { CanFilter.ANY }, CanFilterOptimizer.optimize(new CanFilter(0x123), CanFilter.ANY));
+        assertEquals(0, CanFilterOptimizer.optimize(new CanFilter(INVERTED_BIT, 0)).length);
+        assertEquals(1, CanFilterOptimizer.optimize(new CanFilter(INVERTED_BIT | 0x10, 0x7F0), new CanFilter(INVERTED_BIT | 0x1F, 0x7F0)).length);
+    }
+
+    @Test
+    void randomFiltersStayEquivalent() {
+        Random random = new Random(42);
+        List<CanFilter> filters = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            filters.add(new CanFilter(random.nextInt(0x200)));
+            filters.add(new CanFilter(random.nextInt(SFF_MASK + 1), SFF_MASK & ~random.nextInt(0x10) | EFF_FLAG));
+        }
+        filters.add(new CanFilter(EFF_FLAG | 0x18FEF100, EFF_FLAG | 0x03FFFF00));
+        filters.add(new CanFilter(INVERTED_BIT | 0x7FF, SFF_MASK));
+        CanFilter[] optimized = CanFilterOptimizer.optimize(filters);
+
+        assertTrue(optimized.length < filters.size());
+        assertEquivalent(filters, optimized, random);
+    }
+}
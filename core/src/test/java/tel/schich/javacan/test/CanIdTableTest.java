@@ -0,0 +1,67 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.util.CanIdTable;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.CanId.EFF_FLAG;
+import static tel.schich.javacan.CanId.ERR_FLAG;
+
+class CanIdTableTest {
+
+    @Test
+    void claimAndFind() {
+        CanIdTable table = new CanIdTable(CanIdTable.capacityFor(3));
+        assertEquals(8, table.capacity());
+
+        int a = table.claim(0);
+        int b = table.claim(EFF_FLAG | 0x1ABCDEF0);
+        assertNotEquals(a, b);
+        assertEquals(a, table.claim(0));
+        assertEquals(a, table.find(0));
+        assertEquals(b, table.find(EFF_FLAG | 0x1ABCDEF0));
+        assertEquals(EFF_FLAG | 0x1ABCDEF0, table.keyAt(b));
+        assertEquals(-1, table.find(0x123));
+    }
+
+    @Test
+    void fullTable() {
+        CanIdTable table = new CanIdTable(4);
+        for (int id = 1; id <= 4; id++) {
+            assertNotEquals(-1, table.claim(EFF_FLAG | id));
+        }
+        assertEquals(-1, table.claim(EFF_FLAG | 5));
+        assertEquals(-1, table.find(EFF_FLAG | 5));
+        for (int id = 1; id <= 4; id++) {
+            assertNotEquals(-1, table.find(EFF_FLAG | id));
+        }
+    }
+
+    @Test
+    void invalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new CanIdTable(12));
+        assertThrows(IllegalArgumentException.class, () -> new CanIdTable(16).claim(ERR_FLAG | 1));
+    }
+}
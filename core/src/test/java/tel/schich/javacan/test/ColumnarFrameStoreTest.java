@@ -0,0 +1,83 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanFilter;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.util.ColumnarFrameStore;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.CanFrame.FD_NO_FLAGS;
+
+class ColumnarFrameStoreTest {
+
+    @Test
+    void appendAndScanAcrossChunks() {
+        ColumnarFrameStore store = new ColumnarFrameStore(4, false);
+        for (int i = 0; i < 10; i++) {
+            store.append(CanFrame.create(0x100 + i, FD_NO_FLAGS, new byte[]{(byte) i, 2}), 1000L * i, i % 2);
+        }
+
+        assertEquals(10, store.size());
+        assertEquals(0x105, store.getRawId(5));
+        assertEquals(2, store.getDataLength(5));
+        assertEquals(5000L, store.getTimestampNanos(5));
+        assertEquals(1, store.getDeviceIndex(5));
+        byte[] data = new byte[8];
+        assertEquals(2, store.getData(7, data, 0));
+        assertEquals(7, data[0]);
+
+        assertEquals(1, store.count(new CanFilter(0x103)));
+        assertEquals(9, store.count(new CanFilter(0x103 | CanFilter.INVERTED_BIT)));
+        assertEquals(8, store.count(new CanFilter(0x100, 0x7F8)));
+        assertArrayEquals(new int[]{8, 9}, store.select(new CanFilter(0x108, 0x7FE)), "Both frames should be selected!");
+
+        assertEquals(3, store.countTimeRange(2000, 5000));
+        assertArrayEquals(new int[]{2, 3, 4}, store.selectTimeRange(2000, 5000), "The range should be half-open!");
+        assertArrayEquals(new int[0], store.selectTimeRange(20000, 30000), "No frame should be selected!");
+    }
+
+    @Test
+    void appendBatch() {
+        ByteBuffer buffer = JavaCAN.allocateOrdered(3 * RawCanChannel.MTU);
+        for (int i = 0; i < 3; i++) {
+            ByteBuffer frame = CanFrame.create(0x200 + i, FD_NO_FLAGS, new byte[]{(byte) i}).getBuffer();
+            buffer.put(frame);
+        }
+        buffer.flip();
+
+        ColumnarFrameStore store = new ColumnarFrameStore();
+        store.appendBatch(buffer, RawCanChannel.MTU, 3, null, 42, 7);
+
+        assertEquals(3, store.size());
+        assertEquals(0x202, store.getRawId(2));
+        assertEquals(42, store.getTimestampNanos(1));
+        assertEquals(7, store.getDeviceIndex(0));
+        assertEquals(0, buffer.position());
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanFilter;
+import tel.schich.javacan.CompiledCanFilter;
+import tel.schich.javacan.RawCanChannel;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.CanFilter.INVERTED_BIT;
+import static tel.schich.javacan.CanId.EFF_FLAG;
+import static tel.schich.javacan.CanId.EFF_MASK;
+import static tel.schich.javacan.CanId.RTR_FLAG;
+import static tel.schich.javacan.CanId.SFF_MASK;
+
+class CompiledCanFilterTest {
+
+    private static boolean reference(List<CanFilter> filters, int id) {
+        for (CanFilter filter : filters) {
+            if (filter.isInverted() != filter.matchId(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void predefined() {
+        assertFalse(CompiledCanFilter.NONE.matches(0));
+        assertFalse(CompiledCanFilter.NONE.matches(0x123));
+        assertTrue(CompiledCanFilter.ANY.matches(0));
+        assertTrue(CompiledCanFilter.ANY.matches(EFF_FLAG | 0x1ABCDEF0));
+    }
+
+    @Test
+    void exactIds() {
+        CompiledCanFilter filter = CompiledCanFilter.compile(new CanFilter(0x7FF), new CanFilter(EFF_FLAG | 0x7FF));
+
+        assertTrue(filter.matches(0x7FF));
+        assertTrue(filter.matches(EFF_FLAG | 0x7FF));
+        assertFalse(filter.matches(RTR_FLAG | 0x7FF));
+        assertFalse(filter.matches(0x7FE));
+    }
+
+    @Test
+    void manyExtendedIds() {
+        List<CanFilter> filters = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            filters.add(new CanFilter(EFF_FLAG | (i * 7919 & EFF_MASK)));
+        }
+        CompiledCanFilter filter = CompiledCanFilter.compile(filters);
+
+        assertEquals(50000, filter.getFilterCount());
+        for (int i = 0; i < 50000; i++) {
+            assertTrue(filter.matches(EFF_FLAG | (i * 7919 & EFF_MASK)));
+            assertFalse(filter.matches(i * 7919 & EFF_MASK));
+        }
+        assertFalse(filter.matches(EFF_FLAG | 1));
+    }
+
+    @Test
+    void matchesLikeKernel() {
+        Random random = new Random(42);
+        List<CanFilter> filters = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            filters.add(new CanFilter(random.nextInt(SFF_MASK + 1)));
+            filters.add(new CanFilter(EFF_FLAG | random.nextInt(EFF_MASK + 1)));
+        }
+        filters.add(new CanFilter(0x100, 0x700));
+        filters.add(new CanFilter(0x10, 0x7F0 | EFF_FLAG));
+        filters.add(new CanFilter(EFF_FLAG | 0x18FEF100, EFF_FLAG | 0x03FFFF00));
+        filters.add(new CanFilter(INVERTED_BIT | 0x0, EFF_FLAG));
+        CompiledCanFilter filter = CompiledCanFilter.compile(filters);
+
+        for (int i = 0; i < 100000; i++) {
+            int id = random.nextInt();
+            assertEquals(reference(filters, id), filter.matches(id), String.format("ID %X", id));
+        }
+        for (CanFilter f : filters) {
+            assertEquals(reference(filters, f.getId()), filter.matches(f.getId()));
+        }
+    }
+
+    @Test
+    void retain() {
+        int stride = RawCanChannel.MTU;
+        ByteBuffer buffer = ByteBuffer.allocate(4 * stride).order(ByteOrder.nativeOrder());
+        int[] lengths = new int[4];
+        for (int i = 0; i < 4; i++) {
+            buffer.putInt(i * stride, 0x100 + i);
+            buffer.put(i * stride + 8, (byte) i);
+            lengths[i] = stride;
+        }
+
+        CompiledCanFilter filter = CompiledCanFilter.compile(new CanFilter(0x101), new CanFilter(0x103));
+        assertEquals(2, filter.retain(buffer, stride, lengths, 4, null));
+
+        assertEquals(2 * stride, buffer.limit());
+        assertEquals(0x101, buffer.getInt(0));
+        assertEquals(1, buffer.get(8));
+        assertEquals(0x103, buffer.getInt(stride));
+        assertEquals(3, buffer.get(stride + 8));
+    }
+}
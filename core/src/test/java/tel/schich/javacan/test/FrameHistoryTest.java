@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.util.FrameHistory;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.CanFrame.FD_NO_FLAGS;
+
+class FrameHistoryTest {
+
+    @Test
+    void keepsTheMostRecentFrames() {
+        FrameHistory history = new FrameHistory(4);
+        ByteBuffer dest = JavaCAN.allocateOrdered(history.getCapacity() * FrameHistory.RECORD_SIZE);
+
+        assertEquals(0, history.snapshot(dest));
+
+        for (int i = 0; i < 6; i++) {
+            history.record(CanFrame.create(0x100 + i, FD_NO_FLAGS, new byte[]{(byte) i}), 1000L * i);
+        }
+        history.record(CanFrame.create(0x106, FD_NO_FLAGS, new byte[20]), 6000L);
+
+        assertEquals(7, history.getRecordedCount());
+        assertEquals(4, history.snapshot(dest));
+        assertEquals(4 * FrameHistory.RECORD_SIZE, dest.position());
+        assertEquals(3000L, FrameHistory.getTimestamp(dest, 0, 0));
+        assertEquals(0x103, FrameHistory.getFrame(dest, 0, 0).getId());
+        CanFrame fdFrame = FrameHistory.getFrame(dest, 0, 3);
+        assertEquals(0x106, fdFrame.getId());
+        assertTrue(fdFrame.isFDFrame());
+        assertEquals(20, fdFrame.getDataLength());
+
+        dest.clear();
+        assertEquals(2, history.snapshot(dest, 4000L, 5000L));
+        assertEquals(0x104, FrameHistory.getFrame(dest, 0, 0).getId());
+        assertEquals(0x105, FrameHistory.getFrame(dest, 0, 1).getId());
+
+        dest.clear().limit(FrameHistory.RECORD_SIZE);
+        assertEquals(1, history.snapshot(dest));
+        assertEquals(0x103, FrameHistory.getFrame(dest, 0, 0).getId());
+    }
+
+    @Test
+    void snapshotsAreConsistentWhileWriting() throws InterruptedException {
+        FrameHistory history = new FrameHistory(64);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            byte[] data = new byte[8];
+            for (int i = 0; running.get(); i++) {
+                // every byte of the payload and the timestamp encode the same counter
+                byte b = (byte) i;
+                for (int j = 0; j < data.length; j++) {
+                    data[j] = b;
+                }
+                history.record(CanFrame.create(i & 0x7FF, FD_NO_FLAGS, data), i);
+            }
+        });
+        writer.start();
+
+        ByteBuffer dest = JavaCAN.allocateOrdered(history.getCapacity() * FrameHistory.RECORD_SIZE);
+        byte[] data = new byte[8];
+        try {
+            for (int round = 0; round < 2000; round++) {
+                dest.clear();
+                int count = history.snapshot(dest);
+                long previous = -1;
+                for (int i = 0; i < count; i++) {
+                    long timestamp = FrameHistory.getTimestamp(dest, 0, i);
+                    CanFrame frame = FrameHistory.getFrame(dest, 0, i);
+                    assertTrue(timestamp > previous, "records must be ordered");
+                    assertEquals(timestamp & 0x7FF, frame.getId());
+                    frame.getData(data, 0, data.length);
+                    for (byte b : data) {
+                        assertEquals((byte) timestamp, b);
+                    }
+                    previous = timestamp;
+                }
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+}
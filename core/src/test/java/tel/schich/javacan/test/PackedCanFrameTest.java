@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.CanId;
+import tel.schich.javacan.PackedCanFrame;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.CanFrame.FD_NO_FLAGS;
+
+class PackedCanFrameTest {
+
+    @Test
+    void roundTrip() {
+        CanFrame frame = CanFrame.createExtended(0x1ABCDEF0, FD_NO_FLAGS, new byte[]{1, 2, 3, (byte) 0xFF});
+        PackedCanFrame packed = PackedCanFrame.of(frame);
+
+        assertEquals(frame.getRawId(), packed.getRawId());
+        assertEquals(0x1ABCDEF0, packed.getId());
+        assertTrue(packed.isExtended());
+        assertEquals(4, packed.getDataLength());
+        assertEquals((byte) 0xFF, packed.getData(3));
+        assertEquals(0xFF030201L, packed.getPackedData());
+        assertEquals(frame, packed.toCanFrame());
+    }
+
+    @Test
+    void fullPayload() {
+        byte[] data = {1, 2, 3, 4, 5, 6, 7, (byte) 0x80};
+        PackedCanFrame packed = PackedCanFrame.of(0x123, FD_NO_FLAGS, data);
+
+        byte[] out = new byte[data.length];
+        packed.getData(out, 0, out.length);
+        assertArrayEquals(data, out, "The data should survive packing!");
+        assertEquals(PackedCanFrame.of(packed.toCanFrame()), packed);
+    }
+
+    @Test
+    void equalityIgnoresPadding() {
+        PackedCanFrame a = PackedCanFrame.of(0x7E0, FD_NO_FLAGS, new byte[]{1, 2});
+        PackedCanFrame b = PackedCanFrame.of(CanFrame.create(0x7E0, FD_NO_FLAGS, new byte[]{1, 2, 3, 4}, 0, 2));
+
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a, PackedCanFrame.of(0x7E0 | CanId.RTR_FLAG, FD_NO_FLAGS, new byte[]{1, 2}));
+    }
+
+    @Test
+    void rejectsFdFrames() {
+        CanFrame fd = CanFrame.create(0x7E0, CanFrame.FD_FLAG_FD_FRAME, new byte[12]);
+        assertThrows(IllegalArgumentException.class, () -> PackedCanFrame.of(fd));
+    }
+}
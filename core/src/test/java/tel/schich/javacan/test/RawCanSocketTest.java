@@ -23,13 +23,16 @@
 package tel.schich.javacan.test;
 
 import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanBpfFilter;
 import tel.schich.javacan.CanChannels;
 import tel.schich.javacan.CanFilter;
 import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.CanFrameView;
 import tel.schich.javacan.JavaCAN;
 import tel.schich.javacan.RawCanChannel;
 import tel.schich.javacan.RawReceiveMessageHeaderBuffer;
 import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
+import tel.schich.javacan.util.FrameBufferPool;
 
 import java.nio.ByteBuffer;
 import java.time.Duration;
@@ -124,6 +127,32 @@ class RawCanSocketTest {
         }
     }
 
+    @Test
+    void testBpfFilter() throws Exception {
+        try (final RawCanChannel socket = CanChannels.newRawChannel()) {
+            socket.bind(CAN_INTERFACE);
+
+            assertEquals(CanBpfFilter.DETACHED, socket.getOption(BPF_FILTER), "No program attached by default");
+            CanBpfFilter filter = CanBpfFilter.builder()
+                    .id(0x7EA)
+                    .data(0, 0x02)
+                    .build();
+            socket.setOption(BPF_FILTER, filter);
+            assertEquals(filter, socket.getOption(BPF_FILTER), "What comes in should come out");
+
+            final CanFrame dropped = CanFrame.create(0x7EA, FD_NO_FLAGS, new byte[]{0x01, 0x52});
+            final CanFrame accepted = CanFrame.create(0x7EA, FD_NO_FLAGS, new byte[]{0x02, 0x52});
+            socket.configureBlocking(false);
+            CanTestHelper.sendFrameViaUtils(CAN_INTERFACE, dropped);
+            CanTestHelper.sendFrameViaUtils(CAN_INTERFACE, accepted);
+            Thread.sleep(50);
+            assertEquals(accepted, socket.read(), "Only the matching frame should pass");
+
+            socket.setOption(BPF_FILTER, CanBpfFilter.DETACHED);
+            assertEquals(CanBpfFilter.DETACHED, socket.getOption(BPF_FILTER), "The program should be detached");
+        }
+    }
+
     @Test
     void testMaxFilterValidation() throws Exception {
         try (final RawCanChannel socket = CanChannels.newRawChannel()) {
@@ -347,4 +376,176 @@ class RawCanSocketTest {
             assertEquals(Instant.now().getEpochSecond(), messageHeaderBuffer.getSoftwareTimestamp().getEpochSecond());
         }
     }
+
+    @Test
+    void testReceiveBatch() throws Exception {
+        try (final RawCanChannel socket = CanChannels.newRawChannel()) {
+            socket.bind(CAN_INTERFACE);
+            socket.configureBlocking(false);
+            socket.setOption(RECV_OWN_MSGS, true);
+            socket.setOption(SO_TIMESTAMP, true);
+
+            final CanFrame[] frames = {
+                CanFrame.create(0x7E1, FD_NO_FLAGS, new byte[] { 0x01 }),
+                CanFrame.create(0x7E2, FD_NO_FLAGS, new byte[] { 0x02, 0x03 }),
+                CanFrame.create(0x7E3, FD_NO_FLAGS, new byte[] { 0x04, 0x05, 0x06 }),
+            };
+            for (CanFrame frame : frames) {
+                socket.write(frame);
+            }
+
+            final ByteBuffer buffer = JavaCAN.allocateOrdered(RawCanChannel.MAX_BATCH_SIZE * RawCanChannel.MTU);
+            final int[] lengths = new int[RawCanChannel.MAX_BATCH_SIZE];
+            final RawReceiveMessageHeaderBuffer[] headers = RawReceiveMessageHeaderBuffer.allocateBatch(RawCanChannel.MAX_BATCH_SIZE);
+
+            final int received = socket.receiveBatch(buffer, RawCanChannel.MTU, lengths, headers);
+            assertEquals(frames.length, received);
+            assertEquals(frames.length * RawCanChannel.MTU, buffer.remaining());
+            final int end = buffer.limit();
+            for (int i = 0; i < received; i++) {
+                assertEquals(RawCanChannel.MTU, lengths[i]);
+                buffer.limit(buffer.position() + lengths[i]);
+                assertEquals(frames[i], CanFrame.create(buffer.slice().order(buffer.order())));
+                buffer.position(buffer.limit());
+                buffer.limit(end);
+                assertEquals(CAN_INTERFACE, headers[i].getDevice());
+                assertEquals(Instant.now().getEpochSecond(), headers[i].getSoftwareTimestamp().getEpochSecond());
+            }
+        }
+    }
+
+    @Test
+    void testReceiveBatchBlocking() throws Exception {
+        try (final RawCanChannel socket = CanChannels.newRawChannel()) {
+            socket.bind(CAN_INTERFACE);
+            socket.configureBlocking(true);
+            socket.setOption(RECV_OWN_MSGS, true);
+            // only a safety net, the batch must return as soon as the available frames have been received
+            final Duration timeout = ofSeconds(3);
+            socket.setOption(SO_RCVTIMEO, timeout);
+
+            final CanFrame[] frames = {
+                CanFrame.create(0x7E4, FD_NO_FLAGS, new byte[] { 0x01 }),
+                CanFrame.create(0x7E5, FD_NO_FLAGS, new byte[] { 0x02 }),
+            };
+            for (CanFrame frame : frames) {
+                socket.write(frame);
+            }
+
+            final ByteBuffer buffer = JavaCAN.allocateOrdered(RawCanChannel.MAX_BATCH_SIZE * RawCanChannel.MTU);
+            final int[] lengths = new int[RawCanChannel.MAX_BATCH_SIZE];
+            final long start = System.nanoTime();
+            final int received = socket.receiveBatch(buffer, RawCanChannel.MTU, lengths, null);
+            final Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+            assertEquals(frames.length, received);
+            assertTrue(elapsed.compareTo(ofSeconds(1)) < 0, "The batch should not wait for the remaining slots!");
+        }
+    }
+
+    @Test
+    void testReceiveBatchWithView() throws Exception {
+        try (final RawCanChannel socket = CanChannels.newRawChannel()) {
+            socket.bind(CAN_INTERFACE);
+            socket.configureBlocking(false);
+            socket.setOption(RECV_OWN_MSGS, true);
+
+            final CanFrame[] frames = {
+                CanFrame.create(0x7E1, FD_NO_FLAGS, new byte[] { 0x01 }),
+                CanFrame.createExtended(0x1FFFFFF2, FD_NO_FLAGS, new byte[] { 0x02, 0x03 }),
+            };
+            for (CanFrame frame : frames) {
+                socket.write(frame);
+            }
+
+            final ByteBuffer buffer = JavaCAN.allocateOrdered(RawCanChannel.MAX_BATCH_SIZE * RawCanChannel.MTU);
+            final int[] lengths = new int[RawCanChannel.MAX_BATCH_SIZE];
+            final int received = socket.receiveBatch(buffer, RawCanChannel.MTU, lengths, null);
+            assertEquals(frames.length, received);
+
+            final CanFrameView view = new CanFrameView();
+            final byte[] data = new byte[MAX_DATA_LENGTH];
+            for (int i = 0; i < received; i++) {
+                view.point(buffer, buffer.position() + i * RawCanChannel.MTU, lengths[i]);
+                assertEquals(frames[i].getId(), view.getId());
+                assertEquals(frames[i].isExtended(), view.isExtended());
+                assertEquals(frames[i].getDataLength(), view.getDataLength());
+                final byte[] expectedData = new byte[frames[i].getDataLength()];
+                frames[i].getData(expectedData, 0, expectedData.length);
+                view.getData(data, 0, view.getDataLength());
+                assertArrayEquals(expectedData, Arrays.copyOf(data, view.getDataLength()), "The view should expose the frame's data!");
+                assertEquals(frames[i], view.toImmutable());
+            }
+        }
+    }
+
+    @Test
+    void testSendBatch() throws Exception {
+        try (final RawCanChannel socket = CanChannels.newRawChannel()) {
+            socket.bind(CAN_INTERFACE);
+            socket.configureBlocking(false);
+            socket.setOption(RECV_OWN_MSGS, true);
+
+            final CanFrame[] frames = {
+                CanFrame.create(0x7E4, FD_NO_FLAGS, new byte[] { 0x01 }),
+                CanFrame.create(0x7E5, FD_NO_FLAGS, new byte[] { 0x02, 0x03 }),
+                CanFrame.create(0x7E6, FD_NO_FLAGS, new byte[] { 0x04, 0x05, 0x06 }),
+            };
+            final ByteBuffer batch = JavaCAN.allocateOrdered(frames.length * RawCanChannel.MTU);
+            for (CanFrame frame : frames) {
+                batch.put(frame.getBuffer());
+            }
+            batch.flip();
+
+            assertEquals(frames.length, socket.sendBatch(batch, RawCanChannel.MTU));
+            assertFalse(batch.hasRemaining());
+
+            final ByteBuffer readBuffer = RawCanChannel.allocateSufficientMemory();
+            for (CanFrame frame : frames) {
+                readBuffer.clear();
+                assertEquals(frame, socket.read(readBuffer));
+            }
+        }
+    }
+
+    @Test
+    void testTryRead() throws Exception {
+        try (final RawCanChannel socket = CanChannels.newRawChannel()) {
+            socket.bind(CAN_INTERFACE);
+            socket.configureBlocking(false);
+            socket.setOption(RECV_OWN_MSGS, true);
+
+            final ByteBuffer readBuffer = RawCanChannel.allocateSufficientMemory();
+            assertEquals(RawCanChannel.WOULD_BLOCK, socket.tryRead(readBuffer));
+            assertEquals(0, readBuffer.position());
+
+            final CanFrame frame = CanFrame.create(0x7E7, FD_NO_FLAGS, new byte[] { 0x01 });
+            assertEquals(RawCanChannel.MTU, socket.tryWrite(frame.getBuffer()));
+            assertEquals(RawCanChannel.MTU, socket.tryRead(readBuffer));
+            readBuffer.flip();
+            assertEquals(frame, CanFrame.create(readBuffer));
+        }
+    }
+
+    @Test
+    void testPooledReadWrite() throws Exception {
+        final FrameBufferPool pool = new FrameBufferPool(2);
+        try (final RawCanChannel socket = CanChannels.newRawChannel()) {
+            socket.bind(CAN_INTERFACE);
+            socket.setOption(RECV_OWN_MSGS, true);
+
+            final CanFrame frame = CanFrame.create(0x7E8, FD_NO_FLAGS, new byte[] { 0x01, 0x02 }, pool);
+            assertTrue(frame.getBuffer().isDirect());
+            assertEquals(1, pool.getFreeCount(RawCanChannel.MTU));
+            socket.write(frame);
+
+            final CanFrame read = socket.read(pool);
+            assertEquals(frame, read);
+            assertEquals(0, pool.getFreeCount(RawCanChannel.MTU));
+
+            pool.release(frame);
+            pool.release(read);
+            assertEquals(2, pool.getFreeCount(RawCanChannel.MTU));
+            assertEquals(0, pool.getFreeCount(RawCanChannel.FD_MTU));
+        }
+    }
 }
@@ -0,0 +1,189 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.dbc;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.dbc.DbcDatabase;
+import tel.schich.javacan.dbc.DbcMessage;
+import tel.schich.javacan.dbc.DbcSignal;
+import tel.schich.javacan.dbc.SignalDecoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.CanFrame.FD_NO_FLAGS;
+import static tel.schich.javacan.CanId.EFF_FLAG;
+
+class SignalDecoderTest {
+
+    private static final String DBC = String.join("\n",
+            "VERSION \"\"",
+            "",
+            "BU_: ECU GATEWAY",
+            "",
+            "BO_ 256 Engine: 8 ECU",
+            " SG_ Rpm : 0|16@1+ (0.25,0) [0|16383.75] \"rpm\" GATEWAY",
+            " SG_ Speed : 23|16@0+ (1,0) [0|65535] \"km/h\" GATEWAY",
+            " SG_ Nibbles : 35|12@0+ (1,0) [0|4095] \"\" GATEWAY",
+            " SG_ Temperature : 48|8@1- (0.5,10) [-54|73.5] \"degC\" GATEWAY",
+            "",
+            "BO_ 512 Muxed: 8 ECU",
+            " SG_ Selector M : 0|8@1+ (1,0) [0|255] \"\" GATEWAY",
+            " SG_ Pressure m0 : 8|16@1+ (0.1,0) [0|6553.5] \"kPa\" GATEWAY",
+            " SG_ Voltage m1 : 8|16@1+ (0.01,0) [0|655.35] \"V\" GATEWAY",
+            " SG_ Ratio : 32|32@1- (1,0) [0|0] \"\" GATEWAY",
+            "",
+            "BO_ 2566844672 Wide: 24 ECU",
+            " SG_ Little : 4|64@1+ (1,0) [0|0] \"\" GATEWAY",
+            " SG_ Big : 75|64@0+ (1,0) [0|0] \"\" GATEWAY",
+            "",
+            "CM_ BO_ 256 \"Engine data,",
+            "BO_ 5 NotAMessage: 8 ECU\";",
+            "SIG_VALTYPE_ 512 Ratio : 1;",
+            "");
+
+    @Test
+    void parse() {
+        DbcDatabase db = DbcDatabase.parse(DBC);
+        assertEquals(3, db.getMessages().size());
+        assertNull(db.getMessage(5));
+
+        DbcMessage engine = db.getMessage(0x100);
+        assertNotNull(engine);
+        assertEquals("Engine", engine.getName());
+        assertEquals(4, engine.getSignals().size());
+        DbcSignal temperature = engine.getSignals().get(3);
+        assertEquals("Temperature", temperature.getName());
+        assertTrue(temperature.isSigned());
+        assertTrue(temperature.isLittleEndian());
+        assertEquals(0.5, temperature.getFactor());
+        assertEquals(10, temperature.getOffset());
+        assertEquals("degC", temperature.getUnit());
+
+        DbcMessage muxed = db.getMessage(0x200);
+        assertNotNull(muxed);
+        assertTrue(muxed.getSignals().get(0).isMultiplexor());
+        assertEquals(1, muxed.getSignals().get(2).getMultiplexValue());
+        assertEquals(DbcSignal.VALUE_TYPE_FLOAT, muxed.getSignals().get(3).getValueType());
+
+        assertNotNull(db.getMessage(EFF_FLAG | 0x18FEF100));
+    }
+
+    @Test
+    void malformed() {
+        assertThrows(IllegalArgumentException.class, () -> DbcDatabase.parse("BO_ 256 Engine: 8 ECU\n SG_ Broken : 0|x@1+\n"));
+        assertThrows(IllegalArgumentException.class, () -> SignalDecoder.compile(DbcDatabase.parse("BO_ 256 Engine: 2 ECU\n SG_ A : 8|16@1+ (1,0) [0|0] \"\" X\n")));
+    }
+
+    @Test
+    void decodeSignals() {
+        SignalDecoder decoder = SignalDecoder.compile(DbcDatabase.parse(DBC));
+        double[] values = new double[4];
+
+        CanFrame frame = CanFrame.create(0x100, FD_NO_FLAGS, new byte[]{
+                0x10, 0x27, 0x12, 0x34, (byte) 0xA5, 0x6B, (byte) 0xFE, 0
+        });
+        SignalDecoder.MessageDecoder engine = decoder.decode(frame, values);
+        assertNotNull(engine);
+        assertEquals(2500.0, values[engine.indexOf("Rpm")]);
+        assertEquals(0x1234, values[engine.indexOf("Speed")]);
+        assertEquals(0x56B, values[engine.indexOf("Nibbles")]);
+        assertEquals(9.0, values[engine.indexOf("Temperature")]);
+
+        assertNull(decoder.decode(CanFrame.create(0x101, FD_NO_FLAGS, new byte[8]), values));
+
+        // a truncated frame does not contain all signals
+        decoder.decode(CanFrame.create(0x100, FD_NO_FLAGS, new byte[]{0x10, 0x27}), values);
+        assertEquals(2500.0, values[0]);
+        assertTrue(Double.isNaN(values[1]));
+    }
+
+    @Test
+    void decodeMultiplexedAndFloat() {
+        SignalDecoder decoder = SignalDecoder.compile(DbcDatabase.parse(DBC));
+        double[] values = new double[4];
+
+        decoder.decode(CanFrame.create(0x200, FD_NO_FLAGS, new byte[]{0, (byte) 0xE8, 0x03, 0, 0, 0, (byte) 0xC0, 0x3F}), values);
+        assertEquals(0, values[0]);
+        assertEquals(100.0, values[1], 1e-9);
+        assertTrue(Double.isNaN(values[2]));
+        assertEquals(1.5, values[3]);
+
+        decoder.decode(CanFrame.create(0x200, FD_NO_FLAGS, new byte[]{1, (byte) 0xE8, 0x03, 0, 0, 0, (byte) 0xC0, 0x3F}), values);
+        assertTrue(Double.isNaN(values[1]));
+        assertEquals(10.0, values[2], 1e-9);
+    }
+
+    @Test
+    void decodeRawAcrossNineBytes() {
+        SignalDecoder decoder = SignalDecoder.compile(DbcDatabase.parse(DBC));
+        SignalDecoder.MessageDecoder wide = decoder.forId(EFF_FLAG | 0x18FEF100);
+        assertNotNull(wide);
+
+        byte[] data = new byte[24];
+        byte[] little = {(byte) 240, (byte) 222, (byte) 188, (byte) 154, 120, 86, 52, 18, 0};
+        byte[] big = {0, 18, 52, 86, 120, (byte) 154, (byte) 188, (byte) 222, (byte) 240};
+        System.arraycopy(little, 0, data, 0, little.length);
+        System.arraycopy(big, 0, data, 9, big.length);
+        CanFrame frame = CanFrame.createExtended(0x18FEF100, FD_NO_FLAGS, data);
+
+        long[] raw = new long[2];
+        assertEquals(-1L, wide.decodeRaw(frame.getBuffer(), frame.getBase(), raw, 0));
+        assertEquals(0x0123456789ABCDEFL, raw[0]);
+        assertEquals(0x0123456789ABCDEFL, raw[1]);
+    }
+
+    @Test
+    void decodeUnsigned64Bit() {
+        SignalDecoder decoder = SignalDecoder.compile(DbcDatabase.parse(DBC));
+        SignalDecoder.MessageDecoder wide = decoder.forId(EFF_FLAG | 0x18FEF100);
+        assertNotNull(wide);
+
+        // only the most significant bit of Little is set, which must not be decoded as a negative value
+        byte[] data = new byte[24];
+        data[8] = 0x08;
+        CanFrame frame = CanFrame.createExtended(0x18FEF100, FD_NO_FLAGS, data);
+
+        double[] values = new double[2];
+        wide.decode(frame, values);
+        assertEquals(0x1p63, values[0]);
+        assertEquals(0, values[1]);
+    }
+
+    @Test
+    void skipIndependentSignalsMessage() {
+        String dbc = String.join("\n",
+                "BO_ 2147483648 ExtendedZero: 1 ECU",
+                " SG_ Counter : 0|8@1+ (1,0) [0|255] \"\" GATEWAY",
+                "",
+                "BO_ 3221225472 VECTOR__INDEPENDENT_SIG_MSG: 0 Vector__XXX",
+                " SG_ Orphan : 0|16@1+ (1,0) [0|65535] \"\" Vector__XXX",
+                "");
+        DbcDatabase db = DbcDatabase.parse(dbc);
+        assertEquals(2, db.getMessages().size());
+
+        SignalDecoder decoder = SignalDecoder.compile(db);
+        SignalDecoder.MessageDecoder extendedZero = decoder.forId(EFF_FLAG);
+        assertNotNull(extendedZero);
+        assertEquals("ExtendedZero", extendedZero.getMessage().getName());
+    }
+}
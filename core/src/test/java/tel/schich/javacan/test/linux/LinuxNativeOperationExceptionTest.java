@@ -50,6 +50,28 @@ class LinuxNativeOperationExceptionTest {
                 "must have suppressed a bad file descriptor");
     }
 
+    @Test
+    void testReadFromInvalidFileDescriptor() throws Exception {
+        final int fd = TestHelper.createInvalidFd();
+        ClosedChannelException ex = assertThrows(ClosedChannelException.class, () -> {
+            try (RawCanChannel channel = TestHelper.createChannelWithFd(fd)) {
+                channel.read();
+            }
+        });
+        // the error number must be reported by both the JNI and the foreign socket IO
+        assertTrue(ex.getSuppressed().length > 0 && ex.getSuppressed()[0] instanceof LinuxNativeOperationException,
+                "must have suppressed the native error of the read");
+        LinuxNativeOperationException cause = (LinuxNativeOperationException) ex.getSuppressed()[0];
+        assertTrue(cause.isBadFD(), "must be a bad file descriptor");
+        assertTrue(cause.getMessage().startsWith("Unable to read from the socket"), "must describe the failed call");
+    }
+
+    @Test
+    void testSocketIOBackend() {
+        // set by the task that runs the tests with the multi-release classes on JDK 22+
+        assertEquals(Boolean.getBoolean("javacan.test.foreign-socket-io"), TestHelper.isForeignSocketIO());
+    }
+
     @Test
     void testUnknownDevice() {
         String ifName = "doesNotExist";
@@ -39,6 +39,10 @@ public class TestHelper {
         return fd;
     }
 
+    public static boolean isForeignSocketIO() {
+        return SocketIO.isForeign();
+    }
+
     public static ByteBuffer directBufferOf(byte[] data) {
         ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
         buffer.put(data);
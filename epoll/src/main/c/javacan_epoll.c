@@ -22,12 +22,29 @@
  */
 #include <errno.h>
 #include <epoll/jni-c-to-java.h>
+#include <linux/can.h>
 #include <stdbool.h>
+#include <stddef.h>
 #include <stdlib.h>
 #include <string.h>
 #include <sys/epoll.h>
 #include <sys/eventfd.h>
+#include <sys/socket.h>
+#include <sys/time.h>
+#include <time.h>
 #include <unistd.h>
+#include <linux/errqueue.h>
+
+#define CONTROL_BUFFER_SIZE 200
+
+struct frame_record {
+    jint fd;
+    // the amount of bytes read or the negated errno if reading failed
+    jint length;
+    jlong timestamp_seconds;
+    jlong timestamp_nanos;
+    jbyte frame[CANFD_MTU];
+};
 
 void throw_epoll_exception(JNIEnv *env, char *msg) {
     // It is necessary to get the errno before any Java or JNI function is called, as it
@@ -116,35 +133,139 @@ JNIEXPORT jint JNICALL Java_tel_schich_javacan_platform_linux_epoll_EPoll_poll(J
     }
 }
 
-JNIEXPORT int JNICALL Java_tel_schich_javacan_platform_linux_epoll_EPoll_extractEvents(JNIEnv *env, jclass class, jlong eventsPointer, jint n, jintArray events, jintArray fds) {
-    if (n <= 0) {
-        return 0;
-    }
+JNIEXPORT jobject JNICALL Java_tel_schich_javacan_platform_linux_epoll_EPoll_wrapEvents(JNIEnv *env, jclass class, jlong eventsPointer, jint maxEvents) {
+    return (*env)->NewDirectByteBuffer(env, (void*)(uintptr_t)eventsPointer, sizeof(struct epoll_event) * maxEvents);
+}
 
-    if ((*env)->GetArrayLength(env, events) < n || (*env)->GetArrayLength(env, fds) < n) {
-        return -1;
-    }
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_platform_linux_epoll_EPoll_getEventSize(JNIEnv *env, jclass class) {
+    return sizeof(struct epoll_event);
+}
 
-    jint *criticalEvents = (*env)->GetPrimitiveArrayCritical(env, events, false);
-    if (criticalEvents == NULL) {
-        return -1;
-    }
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_platform_linux_epoll_EPoll_getEventDataOffset(JNIEnv *env, jclass class) {
+    return offsetof(struct epoll_event, data);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_platform_linux_epoll_EPoll_getFrameRecordSize(JNIEnv *env, jclass class) {
+    return sizeof(struct frame_record);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_platform_linux_epoll_EPoll_getFrameRecordFdOffset(JNIEnv *env, jclass class) {
+    return offsetof(struct frame_record, fd);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_platform_linux_epoll_EPoll_getFrameRecordLengthOffset(JNIEnv *env, jclass class) {
+    return offsetof(struct frame_record, length);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_platform_linux_epoll_EPoll_getFrameRecordTimestampSecondsOffset(JNIEnv *env, jclass class) {
+    return offsetof(struct frame_record, timestamp_seconds);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_platform_linux_epoll_EPoll_getFrameRecordTimestampNanosOffset(JNIEnv *env, jclass class) {
+    return offsetof(struct frame_record, timestamp_nanos);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_platform_linux_epoll_EPoll_getFrameRecordFrameOffset(JNIEnv *env, jclass class) {
+    return offsetof(struct frame_record, frame);
+}
 
-    jint *criticalFds = (*env)->GetPrimitiveArrayCritical(env, fds, false);
-    if (criticalFds == NULL) {
-        (*env)->ReleasePrimitiveArrayCritical(env, events, criticalEvents, false);
-        return -1;
+static void parse_record_timestamp(struct msghdr *header, struct frame_record *record) {
+    struct timeval tv;
+    struct timespec ts;
+    struct scm_timestamping timestamping;
+    for (struct cmsghdr *cmsg = CMSG_FIRSTHDR(header); cmsg; cmsg = CMSG_NXTHDR(header, cmsg)) {
+        if (cmsg->cmsg_level == SOL_SOCKET) {
+            switch (cmsg->cmsg_type) {
+                case SO_TIMESTAMP:
+                    memcpy(&tv, CMSG_DATA(cmsg), sizeof(tv));
+                    record->timestamp_seconds = tv.tv_sec;
+                    record->timestamp_nanos = tv.tv_usec * 1000;
+                    return;
+                case SO_TIMESTAMPNS:
+                    memcpy(&ts, CMSG_DATA(cmsg), sizeof(ts));
+                    record->timestamp_seconds = ts.tv_sec;
+                    record->timestamp_nanos = ts.tv_nsec;
+                    return;
+                case SO_TIMESTAMPING:
+                    memcpy(&timestamping, CMSG_DATA(cmsg), sizeof(timestamping));
+                    record->timestamp_seconds = timestamping.ts[0].tv_sec;
+                    record->timestamp_nanos = timestamping.ts[0].tv_nsec;
+                    return;
+            }
+        }
     }
+    // no kernel timestamp has been requested on the socket, so the time of reading has to do
+    clock_gettime(CLOCK_REALTIME, &ts);
+    record->timestamp_seconds = ts.tv_sec;
+    record->timestamp_nanos = ts.tv_nsec;
+}
 
-    struct epoll_event* eventsPtr = (struct epoll_event*)(uintptr_t)eventsPointer;
-    for (int i = 0; i < n; ++i) {
-        criticalEvents[i] = (jint) eventsPtr->events;
-        criticalFds[i] = eventsPtr->data.fd;
-        eventsPtr++;
+static int read_frames(int fd, struct frame_record *records, int maxRecords, int readBudget) {
+    char control[CONTROL_BUFFER_SIZE];
+    int count = 0;
+    while (count < maxRecords && count < readBudget) {
+        struct frame_record *record = &records[count];
+        struct iovec iov = {
+            .iov_base = record->frame,
+            .iov_len = sizeof(record->frame),
+        };
+        struct msghdr header = {
+            .msg_name = NULL,
+            .msg_namelen = 0,
+            .msg_control = control,
+            .msg_controllen = sizeof(control),
+            .msg_flags = 0,
+            .msg_iov = &iov,
+            .msg_iovlen = 1,
+        };
+        ssize_t bytes_received = recvmsg(fd, &header, MSG_DONTWAIT);
+        if (bytes_received == -1) {
+            if (errno == EINTR) {
+                continue;
+            }
+            if (errno == EAGAIN || errno == EWOULDBLOCK) {
+                break;
+            }
+            record->fd = fd;
+            record->length = -errno;
+            record->timestamp_seconds = 0;
+            record->timestamp_nanos = 0;
+            count++;
+            break;
+        }
+        record->fd = fd;
+        record->length = (jint) bytes_received;
+        parse_record_timestamp(&header, record);
+        count++;
     }
+    return count;
+}
 
-    (*env)->ReleasePrimitiveArrayCritical(env, events, criticalEvents, false);
-    (*env)->ReleasePrimitiveArrayCritical(env, fds, criticalFds, false);
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_platform_linux_epoll_EPoll_pollAndRead(JNIEnv *env, jclass class, jint epollfd, jlong eventsPointer, jint maxEvents, jlong timeout, jint eventfd, jobject buffer, jint offset, jint maxRecords, jint readBudget) {
+    struct epoll_event *events = (struct epoll_event *) (uintptr_t) eventsPointer;
+    jint n;
+    while (true) {
+        n = epoll_wait(epollfd, events, maxEvents, (int) timeout);
+        if (n == -1) {
+            if (errno == EINTR) {
+                continue;
+            }
+            throw_epoll_exception(env, "Unable to poll");
+            return 0;
+        }
+        break;
+    }
 
-    return 0;
+    struct frame_record *records = (struct frame_record *) ((*env)->GetDirectBufferAddress(env, buffer) + offset);
+    int count = 0;
+    for (int i = 0; i < n && count < maxRecords; ++i) {
+        int fd = events[i].data.fd;
+        if (fd == eventfd) {
+            uint64_t val;
+            eventfd_read(eventfd, &val);
+        } else if (events[i].events & (EPOLLIN | EPOLLERR)) {
+            count += read_frames(fd, records + count, maxRecords - count, readBudget);
+        }
+    }
+    return count;
 }
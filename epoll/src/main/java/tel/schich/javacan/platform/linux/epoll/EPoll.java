@@ -25,6 +25,8 @@ package tel.schich.javacan.platform.linux.epoll;
 import tel.schich.javacan.platform.Platform;
 import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
 
+import java.nio.ByteBuffer;
+
 /**
  * This class specifies all supported native operations on the epoll subsystem.
  */
@@ -49,6 +51,7 @@ class EPoll {
 
     public static final int EPOLLIN = 0x001;
     public static final int EPOLLOUT = 0x004;
+    public static final int EPOLLET = 1 << 31;
 
     public static native int create();
 
@@ -72,5 +75,49 @@ class EPoll {
 
     public static native int poll(int epollfd, long eventsPointer, int maxEvents, long timeout) throws LinuxNativeOperationException;
 
-    public static native int extractEvents(long eventsPointer, int n, int[] events, int[] fds);
+    /**
+     * Creates a direct {@link ByteBuffer} view on the native epoll_event array allocated by {@link #newEvents(int)}.
+     * The buffer must not be used after the events have been freed.
+     *
+     * @param eventsPointer the pointer to the events array
+     * @param maxEvents the size of the events array
+     * @return the view on the events array in an unspecified byte order
+     */
+    public static native ByteBuffer wrapEvents(long eventsPointer, int maxEvents);
+
+    public static native int getEventSize();
+
+    public static native int getEventDataOffset();
+
+    /**
+     * Waits for events like {@link #poll(int, long, int, long)} and immediately reads up to {@code readBudget} frames
+     * from every readable file descriptor into the given buffer. Each frame is stored as a fixed size record
+     * consisting of the file descriptor, the amount of bytes read (or the negated errno if the read failed),
+     * the receive timestamp and the frame itself. A signalled eventfd is cleared.
+     *
+     * @param epollfd the epoll file descriptor
+     * @param eventsPointer the pointer to the events array
+     * @param maxEvents the size of the events array
+     * @param timeout the timeout in milliseconds
+     * @param eventfd the wakeup eventfd
+     * @param buffer the direct buffer to write the records to
+     * @param offset the offset of the first record within the buffer
+     * @param maxRecords the maximum amount of records that fit into the buffer
+     * @param readBudget the maximum amount of frames to read from a single file descriptor
+     * @return the amount of records written
+     * @throws LinuxNativeOperationException if waiting for events failed
+     */
+    public static native int pollAndRead(int epollfd, long eventsPointer, int maxEvents, long timeout, int eventfd, ByteBuffer buffer, int offset, int maxRecords, int readBudget) throws LinuxNativeOperationException;
+
+    public static native int getFrameRecordSize();
+
+    public static native int getFrameRecordFdOffset();
+
+    public static native int getFrameRecordLengthOffset();
+
+    public static native int getFrameRecordTimestampSecondsOffset();
+
+    public static native int getFrameRecordTimestampNanosOffset();
+
+    public static native int getFrameRecordFrameOffset();
 }
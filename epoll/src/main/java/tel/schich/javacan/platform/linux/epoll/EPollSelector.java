@@ -26,11 +26,14 @@ import org.eclipse.jdt.annotation.Nullable;
 import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
 import tel.schich.javacan.platform.linux.UnixFileDescriptor;
 import tel.schich.javacan.select.IOEvent;
+import tel.schich.javacan.select.IOEventBatch;
 import tel.schich.javacan.select.IOSelector;
 import tel.schich.javacan.platform.NativeChannel;
 import tel.schich.javacan.select.SelectorRegistration;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.Channel;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ClosedSelectorException;
@@ -47,7 +50,8 @@ import static java.util.Collections.newSetFromMap;
  * own epoll-based {@link java.nio.channels.Selector} implementation.
  * </p>
  * <p>
- * This implementation does not expose any more public APIs.
+ * Channels can optionally be registered in edge-triggered mode (see {@link #open(int, boolean)}), in which case
+ * an event is only reported when new data arrives, so consumers must read until the channel would block.
  * </p>
  *
  * @see <a href="https://man7.org/linux/man-pages/man7/epoll.7.html">epoll man page</a>
@@ -61,31 +65,80 @@ final public class EPollSelector implements IOSelector<UnixFileDescriptor> {
     private static final long SELECT_NO_BLOCKING = 0;
     private static final long SELECT_BLOCK_INDEFINITELY = -1;
 
+    /**
+     * The size of a single record written by {@link #selectAndRead(Duration, ByteBuffer, int)}.
+     */
+    public static final int FRAME_RECORD_SIZE = EPoll.getFrameRecordSize();
+    /**
+     * The offset of the file descriptor (int) the frame has been read from within a frame record.
+     */
+    public static final int FRAME_RECORD_FD_OFFSET = EPoll.getFrameRecordFdOffset();
+    /**
+     * The offset of the amount of bytes read (int) within a frame record. A negative length is the negated errno of a
+     * failed read.
+     */
+    public static final int FRAME_RECORD_LENGTH_OFFSET = EPoll.getFrameRecordLengthOffset();
+    /**
+     * The offset of the seconds (long) of the receive timestamp within a frame record.
+     */
+    public static final int FRAME_RECORD_TIMESTAMP_SECONDS_OFFSET = EPoll.getFrameRecordTimestampSecondsOffset();
+    /**
+     * The offset of the nanoseconds (long) of the receive timestamp within a frame record.
+     */
+    public static final int FRAME_RECORD_TIMESTAMP_NANOS_OFFSET = EPoll.getFrameRecordTimestampNanosOffset();
+    /**
+     * The offset of the frame bytes within a frame record.
+     */
+    public static final int FRAME_RECORD_FRAME_OFFSET = EPoll.getFrameRecordFrameOffset();
+
+    private static final int EVENT_SIZE = EPoll.getEventSize();
+    private static final int EVENT_DATA_OFFSET = EPoll.getEventDataOffset();
+
+    private static final Set<SelectorRegistration.Operation> NO_OPS = Collections.emptySet();
+    private static final Set<SelectorRegistration.Operation> READ_OPS = immutableOps(SelectorRegistration.Operation.READ);
+    private static final Set<SelectorRegistration.Operation> WRITE_OPS = immutableOps(SelectorRegistration.Operation.WRITE);
+    private static final Set<SelectorRegistration.Operation> READ_WRITE_OPS = immutableOps(SelectorRegistration.Operation.READ, SelectorRegistration.Operation.WRITE);
+
     private volatile boolean open = true;
 
     private final int epollfd;
     private final long eventsPointer;
+    private final ByteBuffer events;
     private final int maxEvents;
     private final int eventfd;
+    private final boolean edgeTriggered;
+
+    private static final int INITIAL_TABLE_SIZE = 64;
 
     private final Set<SelectorRegistration<UnixFileDescriptor, ?>> registrations;
-    private final Map<Integer, SelectorRegistration<UnixFileDescriptor, ?>> fdToKey;
     private final Object keyCollectionsLock = new Object();
 
+    /**
+     * The registrations indexed by their file descriptor. The table is copied on every modification while holding
+     * the {@link #keyCollectionsLock}, so the poll path can look up registrations from a snapshot without locking.
+     */
+    private volatile @Nullable EPollRegistration<?>[] fdTable;
+
     public EPollSelector() throws LinuxNativeOperationException {
         this(100);
     }
 
     public EPollSelector(int maxEvents) throws LinuxNativeOperationException {
+        this(maxEvents, false);
+    }
+
+    public EPollSelector(int maxEvents, boolean edgeTriggered) throws LinuxNativeOperationException {
         this.epollfd = EPoll.create();
         this.maxEvents = maxEvents;
+        this.edgeTriggered = edgeTriggered;
         this.eventsPointer = EPoll.newEvents(maxEvents);
+        this.events = EPoll.wrapEvents(eventsPointer, maxEvents).order(ByteOrder.nativeOrder());
 
         this.eventfd = EPoll.createEventfd(false);
         EPoll.addFileDescriptor(epollfd, eventfd, EPoll.EPOLLIN);
 
         this.registrations = newSetFromMap(new IdentityHashMap<>());
-        this.fdToKey = new HashMap<>();
+        this.fdTable = new EPollRegistration<?>[INITIAL_TABLE_SIZE];
     }
 
     public void close() throws IOException {
@@ -115,6 +168,15 @@ final public class EPollSelector implements IOSelector<UnixFileDescriptor> {
         return open;
     }
 
+    /**
+     * Checks whether channels are registered in edge-triggered mode.
+     *
+     * @return true if registrations are edge-triggered, false if they are level-triggered
+     */
+    public boolean isEdgeTriggered() {
+        return edgeTriggered;
+    }
+
     private void ensureOpen() {
         if (!isOpen())
             throw new ClosedSelectorException();
@@ -143,7 +205,7 @@ final public class EPollSelector implements IOSelector<UnixFileDescriptor> {
             EPollRegistration<ChannelType> newRegistration = new EPollRegistration<>(this, key.getChannel(), fd, newOps);
             this.registrations.remove(key);
             this.registrations.add(newRegistration);
-            this.fdToKey.put(fd.getValue(), newRegistration);
+            putRegistration(fd.getValue(), newRegistration);
             return newRegistration;
         }
     }
@@ -163,18 +225,53 @@ final public class EPollSelector implements IOSelector<UnixFileDescriptor> {
         final UnixFileDescriptor handle = (UnixFileDescriptor) nativeHandle;
         int fd = handle.getValue();
 
-        EPoll.addFileDescriptor(epollfd, fd, translateInterestsToEPoll(ops));
-
         EPollRegistration<ChannelType> key = new EPollRegistration<>(this, ch, handle, ops);
         synchronized (keyCollectionsLock) {
+            // the registration is published before the fd is added, so that no event can arrive for an unknown fd
+            putRegistration(fd, key);
+            try {
+                EPoll.addFileDescriptor(epollfd, fd, translateInterestsToEPoll(ops));
+            } catch (LinuxNativeOperationException e) {
+                removeRegistration(fd, key);
+                throw e;
+            }
             this.registrations.add(key);
-            this.fdToKey.put(fd, key);
         }
         return key;
     }
 
-    private static int translateInterestsToEPoll(Set<SelectorRegistration.Operation> ops) {
-        int newOps = 0;
+    private void putRegistration(int fd, EPollRegistration<?> registration) {
+        @Nullable EPollRegistration<?>[] table = fdTable;
+        int length = table.length;
+        while (length <= fd) {
+            length *= 2;
+        }
+        @Nullable EPollRegistration<?>[] newTable = Arrays.copyOf(table, length);
+        newTable[fd] = registration;
+        fdTable = newTable;
+    }
+
+    private void removeRegistration(int fd, SelectorRegistration<UnixFileDescriptor, ?> registration) {
+        @Nullable EPollRegistration<?>[] table = fdTable;
+        // the registration might have changed already due to FD reuse
+        if (fd < table.length && table[fd] == registration) {
+            @Nullable EPollRegistration<?>[] newTable = table.clone();
+            newTable[fd] = null;
+            fdTable = newTable;
+        }
+    }
+
+    @Nullable
+    private EPollRegistration<?> lookupRegistration(int fd) {
+        @Nullable EPollRegistration<?>[] table = fdTable;
+        if (fd < 0 || fd >= table.length) {
+            return null;
+        }
+        return table[fd];
+    }
+
+    private int translateInterestsToEPoll(Set<SelectorRegistration.Operation> ops) {
+        int newOps = edgeTriggered ? EPoll.EPOLLET : 0;
         for (SelectorRegistration.Operation op : ops) {
             switch (op) {
                 case READ:
@@ -191,13 +288,17 @@ final public class EPollSelector implements IOSelector<UnixFileDescriptor> {
     }
 
     private static Set<SelectorRegistration.Operation> translateInterestsFromEPoll(int ops) {
-        Set<SelectorRegistration.Operation> newOps = EnumSet.noneOf(SelectorRegistration.Operation.class);
-        if ((ops & EPoll.EPOLLIN) != 0)
-            newOps.add(SelectorRegistration.Operation.READ);
-        if ((ops & EPoll.EPOLLOUT) != 0)
-            newOps.add(SelectorRegistration.Operation.WRITE);
+        boolean read = (ops & EPoll.EPOLLIN) != 0;
+        boolean write = (ops & EPoll.EPOLLOUT) != 0;
+        if (read) {
+            return write ? READ_WRITE_OPS : READ_OPS;
+        } else {
+            return write ? WRITE_OPS : NO_OPS;
+        }
+    }
 
-        return newOps;
+    private static Set<SelectorRegistration.Operation> immutableOps(SelectorRegistration.Operation first, SelectorRegistration.Operation... rest) {
+        return Collections.unmodifiableSet(EnumSet.of(first, rest));
     }
 
     public Set<SelectorRegistration<UnixFileDescriptor, ?>> getRegistrations() {
@@ -211,11 +312,7 @@ final public class EPollSelector implements IOSelector<UnixFileDescriptor> {
         }
         final int fd = registration.getHandle().getValue();
         synchronized (keyCollectionsLock) {
-            SelectorRegistration<UnixFileDescriptor, ?> toBeRemoved = fdToKey.get(fd);
-            // the registration might have changed already due to FD reuse
-            if (toBeRemoved == registration) {
-                fdToKey.remove(fd);
-            }
+            removeRegistration(fd, registration);
             registrations.remove(registration);
             if (!registration.getOperations().isEmpty()) {
                 EPoll.removeFileDescriptor(epollfd, fd);
@@ -224,31 +321,33 @@ final public class EPollSelector implements IOSelector<UnixFileDescriptor> {
         return true;
     }
 
-    private List<IOEvent<UnixFileDescriptor>> poll(long timeout) throws IOException {
+    private int waitForEvents(long timeout) throws IOException {
         ensureOpen();
+        return EPoll.poll(epollfd, eventsPointer, maxEvents, timeout);
+    }
 
-        int n = EPoll.poll(epollfd, eventsPointer, maxEvents, timeout);
+    private int eventFd(int i) {
+        return events.getInt(i * EVENT_SIZE + EVENT_DATA_OFFSET);
+    }
 
-        int[] events = new int[n];
-        int[] fds = new int[n];
-        if (EPoll.extractEvents(eventsPointer, n, events, fds) != 0) {
-            throw new IOException("Unable to extract events");
-        }
+    private int eventMask(int i) {
+        return events.getInt(i * EVENT_SIZE);
+    }
+
+    private List<IOEvent<UnixFileDescriptor>> poll(long timeout) throws IOException {
+        int n = waitForEvents(timeout);
 
         List<IOEvent<UnixFileDescriptor>> ioEvents = new ArrayList<>(n);
 
-        synchronized (keyCollectionsLock) {
-            int fd;
-            for (int i = 0; i < n; ++i) {
-                fd = fds[i];
-                if (fd == eventfd) {
-                    EPoll.clearEvent(eventfd);
-                } else {
-                    SelectorRegistration<UnixFileDescriptor, ?> key = fdToKey.get(fd);
-                    if (key != null) {
-                        Set<SelectorRegistration.Operation> ops = translateInterestsFromEPoll(events[i]);
-                        ioEvents.add(new IOEvent<>(key, ops));
-                    }
+        int fd;
+        for (int i = 0; i < n; ++i) {
+            fd = eventFd(i);
+            if (fd == eventfd) {
+                EPoll.clearEvent(eventfd);
+            } else {
+                EPollRegistration<?> key = lookupRegistration(fd);
+                if (key != null) {
+                    ioEvents.add(new IOEvent<>(key, translateInterestsFromEPoll(eventMask(i))));
                 }
             }
         }
@@ -256,6 +355,26 @@ final public class EPollSelector implements IOSelector<UnixFileDescriptor> {
         return ioEvents;
     }
 
+    private int poll(long timeout, IOEventBatch<UnixFileDescriptor> batch) throws IOException {
+        batch.clear();
+        int n = waitForEvents(timeout);
+
+        int fd;
+        for (int i = 0; i < n; ++i) {
+            fd = eventFd(i);
+            if (fd == eventfd) {
+                EPoll.clearEvent(eventfd);
+            } else {
+                EPollRegistration<?> key = lookupRegistration(fd);
+                if (key != null) {
+                    batch.add(key, translateInterestsFromEPoll(eventMask(i)));
+                }
+            }
+        }
+
+        return batch.size();
+    }
+
     @Override
     public List<IOEvent<UnixFileDescriptor>> selectNow() throws IOException {
         return poll(SELECT_NO_BLOCKING);
@@ -271,6 +390,69 @@ final public class EPollSelector implements IOSelector<UnixFileDescriptor> {
         return poll(SELECT_BLOCK_INDEFINITELY);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The events are read directly from the native event array and the reported operation sets are shared immutable
+     * instances, so this operation does not allocate once the batch has reached the size of {@code maxEvents}.
+     * </p>
+     */
+    @Override
+    public int select(@Nullable Duration timeout, IOEventBatch<UnixFileDescriptor> batch) throws IOException {
+        return poll(timeout == null ? SELECT_BLOCK_INDEFINITELY : timeout.toMillis(), batch);
+    }
+
+    /**
+     * <p>
+     * Waits for IO events like {@link #select(Duration)}, but instead of reporting the ready channels, it immediately
+     * reads up to {@code readBudget} frames from every readable channel within the same native call. The frames are
+     * written to the given buffer as records of {@link #FRAME_RECORD_SIZE} bytes starting at the buffer's position.
+     * Each record is tagged with the file descriptor it has been read from, which can be resolved using
+     * {@link #getRegistration(int)}, the amount of bytes read and the receive timestamp. The timestamp is the kernel's
+     * software timestamp if timestamps have been enabled on the socket, otherwise it is the time of reading.
+     * </p>
+     * <p>
+     * This is only meant for selectors with only raw CAN channels registered in level-triggered mode, as frames that
+     * did not fit into the buffer will only be read after the next wait.
+     * The position and limit of the buffer are not changed.
+     * </p>
+     *
+     * @param timeout the maximum time to wait for events, {@link Duration#ZERO} to not block at all or null to block indefinitely
+     * @param records the direct buffer in native byte order to write the records to
+     * @param readBudget the maximum amount of frames to read from a single channel
+     * @return the amount of records written
+     * @throws IOException if the wait failed
+     */
+    public int selectAndRead(@Nullable Duration timeout, ByteBuffer records, int readBudget) throws IOException {
+        ensureOpen();
+        if (edgeTriggered) {
+            throw new IllegalStateException("Frames can only be read by the selector in level-triggered mode!");
+        }
+        if (!records.isDirect()) {
+            throw new IllegalArgumentException("The record buffer must be a direct buffer!");
+        }
+        if (readBudget < 1) {
+            throw new IllegalArgumentException("The read budget must be at least 1!");
+        }
+        int maxRecords = records.remaining() / FRAME_RECORD_SIZE;
+        if (maxRecords == 0) {
+            throw new IllegalArgumentException("The record buffer must have space for at least one record!");
+        }
+        long timeoutMillis = timeout == null ? SELECT_BLOCK_INDEFINITELY : timeout.toMillis();
+        return EPoll.pollAndRead(epollfd, eventsPointer, maxEvents, timeoutMillis, eventfd, records, records.position(), maxRecords, readBudget);
+    }
+
+    /**
+     * Looks up the current registration of the given file descriptor without locking.
+     *
+     * @param fd the file descriptor
+     * @return the registration or null if the file descriptor is not registered
+     */
+    @Nullable
+    public SelectorRegistration<UnixFileDescriptor, ?> getRegistration(int fd) {
+        return lookupRegistration(fd);
+    }
+
     @Override
     public void wakeup() {
         ensureOpen();
@@ -288,4 +470,8 @@ final public class EPollSelector implements IOSelector<UnixFileDescriptor> {
     public static EPollSelector open(int maxEvents) throws IOException {
         return new EPollSelector(maxEvents);
     }
+
+    public static EPollSelector open(int maxEvents, boolean edgeTriggered) throws IOException {
+        return new EPollSelector(maxEvents, edgeTriggered);
+    }
 }
@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.select;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * <p>
+ * This class is a reusable container for the IO events of a single selection. It holds the same information as a list
+ * of {@link IOEvent}s, but it is meant to be owned by the caller and to be passed into every selection, so that
+ * selecting does not allocate any objects once the batch has grown to the maximum amount of events.
+ * </p>
+ * <p>
+ * The contents of the batch are only valid until the next selection. This class is not thread-safe.
+ * </p>
+ *
+ * @param <HandleType> The type of the resource handle
+ * @see IOSelector#select(java.time.Duration, IOEventBatch)
+ */
+final public class IOEventBatch<HandleType> {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Object[] registrations;
+    private Object[] operations;
+    private int size;
+
+    public IOEventBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IOEventBatch(int initialCapacity) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("The capacity must be at least 1!");
+        }
+        this.registrations = new Object[initialCapacity];
+        this.operations = new Object[initialCapacity];
+        this.size = 0;
+    }
+
+    /**
+     * The amount of events in this batch.
+     *
+     * @return the amount of events
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if this batch contains any events.
+     *
+     * @return true if there are no events in this batch
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * The registration of the event at the given index.
+     * The channel type is not statically known at this point.
+     *
+     * @param index the index of the event
+     * @return the registration
+     */
+    @SuppressWarnings("unchecked")
+    public SelectorRegistration<HandleType, ?> getRegistration(int index) {
+        checkIndex(index);
+        return (SelectorRegistration<HandleType, ?>) registrations[index];
+    }
+
+    /**
+     * The operations that can be performed now for the event at the given index.
+     *
+     * @param index the index of the event
+     * @return a set of operations
+     */
+    @SuppressWarnings("unchecked")
+    public Set<SelectorRegistration.Operation> getOperations(int index) {
+        checkIndex(index);
+        return (Set<SelectorRegistration.Operation>) operations[index];
+    }
+
+    /**
+     * Appends an event to this batch. This is intended to be used by {@link IOSelector} implementations.
+     *
+     * @param registration the registration the event belongs to
+     * @param operations the operations that can be performed now
+     */
+    public void add(SelectorRegistration<HandleType, ?> registration, Set<SelectorRegistration.Operation> operations) {
+        if (size == registrations.length) {
+            int newCapacity = registrations.length * 2;
+            this.registrations = Arrays.copyOf(this.registrations, newCapacity);
+            this.operations = Arrays.copyOf(this.operations, newCapacity);
+        }
+        this.registrations[size] = registration;
+        this.operations[size] = operations;
+        size++;
+    }
+
+    /**
+     * Removes all events from this batch.
+     */
+    public void clear() {
+        Arrays.fill(registrations, 0, size, null);
+        Arrays.fill(operations, 0, size, null);
+        size = 0;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("IOEventBatch(");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append("(registration=").append(registrations[i]).append(", operations=").append(operations[i]).append(')');
+        }
+        return sb.append(')').toString();
+    }
+}
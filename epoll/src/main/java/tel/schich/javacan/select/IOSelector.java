@@ -22,6 +22,8 @@
  */
 package tel.schich.javacan.select;
 
+import org.eclipse.jdt.annotation.Nullable;
+
 import java.io.IOException;
 import java.nio.channels.Channel;
 import java.nio.channels.ClosedChannelException;
@@ -134,6 +136,30 @@ public interface IOSelector<HandleType> extends AutoCloseable {
      */
     List<IOEvent<HandleType>> selectNow() throws IOException;
 
+    /**
+     * <p>
+     * This operation selects IO events on this selector like {@link #select(Duration)}, but stores the events into the
+     * given caller-owned {@link IOEventBatch}, which is cleared first. Implementations should not allocate any objects
+     * in this operation, so that the batch can be reused for every selection.
+     * </p>
+     * <p>
+     * The default implementation delegates to {@link #select()} or {@link #select(Duration)}.
+     * </p>
+     *
+     * @param timeout the maximum time to wait for events, {@link Duration#ZERO} to not block at all or null to block indefinitely
+     * @param batch the batch to store the events into
+     * @return the amount of events that occurred on channels registered to this selector since the last selection.
+     * @throws IOException if any low level IO operation failed
+     */
+    default int select(@Nullable Duration timeout, IOEventBatch<HandleType> batch) throws IOException {
+        batch.clear();
+        List<IOEvent<HandleType>> events = timeout == null ? select() : select(timeout);
+        for (IOEvent<HandleType> event : events) {
+            batch.add(event.getRegistration(), event.getOperations());
+        }
+        return batch.size();
+    }
+
     /**
      * This operation wakes up any blocking {@link #select()} or {@link #select(Duration)} calls, without actually having
      * any IO events.
@@ -22,57 +22,108 @@
  */
 package tel.schich.javacan.util;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.net.SocketOption;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
-import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadFactory;
+import java.util.function.Function;
 
 import tel.schich.javacan.CanChannels;
 import tel.schich.javacan.NetworkDevice;
 import tel.schich.javacan.CanFilter;
+import tel.schich.javacan.CanFilterOptimizer;
+import tel.schich.javacan.CompiledCanFilter;
 import tel.schich.javacan.CanFrame;
 import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
 import tel.schich.javacan.platform.linux.UnixFileDescriptor;
-import tel.schich.javacan.select.IOEvent;
+import tel.schich.javacan.platform.linux.epoll.EPollSelector;
+import tel.schich.javacan.select.IOEventBatch;
 import tel.schich.javacan.select.IOSelector;
 import tel.schich.javacan.select.SelectorRegistration;
 
 import static java.time.Duration.ofMinutes;
 import static tel.schich.javacan.CanSocketOptions.FILTER;
 import static tel.schich.javacan.CanSocketOptions.LOOPBACK;
+import static tel.schich.javacan.CanSocketOptions.MAX_FILTERS;
+import static tel.schich.javacan.platform.linux.LinuxNativeOperationException.ENOBUFS;
+import static tel.schich.javacan.select.SelectorRegistration.Operation.READ;
+import static tel.schich.javacan.select.SelectorRegistration.Operation.WRITE;
 
 /**
  * This class implements an event driven interface over several CAN interface to send and receive
  * {@link tel.schich.javacan.CanFrame}s over multiple {@link tel.schich.javacan.NetworkDevice}s. Received
  * frames are passed on to a {@link tel.schich.javacan.util.FrameHandler} for each specific interface.
  * Frames can be send either to individual interfaces or all at once.
+ * <p>
+ * When a channel becomes readable, the broker keeps reading frames from it until the socket would block or until the
+ * channel's read budget (see {@link #setReadBudget(int)}) has been exhausted, so a single busy device can not starve the
+ * others. When used with an edge-triggered {@link EPollSelector}, channels that exhausted their budget are revisited
+ * on the next iteration of the event loop without blocking, as no further event would be reported for them.
+ * </p>
+ * <p>
+ * The polling thread looks up handlers without locking, so sending frames and managing devices from other threads is
+ * never blocked by a handler that is still running.
+ * </p>
+ * <p>
+ * Instead of a single handler per device, handlers can subscribe to the CAN IDs they are interested in (see
+ * {@link #subscribe(NetworkDevice, CanFilter, FrameHandler)}), which are dispatched by a {@link CanIdRouter}.
+ * </p>
+ * <p>
+ * Frames can either be sent synchronously by the calling thread or queued per device (see
+ * {@link #sendAsync(NetworkDevice, CanFrame)}), in which case the polling thread writes them whenever the device's
+ * channel is writable. If the device rejects frames because its transmit queue is full ({@code ENOBUFS}), the channel
+ * stays writable, so the broker stops waiting for writability and retries after an exponentially growing, bounded
+ * delay instead.
+ * </p>
  */
 public class CanBroker extends EventLoop<UnixFileDescriptor, RawCanChannel> {
     private static final Logger LOGGER = LoggerFactory.getLogger(CanBroker.class);
 
     public static final Duration DEFAULT_TIMEOUT = ofMinutes(1);
+    public static final int DEFAULT_READ_BUDGET = 64;
+    public static final int DEFAULT_TRANSMIT_QUEUE_CAPACITY = 256;
+    private static final Set<SelectorRegistration.Operation> READ_INTEREST = Collections.unmodifiableSet(EnumSet.of(READ));
+    private static final Set<SelectorRegistration.Operation> READ_WRITE_INTEREST = Collections.unmodifiableSet(EnumSet.of(READ, WRITE));
     private static final CanFilter[] NO_FILTERS = { CanFilter.NONE };
 
     private final ByteBuffer readBuffer = RawCanChannel.allocateSufficientMemory();
 
-    private final IdentityHashMap<RawCanChannel, FrameHandler> handlerMap = new IdentityHashMap<>();
-    private final HashMap<NetworkDevice, RawCanChannel> channelMap = new HashMap<>();
+    // both maps are immutable snapshots that are replaced while holding the handlerLock, so they can be read without it
+    private volatile Map<RawCanChannel, FrameHandler> handlerMap = Collections.emptyMap();
+    private volatile Map<NetworkDevice, RawCanChannel> channelMap = Collections.emptyMap();
     private final Object handlerLock = new Object();
     private final Set<CanFilter> filters = new HashSet<>();
     private CanFilter[] filterArray = new CanFilter[0];
     private final Object filterLock = new Object();
 
+    private final boolean edgeTriggered;
+    private final ChannelBacklog<RawCanChannel> backlog = new ChannelBacklog<>();
+    private final ChannelBacklog<RawCanChannel> writeBacklog = new ChannelBacklog<>();
+    private final ArrayDeque<RawCanChannel> delayedWrites = new ArrayDeque<>();
+    private final Map<RawCanChannel, TransmitQueue> transmitQueues = new ConcurrentHashMap<>();
+
     private volatile boolean loopback = true;
+    private volatile int readBudget = DEFAULT_READ_BUDGET;
+    private volatile int transmitQueueCapacity = DEFAULT_TRANSMIT_QUEUE_CAPACITY;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.FAIL;
+    private volatile @Nullable CompiledCanFilter frameFilter;
 
     public CanBroker(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector) {
         this(threadFactory, selector, DEFAULT_TIMEOUT);
@@ -80,6 +131,7 @@ public class CanBroker extends EventLoop<UnixFileDescriptor, RawCanChannel> {
 
     public CanBroker(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector, Duration timeout) {
         super("CAN", threadFactory, selector, timeout);
+        this.edgeTriggered = selector instanceof EPollSelector && ((EPollSelector) selector).isEdgeTriggered();
     }
 
     /**
@@ -89,9 +141,14 @@ public class CanBroker extends EventLoop<UnixFileDescriptor, RawCanChannel> {
      * @throws IOException if the native call fails
      */
     public void send(CanFrame frame) throws IOException {
-        synchronized (handlerLock) {
-            for (RawCanChannel ch : this.channelMap.values()) {
+        for (RawCanChannel ch : this.channelMap.values()) {
+            try {
                 ch.write(frame);
+            } catch (ClosedChannelException e) {
+                // the device might have been removed concurrently
+                if (this.handlerMap.containsKey(ch)) {
+                    throw e;
+                }
             }
         }
     }
@@ -104,14 +161,78 @@ public class CanBroker extends EventLoop<UnixFileDescriptor, RawCanChannel> {
      * @throws IOException if the native call fails
      */
     public void send(NetworkDevice device, CanFrame frame) throws IOException {
+        RawCanChannel ch = channelMap.get(device);
+        if (ch == null) {
+            throw new IllegalArgumentException("CAN device not known!");
+        }
+
+        ch.write(frame);
+    }
+
+    /**
+     * Queues a {@link tel.schich.javacan.CanFrame} to be sent to the given known
+     * {@link tel.schich.javacan.NetworkDevice} by the polling thread once the device's channel is writable, so bursts
+     * of frames do not stall the sending thread when the device's transmit queue is full. The frames of a device are
+     * sent in the order they have been queued. The frame must not be modified until the returned future completes.
+     * <p>
+     * If the channel's transmit queue is full, the configured {@link OverflowPolicy} applies (see
+     * {@link #setTransmitQueue(int, OverflowPolicy)}).
+     * </p>
+     *
+     * @param device the device to send the frame to
+     * @param frame the frame to send
+     * @return a future that completes once the frame has been written or completes exceptionally if it could not be
+     * @throws IOException if the native call fails or the thread has been interrupted while blocked
+     */
+    public CompletableFuture<Void> sendAsync(NetworkDevice device, CanFrame frame) throws IOException {
+        final RawCanChannel ch;
+        final TransmitQueue queue;
         synchronized (handlerLock) {
-            RawCanChannel ch = channelMap.get(device);
+            // queues are only created for known devices and removed together with them, so none can leak
+            ch = channelMap.get(device);
             if (ch == null) {
                 throw new IllegalArgumentException("CAN device not known!");
             }
+            queue = transmitQueues.computeIfAbsent(ch, c -> new TransmitQueue(transmitQueueCapacity, overflowPolicy));
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        synchronized (queue) {
+            if (queue.enqueue(frame, future)) {
+                try {
+                    updateRegistration(ch, READ_WRITE_INTEREST);
+                } catch (IOException e) {
+                    queue.abortArm(future, e);
+                }
+            }
+        }
+        return future;
+    }
 
-            ch.write(frame);
+    /**
+     * Configures the transmit queues used by {@link #sendAsync(NetworkDevice, CanFrame)}. This only applies to devices
+     * that have not been sent to asynchronously yet.
+     *
+     * @param capacity the maximum amount of queued frames per device
+     * @param policy the policy that applies when a queue is full
+     */
+    public void setTransmitQueue(int capacity, OverflowPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The transmit queue capacity must be at least 1!");
         }
+        this.transmitQueueCapacity = capacity;
+        this.overflowPolicy = policy;
+    }
+
+    /**
+     * Gets the amount of frames waiting in the transmit queue of the given device.
+     *
+     * @param device the device
+     * @return the amount of queued frames
+     */
+    public int getQueuedFrameCount(NetworkDevice device) {
+        RawCanChannel ch = channelMap.get(device);
+        TransmitQueue queue = ch == null ? null : transmitQueues.get(ch);
+        return queue == null ? 0 : queue.size();
     }
 
     /**
@@ -134,6 +255,49 @@ public class CanBroker extends EventLoop<UnixFileDescriptor, RawCanChannel> {
         return loopback;
     }
 
+    /**
+     * Sets the maximum amount of frames that will be read from a single channel before moving on to the other
+     * channels. A budget of 1 reads exactly one frame per readiness event.
+     *
+     * @param readBudget the maximum amount of frames to read from a channel in one go
+     */
+    public void setReadBudget(int readBudget) {
+        if (readBudget < 1) {
+            throw new IllegalArgumentException("The read budget must be at least 1!");
+        }
+        this.readBudget = readBudget;
+    }
+
+    /**
+     * Gets the maximum amount of frames that will be read from a single channel before moving on to the other
+     * channels.
+     *
+     * @return the read budget
+     */
+    public int getReadBudget() {
+        return readBudget;
+    }
+
+    /**
+     * Sets a filter that is applied in user space to every received frame before it is passed to a handler. In contrast
+     * to the kernel filters (see {@link #addFilter(CanFilter)}) it is not limited in the amount of filters, so
+     * it can be combined with {@link CanFilter#ANY} to handle large sets of CAN IDs.
+     *
+     * @param filter the filter or null to pass on all frames
+     */
+    public void setFrameFilter(@Nullable CompiledCanFilter filter) {
+        this.frameFilter = filter;
+    }
+
+    /**
+     * Gets the filter that is applied in user space to every received frame.
+     *
+     * @return the filter or null if all frames are passed on
+     */
+    public @Nullable CompiledCanFilter getFrameFilter() {
+        return frameFilter;
+    }
+
     /**
      * Adds a filter that will be added to all underlying channels.
      *
@@ -176,25 +340,41 @@ public class CanBroker extends EventLoop<UnixFileDescriptor, RawCanChannel> {
         }
     }
 
+    /**
+     * Returns the amount of filters that are actually applied to the underlying channels. Before being applied, the
+     * filters are reduced to an equivalent smaller set by the {@link CanFilterOptimizer}.
+     *
+     * @return the amount of kernel filters
+     */
+    public int getKernelFilterCount() {
+        synchronized (filterLock) {
+            return filterArray.length;
+        }
+    }
+
     private void updateFilters() throws IOException {
         synchronized (filterLock) {
             synchronized (this.handlerLock) {
                 if (filters.isEmpty()) {
                     this.filterArray = NO_FILTERS;
                 } else {
-                    filterArray = this.filters.toArray(new CanFilter[0]);
+                    filterArray = CanFilterOptimizer.optimize(this.filters);
                 }
-                updateOption(FILTER, filterArray);
+                updatePerHandler(FILTER, this::filtersFor);
             }
         }
     }
 
     private <T> void updateOption(SocketOption<T> opt, T val) throws IOException {
+        updatePerHandler(opt, handler -> val);
+    }
+
+    private <T> void updatePerHandler(SocketOption<T> opt, Function<FrameHandler, T> val) throws IOException {
         synchronized (this.handlerLock) {
             IOException e = null;
-            for (RawCanChannel channel : this.channelMap.values()) {
+            for (Map.Entry<RawCanChannel, FrameHandler> entry : this.handlerMap.entrySet()) {
                 try {
-                    channel.setOption(opt, val);
+                    entry.getKey().setOption(opt, val.apply(entry.getValue()));
                 } catch (IOException e1) {
                     if (e != null) {
                         e1.addSuppressed(e);
@@ -226,11 +406,15 @@ public class CanBroker extends EventLoop<UnixFileDescriptor, RawCanChannel> {
             }
             RawCanChannel ch = CanChannels.newRawChannel(device);
             ch.configureBlocking(false);
-            ch.setOption(FILTER, filterArray);
+            ch.setOption(FILTER, filtersFor(handler));
             ch.setOption(LOOPBACK, loopback);
             register(ch, EnumSet.of(SelectorRegistration.Operation.READ));
-            this.handlerMap.put(ch, handler);
-            this.channelMap.put(device, ch);
+            IdentityHashMap<RawCanChannel, FrameHandler> handlers = new IdentityHashMap<>(this.handlerMap);
+            handlers.put(ch, handler);
+            HashMap<NetworkDevice, RawCanChannel> channels = new HashMap<>(this.channelMap);
+            channels.put(device, ch);
+            this.handlerMap = handlers;
+            this.channelMap = channels;
             this.start();
         }
     }
@@ -242,49 +426,352 @@ public class CanBroker extends EventLoop<UnixFileDescriptor, RawCanChannel> {
      * @throws IOException if the native call fails
      */
     public void removeDevice(NetworkDevice device) throws IOException {
+        if (!removeDevice(device, null)) {
+            throw new IllegalArgumentException("Device not known!");
+        }
+    }
+
+    private boolean removeDevice(NetworkDevice device, @Nullable FrameHandler expectedHandler) throws IOException {
         final RawCanChannel ch;
+        final @Nullable TransmitQueue queue;
         synchronized (handlerLock) {
             if (!this.channelMap.containsKey(device)) {
-                throw new IllegalArgumentException("Device not known!");
+                return false;
+            }
+            if (expectedHandler != null && handlerMap.get(channelMap.get(device)) != expectedHandler) {
+                return false;
             }
 
-            ch = this.channelMap.remove(device);
-            this.handlerMap.remove(ch);
+            HashMap<NetworkDevice, RawCanChannel> channels = new HashMap<>(this.channelMap);
+            ch = channels.remove(device);
+            IdentityHashMap<RawCanChannel, FrameHandler> handlers = new IdentityHashMap<>(this.handlerMap);
+            handlers.remove(ch);
+            this.handlerMap = handlers;
+            this.channelMap = channels;
+            queue = transmitQueues.remove(ch);
         }
         cancel(ch);
+        if (queue != null) {
+            queue.close();
+        }
         lazyShutdown();
         ch.close();
+        return true;
     }
 
-    public boolean isEmpty() {
+    /**
+     * Subscribes a handler to the frames of a device that are accepted by the given filter. The device is added to
+     * this broker with a {@link CanIdRouter} if it is not yet known, subscriptions can not be mixed with a handler
+     * given to {@link #addDevice(NetworkDevice, FrameHandler)}.
+     * <p>
+     * The kernel filters of the device's channel are set to the union of its subscriptions instead of the filters of
+     * this broker. If that union exceeds {@link tel.schich.javacan.CanSocketOptions#MAX_FILTERS} filters even after
+     * optimizing it, all frames are received and filtered by the router alone.
+     * </p>
+     *
+     * @param device the device
+     * @param filter the filter selecting the frames
+     * @param handler the handler
+     * @throws IOException if the native call fails
+     * @see CanIdRouter
+     */
+    public void subscribe(NetworkDevice device, CanFilter filter, FrameHandler handler) throws IOException {
         synchronized (handlerLock) {
-            return this.handlerMap.isEmpty();
+            RawCanChannel ch = channelMap.get(device);
+            if (ch == null) {
+                addDevice(device, CanIdRouter.EMPTY.subscribe(filter, handler));
+            } else {
+                setRouter(ch, getRouter(ch).subscribe(filter, handler));
+            }
         }
     }
 
-    @Override
-    protected void processEvents(List<IOEvent<UnixFileDescriptor>> events) throws IOException {
+    /**
+     * Removes a subscription created by {@link #subscribe(NetworkDevice, CanFilter, FrameHandler)}. The device is
+     * removed from this broker together with its last subscription.
+     *
+     * @param device the device
+     * @param filter the filter selecting the frames
+     * @param handler the handler
+     * @return true if the subscription existed
+     * @throws IOException if the native call fails
+     */
+    public boolean unsubscribe(NetworkDevice device, CanFilter filter, FrameHandler handler) throws IOException {
+        final CanIdRouter updated;
         synchronized (handlerLock) {
-            for (IOEvent<UnixFileDescriptor> event : events) {
-                Channel ch = event.getRegistration().getChannel();
-                if (ch instanceof RawCanChannel) {
-                    RawCanChannel raw = (RawCanChannel) ch;
-                    FrameHandler handler = handlerMap.get(ch);
-                    if (handler != null) {
-                        readBuffer.clear();
-                        handler.handle(raw, raw.read(readBuffer));
-                    } else {
-                        LOGGER.warn("Handler not found for channel: " + ch);
+            RawCanChannel ch = channelMap.get(device);
+            if (ch == null) {
+                return false;
+            }
+            CanIdRouter router = getRouter(ch);
+            updated = router.unsubscribe(filter, handler);
+            if (updated == router) {
+                return false;
+            }
+            setRouter(ch, updated);
+        }
+        if (updated.isEmpty()) {
+            // removing might join the polling thread, nothing must have been subscribed in the meantime
+            removeDevice(device, updated);
+        }
+        return true;
+    }
+
+    private CanIdRouter getRouter(RawCanChannel ch) {
+        FrameHandler handler = handlerMap.get(ch);
+        if (!(handler instanceof CanIdRouter)) {
+            throw new IllegalArgumentException("The device has been added with a handler, it does not support subscriptions!");
+        }
+        return (CanIdRouter) handler;
+    }
+
+    private void setRouter(RawCanChannel ch, CanIdRouter router) throws IOException {
+        // the router is only published once the kernel accepted its filters, so a failed update leaves both unchanged
+        ch.setOption(FILTER, filtersFor(router));
+        IdentityHashMap<RawCanChannel, FrameHandler> handlers = new IdentityHashMap<>(this.handlerMap);
+        handlers.put(ch, router);
+        this.handlerMap = handlers;
+    }
+
+    private CanFilter[] filtersFor(FrameHandler handler) {
+        if (!(handler instanceof CanIdRouter)) {
+            return filterArray;
+        }
+        CanFilter[] routes = CanFilterOptimizer.optimize(((CanIdRouter) handler).getFilters());
+        if (routes.length == 0) {
+            return NO_FILTERS;
+        }
+        if (routes.length > MAX_FILTERS) {
+            return new CanFilter[] { CanFilter.ANY };
+        }
+        return routes;
+    }
+
+    /**
+     * Looks up the handler of a channel of this broker.
+     *
+     * @param ch the channel
+     * @return the handler or null if the channel is not (or no longer) known to this broker
+     */
+    @Nullable
+    protected final FrameHandler getHandler(RawCanChannel ch) {
+        return handlerMap.get(ch);
+    }
+
+    public boolean isEmpty() {
+        return this.handlerMap.isEmpty();
+    }
+
+    @Override
+    protected boolean hasPendingWork() {
+        return !backlog.isEmpty() || !writeBacklog.isEmpty();
+    }
+
+    @Override
+    protected long getTimedWorkDelayNanos() {
+        if (delayedWrites.isEmpty()) {
+            return -1;
+        }
+        final long now = System.nanoTime();
+        long delay = Long.MAX_VALUE;
+        for (RawCanChannel ch : delayedWrites) {
+            TransmitQueue queue = transmitQueues.get(ch);
+            if (queue == null) {
+                // the device has been removed, the next retry drops it
+                return 0;
+            }
+            delay = Math.min(delay, Math.max(0, queue.getRetryAt() - now));
+        }
+        return delay;
+    }
+
+    @Override
+    protected void processEvents(IOEventBatch<UnixFileDescriptor> events) throws IOException {
+        final int budget = readBudget;
+        final Map<RawCanChannel, FrameHandler> handlers = this.handlerMap;
+        for (int i = backlog.size(); i > 0; i--) {
+            RawCanChannel raw = backlog.poll();
+            FrameHandler handler = handlers.get(raw);
+            if (handler != null) {
+                drain(raw, handler, budget);
+            }
+        }
+        for (int i = writeBacklog.size(); i > 0; i--) {
+            flush(writeBacklog.poll(), budget);
+        }
+        retryDelayedWrites(budget);
+        for (int i = 0; i < events.size(); i++) {
+            Channel ch = events.getRegistration(i).getChannel();
+            if (ch instanceof RawCanChannel) {
+                RawCanChannel raw = (RawCanChannel) ch;
+                Set<SelectorRegistration.Operation> ops = events.getOperations(i);
+                FrameHandler handler = handlers.get(ch);
+                if (handler != null) {
+                    if (ops.contains(WRITE)) {
+                        flush(raw, budget);
+                    }
+                    if (ops.contains(READ) || !ops.contains(WRITE)) {
+                        drain(raw, handler, budget);
                     }
                 } else {
-                    LOGGER.warn("Unsupported channel: " + ch);
+                    LOGGER.warn("Handler not found for channel: " + ch);
+                }
+            } else {
+                LOGGER.warn("Unsupported channel: " + ch);
+            }
+        }
+    }
+
+    private void drain(RawCanChannel ch, FrameHandler handler, int budget) throws IOException {
+        for (int i = 0; i < budget; i++) {
+            if (!ch.isOpen()) {
+                // the handler might have removed the device
+                return;
+            }
+            readBuffer.clear();
+            if (ch.tryRead(readBuffer) == RawCanChannel.WOULD_BLOCK) {
+                return;
+            }
+            readBuffer.flip();
+            CompiledCanFilter filter = frameFilter;
+            if (filter != null && !filter.matches(readBuffer.getInt(0))) {
+                continue;
+            }
+            handler.handle(ch, CanFrame.create(readBuffer));
+        }
+        if (edgeTriggered) {
+            backlog.add(ch);
+        }
+    }
+
+    /**
+     * Writes the frames queued for the given channel until the channel would block or the budget has been exhausted.
+     *
+     * @param ch the channel
+     * @param budget the maximum amount of frames to write
+     * @throws IOException if the write interest could not be removed
+     */
+    protected final void flush(RawCanChannel ch, int budget) throws IOException {
+        TransmitQueue queue = transmitQueues.get(ch);
+        if (queue == null || queue.isBackingOff()) {
+            return;
+        }
+        for (int i = 0; i < budget; i++) {
+            TransmitQueue.Entry entry = queue.beginWrite();
+            if (entry == null) {
+                break;
+            }
+            try {
+                long written = ch.tryWrite(entry.frame.getBuffer());
+                if (written == RawCanChannel.WOULD_BLOCK) {
+                    // the socket buffer is full, the selector reports when the channel is writable again
+                    queue.abortWrite();
+                    return;
                 }
+                if (written != entry.frame.getSize()) {
+                    throw new IOException("Frame written incompletely!");
+                }
+            } catch (LinuxNativeOperationException e) {
+                if (e.getErrorNumber() == ENOBUFS) {
+                    // the device queue is full, but the socket stays writable, so waiting for writability would spin
+                    queue.abortWrite();
+                    backOff(ch, queue);
+                    return;
+                }
+                queue.remove(entry);
+                entry.future.completeExceptionally(e);
+                continue;
+            } catch (IOException e) {
+                queue.remove(entry);
+                entry.future.completeExceptionally(e);
+                continue;
+            }
+            queue.remove(entry);
+            queue.resetBackOff();
+            entry.future.complete(null);
+        }
+        synchronized (queue) {
+            if (queue.disarmIfEmpty()) {
+                if (ch.isOpen()) {
+                    updateRegistration(ch, READ_INTEREST);
+                }
+                return;
             }
         }
+        if (edgeTriggered) {
+            writeBacklog.add(ch);
+        }
+    }
+
+    /**
+     * Stops waiting for the channel to become writable and schedules a retry after the queue's back-off delay.
+     */
+    private void backOff(RawCanChannel ch, TransmitQueue queue) throws IOException {
+        queue.backOff(System.nanoTime());
+        delayedWrites.add(ch);
+        synchronized (queue) {
+            try {
+                // the queue stays armed, so sendAsync does not register write interest in the meantime
+                updateRegistration(ch, READ_INTEREST);
+            } catch (ClosedChannelException e) {
+                // the device has been removed concurrently
+            }
+        }
+    }
+
+    /**
+     * Retries writing to the channels whose back-off delay has elapsed.
+     *
+     * @param budget the maximum amount of frames to write per channel
+     * @throws IOException if the write interest could not be registered
+     */
+    private void retryDelayedWrites(int budget) throws IOException {
+        if (delayedWrites.isEmpty()) {
+            return;
+        }
+        final long now = System.nanoTime();
+        for (int i = delayedWrites.size(); i > 0; i--) {
+            RawCanChannel ch = delayedWrites.poll();
+            TransmitQueue queue = transmitQueues.get(ch);
+            if (queue == null) {
+                continue;
+            }
+            if (queue.getRetryAt() - now > 0) {
+                delayedWrites.add(ch);
+                continue;
+            }
+            queue.endBackOff();
+            synchronized (queue) {
+                try {
+                    updateRegistration(ch, READ_WRITE_INTEREST);
+                } catch (ClosedChannelException e) {
+                    continue;
+                }
+            }
+            flush(ch, budget);
+        }
+    }
+
+    /**
+     * Writes the frames queued for all channels, see {@link #flush(RawCanChannel, int)}, and retries writing to
+     * channels that have been backing off.
+     *
+     * @throws IOException if the write interest could not be updated
+     */
+    protected final void flushAll() throws IOException {
+        final int budget = readBudget;
+        retryDelayedWrites(budget);
+        for (RawCanChannel ch : transmitQueues.keySet()) {
+            flush(ch, budget);
+        }
     }
 
     @Override
     protected void closeResources() throws IOException {
+        for (TransmitQueue queue : transmitQueues.values()) {
+            queue.close();
+        }
+        transmitQueues.clear();
         IOException e = null;
         for (RawCanChannel channel : this.channelMap.values()) {
             try {
@@ -0,0 +1,280 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import tel.schich.javacan.CanFilter;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.RawCanChannel;
+
+import static tel.schich.javacan.CanId.ERR_FLAG;
+import static tel.schich.javacan.CanId.SFF_MASK;
+
+/**
+ * <p>
+ * This {@link FrameHandler} dispatches frames to the handlers subscribed to their CAN ID using a precomputed route
+ * table, see {@link CanBroker#subscribe(tel.schich.javacan.NetworkDevice, CanFilter, FrameHandler)}.
+ * </p>
+ * <p>
+ * The handlers of all standard IDs are resolved up front into a direct table of 2048 entries. Exactly matched
+ * extended IDs are resolved into an open addressing hash table, only extended IDs without exact subscriptions are
+ * checked against the remaining masked filters. Each handler receives a frame at most once, even if several of its
+ * filters accept it, and handlers are called in the order of their first subscription.
+ * </p>
+ * <p>
+ * Instances are immutable, subscribing and unsubscribing creates a new router.
+ * </p>
+ */
+public final class CanIdRouter implements FrameHandler {
+    private static final int ID_BITS = ~ERR_FLAG;
+    private static final FrameHandler[] NO_HANDLERS = new FrameHandler[0];
+
+    /**
+     * This router has no subscriptions.
+     */
+    public static final CanIdRouter EMPTY = new CanIdRouter(Collections.<Subscription>emptyList());
+
+    private final List<Subscription> subscriptions;
+    private final FrameHandler[][] standardRoutes;
+    private final CanIdTable extendedIds;
+    private final FrameHandler[] @Nullable [] extendedRoutes;
+    private final FrameHandler[] maskHandlers;
+    private final CanFilter[][] maskFilters;
+
+    private CanIdRouter(List<Subscription> subscriptions) {
+        this.subscriptions = subscriptions;
+
+        // exact routes per ID, mask routes grouped by handler, both in subscription order
+        Map<Integer, List<FrameHandler>> exact = new LinkedHashMap<>();
+        Map<FrameHandler, List<CanFilter>> masked = new LinkedHashMap<>();
+        for (Subscription subscription : subscriptions) {
+            CanFilter filter = subscription.filter;
+            if (!filter.isInverted() && filter.getMask() == ID_BITS) {
+                List<FrameHandler> handlers = exact.get(filter.getId() & ID_BITS);
+                if (handlers == null) {
+                    handlers = new ArrayList<>();
+                    exact.put(filter.getId() & ID_BITS, handlers);
+                }
+                handlers.add(subscription.handler);
+            } else {
+                List<CanFilter> filters = masked.get(subscription.handler);
+                if (filters == null) {
+                    filters = new ArrayList<>();
+                    masked.put(subscription.handler, filters);
+                }
+                filters.add(filter);
+            }
+        }
+
+        this.maskHandlers = masked.keySet().toArray(new FrameHandler[0]);
+        this.maskFilters = new CanFilter[maskHandlers.length][];
+        for (int i = 0; i < maskHandlers.length; i++) {
+            maskFilters[i] = masked.get(maskHandlers[i]).toArray(new CanFilter[0]);
+        }
+
+        this.standardRoutes = new FrameHandler[SFF_MASK + 1][];
+        for (int id = 0; id <= SFF_MASK; id++) {
+            standardRoutes[id] = resolve(exact.get(id), id);
+        }
+
+        this.extendedIds = new CanIdTable(CanIdTable.capacityFor(exact.size()));
+        this.extendedRoutes = new FrameHandler[extendedIds.capacity()][];
+        for (Map.Entry<Integer, List<FrameHandler>> entry : exact.entrySet()) {
+            final int id = entry.getKey();
+            if ((id & ~SFF_MASK) == 0) {
+                continue;
+            }
+            extendedRoutes[extendedIds.claim(id)] = resolve(entry.getValue(), id);
+        }
+    }
+
+    private FrameHandler[] resolve(@Nullable List<FrameHandler> exactHandlers, int id) {
+        List<FrameHandler> handlers = new ArrayList<>();
+        if (exactHandlers != null) {
+            for (FrameHandler handler : exactHandlers) {
+                addOnce(handlers, handler);
+            }
+        }
+        for (int i = 0; i < maskHandlers.length; i++) {
+            if (accepts(maskFilters[i], id)) {
+                addOnce(handlers, maskHandlers[i]);
+            }
+        }
+        return handlers.isEmpty() ? NO_HANDLERS : handlers.toArray(new FrameHandler[0]);
+    }
+
+    private static void addOnce(List<FrameHandler> handlers, FrameHandler handler) {
+        for (FrameHandler h : handlers) {
+            if (h == handler) {
+                return;
+            }
+        }
+        handlers.add(handler);
+    }
+
+    private static boolean accepts(CanFilter[] filters, int id) {
+        for (CanFilter filter : filters) {
+            if (filter.isInverted() != filter.matchId(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates a new router with an additional subscription. Subscribing the same filter and handler twice has no
+     * effect.
+     *
+     * @param filter the filter selecting the CAN IDs
+     * @param handler the handler
+     * @return the new router
+     */
+    public CanIdRouter subscribe(CanFilter filter, FrameHandler handler) {
+        Subscription subscription = new Subscription(filter, handler);
+        if (subscriptions.contains(subscription)) {
+            return this;
+        }
+        List<Subscription> updated = new ArrayList<>(subscriptions);
+        updated.add(subscription);
+        return new CanIdRouter(updated);
+    }
+
+    /**
+     * Creates a new router without the given subscription.
+     *
+     * @param filter the filter selecting the CAN IDs
+     * @param handler the handler
+     * @return the new router or this router if the subscription does not exist
+     */
+    public CanIdRouter unsubscribe(CanFilter filter, FrameHandler handler) {
+        List<Subscription> updated = new ArrayList<>(subscriptions);
+        if (!updated.remove(new Subscription(filter, handler))) {
+            return this;
+        }
+        return updated.isEmpty() ? EMPTY : new CanIdRouter(updated);
+    }
+
+    /**
+     * Checks if this router has any subscriptions.
+     *
+     * @return true if there are no subscriptions
+     */
+    public boolean isEmpty() {
+        return subscriptions.isEmpty();
+    }
+
+    /**
+     * Returns the filters of all subscriptions, which are suitable to be applied as kernel filters.
+     *
+     * @return the filters
+     */
+    public CanFilter[] getFilters() {
+        CanFilter[] filters = new CanFilter[subscriptions.size()];
+        for (int i = 0; i < filters.length; i++) {
+            filters[i] = subscriptions.get(i).filter;
+        }
+        return filters;
+    }
+
+    /**
+     * Returns the handlers subscribed to the given CAN ID.
+     *
+     * @param rawId the full 32 bit CAN ID as given by the kernel
+     * @return the handlers in the order they will be called
+     */
+    public FrameHandler[] route(int rawId) {
+        final int id = rawId & ID_BITS;
+        FrameHandler[] handlers = lookup(id);
+        if (handlers != null) {
+            return handlers.clone();
+        }
+        List<FrameHandler> matched = new ArrayList<>();
+        for (int i = 0; i < maskHandlers.length; i++) {
+            if (accepts(maskFilters[i], id)) {
+                matched.add(maskHandlers[i]);
+            }
+        }
+        return matched.toArray(new FrameHandler[0]);
+    }
+
+    private FrameHandler @Nullable [] lookup(int id) {
+        if ((id & ~SFF_MASK) == 0) {
+            return standardRoutes[id];
+        }
+        final int slot = extendedIds.find(id);
+        return slot < 0 ? null : extendedRoutes[slot];
+    }
+
+    @Override
+    public void handle(RawCanChannel ch, CanFrame frame) {
+        final int id = frame.getRawId() & ID_BITS;
+        FrameHandler[] handlers = lookup(id);
+        if (handlers != null) {
+            for (FrameHandler handler : handlers) {
+                handler.handle(ch, frame);
+            }
+            return;
+        }
+        for (int i = 0; i < maskHandlers.length; i++) {
+            if (accepts(maskFilters[i], id)) {
+                maskHandlers[i].handle(ch, frame);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CanIdRouter(subscriptions=" + subscriptions.size() + ")";
+    }
+
+    private static final class Subscription {
+        private final CanFilter filter;
+        private final FrameHandler handler;
+
+        Subscription(CanFilter filter, FrameHandler handler) {
+            this.filter = filter;
+            this.handler = handler;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (o == null || getClass() != o.getClass())
+                return false;
+            Subscription that = (Subscription) o;
+            return filter.equals(that.filter) && handler == that.handler;
+        }
+
+        @Override
+        public int hashCode() {
+            return filter.hashCode() * 31 + System.identityHashCode(handler);
+        }
+    }
+}
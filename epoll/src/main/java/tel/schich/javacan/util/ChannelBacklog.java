@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.nio.channels.Channel;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A FIFO queue of channels that still have work left over after exhausting their budget. Each channel is queued at
+ * most once, so a channel that exhausts its budget several times before being revisited does not get an unfair share
+ * of the next iteration and the queue never grows beyond the number of channels. This class is not thread-safe.
+ *
+ * @param <ChannelType> the type of channels
+ */
+final class ChannelBacklog<ChannelType extends Channel> {
+    private final ArrayDeque<ChannelType> queue = new ArrayDeque<>();
+    private final Set<ChannelType> queued = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Queues the channel unless it is queued already.
+     *
+     * @param ch the channel
+     */
+    void add(ChannelType ch) {
+        if (queued.add(ch)) {
+            queue.add(ch);
+        }
+    }
+
+    /**
+     * Removes the channel that has been queued the longest.
+     *
+     * @return the channel or null if the backlog is empty
+     */
+    @Nullable ChannelType poll() {
+        ChannelType ch = queue.poll();
+        if (ch != null) {
+            queued.remove(ch);
+        }
+        return ch;
+    }
+
+    int size() {
+        return queue.size();
+    }
+
+    boolean isEmpty() {
+        return queue.isEmpty();
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.Nullable;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.platform.linux.UnixFileDescriptor;
+import tel.schich.javacan.select.IOEventBatch;
+import tel.schich.javacan.select.IOSelector;
+import tel.schich.javacan.select.SelectorRegistration;
+
+import static tel.schich.javacan.select.SelectorRegistration.Operation.READ;
+
+/**
+ * <p>
+ * This is the base of event loops that publish what is read from a single {@link RawCanChannel} to a single
+ * {@link FrameFlow.Subscriber}. Reading is driven by the demand of the subscriber: while there is no outstanding
+ * demand, the channel is removed from the selector and not read at all, so bursts are absorbed by the socket's
+ * receive queue instead of being buffered on the heap. Frames that exceed the receive queue are dropped by the kernel
+ * and can be monitored using {@link tel.schich.javacan.CanSocketOptions#SO_RXQ_OVFL}.
+ * </p>
+ * <p>
+ * Published items are only valid during the call to {@link FrameFlow.Subscriber#onNext(Object)}, as the buffers are
+ * reused. The polling thread is started by the first request and keeps running until the publisher is closed, even
+ * if the subscription has been cancelled. All signals are serialized: once reading has started, they are only sent by
+ * the polling thread, errors caused by other threads (e.g. an invalid request) are handed over to it. Before that, an
+ * error is signalled by the thread that caused it, and {@link FrameFlow.Subscriber#onComplete()} is signalled by
+ * {@link #close()} after the polling thread has stopped.
+ * </p>
+ * <p>
+ * The publisher takes ownership of the channel and closes it together with the selector when it is closed.
+ * </p>
+ *
+ * @param <T> the type of the published items
+ */
+public abstract class ChannelPublisher<T> extends EventLoop<UnixFileDescriptor, RawCanChannel> implements FrameFlow.Publisher<T> {
+    private static final Set<SelectorRegistration.Operation> READ_INTEREST = Collections.unmodifiableSet(EnumSet.of(READ));
+    private static final Set<SelectorRegistration.Operation> NO_INTEREST = Collections.emptySet();
+
+    private final RawCanChannel channel;
+    private final AtomicLong demand = new AtomicLong();
+    private final Object stateLock = new Object();
+    private FrameFlow.@Nullable Subscriber<? super T> subscriber;
+    private boolean registered;
+    private volatile @Nullable Throwable pendingError;
+    private boolean reading;
+    private volatile boolean terminated;
+    private volatile int readBudget = CanBroker.DEFAULT_READ_BUDGET;
+    private boolean budgetExhausted;
+
+    protected ChannelPublisher(String name, ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector, Duration timeout, RawCanChannel channel) throws IOException {
+        super(name, threadFactory, selector, timeout);
+        this.channel = channel;
+        channel.configureBlocking(false);
+    }
+
+    /**
+     * Reads the next item from the channel.
+     *
+     * @param ch the channel
+     * @return the item or null if reading would block
+     * @throws IOException if reading failed
+     */
+    protected abstract @Nullable T read(RawCanChannel ch) throws IOException;
+
+    /**
+     * Gets the channel items are read from.
+     *
+     * @return the channel
+     */
+    public RawCanChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Sets the maximum amount of items that will be published before selecting again.
+     *
+     * @param readBudget the maximum amount of items per selection
+     */
+    public void setReadBudget(int readBudget) {
+        if (readBudget < 1) {
+            throw new IllegalArgumentException("The read budget must be at least 1!");
+        }
+        this.readBudget = readBudget;
+    }
+
+    /**
+     * Gets the demand of the subscriber that has not been satisfied yet.
+     *
+     * @return the outstanding demand, {@link Long#MAX_VALUE} if unbounded
+     */
+    public long getDemand() {
+        return demand.get();
+    }
+
+    @Override
+    public void subscribe(FrameFlow.Subscriber<? super T> subscriber) {
+        synchronized (stateLock) {
+            if (this.subscriber != null || terminated) {
+                subscriber.onSubscribe(NoSubscription.INSTANCE);
+                subscriber.onError(new IllegalStateException("This publisher only supports a single subscriber!"));
+                return;
+            }
+            this.subscriber = subscriber;
+        }
+        subscriber.onSubscribe(new ChannelSubscription());
+    }
+
+    @Override
+    protected boolean isEmpty() {
+        // the polling thread keeps running until the publisher is closed
+        return false;
+    }
+
+    @Override
+    protected boolean hasPendingWork() {
+        return !terminated && (pendingError != null || budgetExhausted && demand.get() > 0);
+    }
+
+    @Override
+    protected void processEvents(IOEventBatch<UnixFileDescriptor> events) throws IOException {
+        final FrameFlow.Subscriber<? super T> s = this.subscriber;
+        if (s == null) {
+            return;
+        }
+        final int budget = readBudget;
+        int published = 0;
+        while (published < budget && !terminated && demand.get() > 0) {
+            if (pendingError != null) {
+                break;
+            }
+            final T item;
+            try {
+                item = read(channel);
+            } catch (IOException e) {
+                terminate(e);
+                return;
+            }
+            if (item == null) {
+                break;
+            }
+            if (demand.get() != Long.MAX_VALUE) {
+                demand.decrementAndGet();
+            }
+            published++;
+            s.onNext(item);
+        }
+        final Throwable error = pendingError;
+        if (error != null) {
+            terminate(error);
+            return;
+        }
+        budgetExhausted = published == budget;
+        if (demand.get() == 0) {
+            pause();
+        }
+    }
+
+    private void pause() throws IOException {
+        synchronized (stateLock) {
+            if (reading && !terminated && demand.get() == 0) {
+                reading = false;
+                updateRegistration(channel, NO_INTEREST);
+            }
+        }
+    }
+
+    private void resume() throws IOException {
+        synchronized (stateLock) {
+            if (reading || terminated) {
+                return;
+            }
+            reading = true;
+            if (registered) {
+                updateRegistration(channel, READ_INTEREST);
+            } else {
+                register(channel, READ_INTEREST);
+                registered = true;
+                start();
+            }
+        }
+    }
+
+    /**
+     * Terminates the subscription with the given error, which has been caused by a thread other than the polling
+     * thread. Once reading has started, the error is handed over to the polling thread, so it is not signalled
+     * concurrently to {@link FrameFlow.Subscriber#onNext(Object)}.
+     *
+     * @param error the error
+     */
+    private void fail(Throwable error) {
+        final boolean handOver;
+        synchronized (stateLock) {
+            if (terminated || pendingError != null) {
+                return;
+            }
+            handOver = registered;
+            if (handOver) {
+                pendingError = error;
+            }
+        }
+        if (handOver) {
+            try {
+                wakeup();
+            } catch (IOException e) {
+                error.addSuppressed(e);
+            }
+        } else {
+            // reading has not been started, so there is no polling thread that could signal concurrently
+            terminate(error);
+        }
+    }
+
+    private void terminate(@Nullable Throwable error) {
+        terminate(error, true);
+    }
+
+    private void terminate(@Nullable Throwable error, boolean deregister) {
+        final FrameFlow.@Nullable Subscriber<? super T> s;
+        synchronized (stateLock) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+            s = subscriber;
+            if (deregister && registered) {
+                try {
+                    cancel(channel);
+                } catch (IOException e) {
+                    if (error != null) {
+                        error.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        if (s != null) {
+            if (error != null) {
+                s.onError(error);
+            } else {
+                s.onComplete();
+            }
+        }
+    }
+
+    @Override
+    protected void closeResources() throws IOException {
+        // the selector is already closed at this point
+        terminate(null, false);
+        channel.close();
+    }
+
+    private final class ChannelSubscription implements FrameFlow.Subscription {
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("The requested amount must be positive, but was " + n + "!"));
+                return;
+            }
+            long current;
+            do {
+                current = demand.get();
+                if (current == Long.MAX_VALUE) {
+                    return;
+                }
+            } while (!demand.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+            try {
+                resume();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (stateLock) {
+                // cancellation is not signalled to the subscriber
+                subscriber = null;
+            }
+            terminate(null);
+        }
+    }
+
+    private static final class NoSubscription implements FrameFlow.Subscription {
+        static final NoSubscription INSTANCE = new NoSubscription();
+
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+}
@@ -26,6 +26,7 @@ import org.eclipse.jdt.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tel.schich.javacan.select.IOEvent;
+import tel.schich.javacan.select.IOEventBatch;
 import tel.schich.javacan.select.IOSelector;
 import tel.schich.javacan.select.SelectorRegistration;
 
@@ -57,6 +58,7 @@ public abstract class EventLoop<HandleType, ChannelType extends Channel> impleme
     private final IOSelector<HandleType> selector;
     private final Duration timeout;
     private final Map<ChannelType, SelectorRegistration<HandleType, ChannelType>> registrations;
+    private final IOEventBatch<HandleType> events;
 
     @Nullable
     private PollingThread poller;
@@ -68,6 +70,7 @@ public abstract class EventLoop<HandleType, ChannelType extends Channel> impleme
         this.selector = selector;
         this.timeout = timeout;
         this.registrations = new IdentityHashMap<>();
+        this.events = new IOEventBatch<>();
     }
 
     /**
@@ -96,7 +99,27 @@ public abstract class EventLoop<HandleType, ChannelType extends Channel> impleme
      * @throws ClosedChannelException if the channel is already closed
      */
     protected final void register(ChannelType ch, Set<SelectorRegistration.Operation> ops) throws IOException {
-        registrations.put(ch, selector.register(ch, ops));
+        synchronized (registrations) {
+            registrations.put(ch, selector.register(ch, ops));
+        }
+    }
+
+    /**
+     * Changes the interested ops of an already registered channel.
+     *
+     * @param ch the channel to update the registration for
+     * @param ops the new interested ops
+     * @throws ClosedChannelException if the channel is not registered (anymore)
+     * @throws IOException if the underlying selector is unable to update the registration
+     */
+    protected final void updateRegistration(ChannelType ch, Set<SelectorRegistration.Operation> ops) throws IOException {
+        synchronized (registrations) {
+            SelectorRegistration<HandleType, ChannelType> registration = registrations.get(ch);
+            if (registration == null) {
+                throw new ClosedChannelException();
+            }
+            registrations.put(ch, selector.updateRegistration(registration, ops));
+        }
     }
 
     /**
@@ -107,7 +130,10 @@ public abstract class EventLoop<HandleType, ChannelType extends Channel> impleme
      * @throws IOException if the underlying selector is unable to cancel the registration
      */
     protected final boolean cancel(ChannelType ch) throws IOException {
-        SelectorRegistration<HandleType, ChannelType> registration = this.registrations.remove(ch);
+        final SelectorRegistration<HandleType, ChannelType> registration;
+        synchronized (registrations) {
+            registration = this.registrations.remove(ch);
+        }
         if (registration != null) {
             return selector.cancel(registration);
         }
@@ -120,11 +146,22 @@ public abstract class EventLoop<HandleType, ChannelType extends Channel> impleme
      * @param timeout the timeout in milliseconds
      * @return the list of events
      * @throws IOException if the native call fails
+     * @deprecated the event loop selects by itself and passes the events to {@link #processEvents(IOEventBatch)}
      */
+    @Deprecated
     protected final List<IOEvent<HandleType>> select(Duration timeout) throws IOException {
         return this.selector.select(timeout);
     }
 
+    /**
+     * Wakes up the polling thread if it is currently blocked in a selection, so it checks for pending work (see
+     * {@link #hasPendingWork()}) without waiting for an IO event or the timeout.
+     *
+     * @throws IOException if the native call fails
+     */
+    protected final void wakeup() throws IOException {
+        this.selector.wakeup();
+    }
 
     /**
      * Shuts the event loop down if there are no more channels registered.
@@ -196,23 +233,77 @@ public abstract class EventLoop<HandleType, ChannelType extends Channel> impleme
     }
 
     /**
-     * Waits for IO events on all registered channels.
+     * Waits for IO events on all registered channels. Implementations may override this to replace the selection with
+     * a specialized mechanism, in which case {@link #processEvents(IOEventBatch)} will not be called.
      *
      * @param timeout the timeout in milliseconds
      * @return true if the event loop should continue
      * @throws IOException if the native calls fail
      */
-    protected final boolean poll(Duration timeout) throws IOException {
+    protected boolean poll(Duration timeout) throws IOException {
         if (lazyShutdown()) {
             return false;
         }
-        List<IOEvent<HandleType>> events = select(timeout);
-        if (!events.isEmpty()) {
+        final boolean pendingWork = hasPendingWork();
+        final Duration selectTimeout = pendingWork ? Duration.ZERO : limitTimeout(timeout);
+        selector.select(selectTimeout, events);
+        if (pendingWork || selectTimeout != timeout || !events.isEmpty()) {
             processEvents(events);
         }
         return true;
     }
 
+    /**
+     * Limits the given selection timeout to the delay until the implementation's timed work is due (see
+     * {@link #getTimedWorkDelayNanos()}).
+     *
+     * @param timeout the regular timeout
+     * @return the given timeout instance if there is no timed work due before it, otherwise the shorter delay
+     */
+    protected final Duration limitTimeout(Duration timeout) {
+        final long delay = getTimedWorkDelayNanos();
+        if (delay < 0) {
+            return timeout;
+        }
+        if (delay == 0) {
+            return Duration.ZERO;
+        }
+        final Duration limit = Duration.ofNanos(delay);
+        return limit.compareTo(timeout) < 0 ? limit : timeout;
+    }
+
+    /**
+     * <p>
+     * Checks if the implementation has work left over from a previous call to {@link #processEvents(IOEventBatch)}, e.g.
+     * because a channel still had data after exhausting its read budget.
+     * </p>
+     * <p>
+     * If this returns true, the next selection will not block and {@link #processEvents(IOEventBatch)} will be called even
+     * without any events.
+     * </p>
+     *
+     * @return true if {@link #processEvents(IOEventBatch)} should be called regardless of IO events
+     */
+    protected boolean hasPendingWork() {
+        return false;
+    }
+
+    /**
+     * <p>
+     * Gets the delay until the implementation has timed work to do, e.g. retrying writes after backing off from a busy
+     * device.
+     * </p>
+     * <p>
+     * The next selection waits at most this long and {@link #processEvents(IOEventBatch)} will be called after a
+     * shortened selection even without any events, the implementation has to check itself which of its work is due.
+     * </p>
+     *
+     * @return the delay in nanoseconds or a negative value if there is no timed work
+     */
+    protected long getTimedWorkDelayNanos() {
+        return -1;
+    }
+
     /**
      * Handles the {@link java.lang.Throwable} that got thrown in the event loop.
      *
@@ -243,17 +334,20 @@ public abstract class EventLoop<HandleType, ChannelType extends Channel> impleme
 
     /**
      * <p>
-     * Processes the events for the provided {@link java.nio.channels.SelectionKey}s.
+     * Processes the IO events of a single selection.
+     * </p>
+     * <p>
+     * The batch is owned by the event loop and reused for every selection, so it must not be retained beyond this call.
      * </p>
      * <p>
-     * The provided iterator can be iterated once to retrieve the keys. Processed events should be removed while
-     * iterating.
+     * Implementations written against the former list-based variant of this method can extend {@link ListEventLoop}
+     * instead.
      * </p>
      *
-     * @param selectedKeys the keys
+     * @param events the events of the last selection
      * @throws IOException if the implementation has IO failures
      */
-    protected abstract void processEvents(List<IOEvent<HandleType>> selectedKeys) throws IOException;
+    protected abstract void processEvents(IOEventBatch<HandleType> events) throws IOException;
 
     /**
      * Closes the event loop by shutting it down and then
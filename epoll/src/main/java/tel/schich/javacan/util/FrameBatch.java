@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import tel.schich.javacan.CanFrameView;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.RawReceiveMessageHeaderBuffer;
+import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
+
+/**
+ * A batch of frames received by a single
+ * {@link RawCanChannel#receiveBatch(ByteBuffer, int, int[], RawReceiveMessageHeaderBuffer[])} call, as published by
+ * the {@link FrameBatchPublisher}. The batch is reused for every receive.
+ */
+public final class FrameBatch {
+    private final ByteBuffer buffer;
+    private final int frameStride;
+    private final int[] frameLengths;
+    private final RawReceiveMessageHeaderBuffer[] headers;
+    private int count;
+
+    FrameBatch(int frameStride, int capacity) {
+        this.buffer = ByteBuffer.allocateDirect(frameStride * capacity);
+        this.frameStride = frameStride;
+        this.frameLengths = new int[capacity];
+        this.headers = RawReceiveMessageHeaderBuffer.allocateBatch(capacity);
+    }
+
+    int receive(RawCanChannel ch) throws IOException {
+        buffer.clear();
+        try {
+            count = ch.receiveBatch(buffer, frameStride, frameLengths, headers);
+        } catch (LinuxNativeOperationException e) {
+            if (!e.mayTryAgain()) {
+                throw e;
+            }
+            // nothing to receive on the non-blocking channel
+            count = 0;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the buffer holding the frames back to back, each in a slot of {@link #getFrameStride()} bytes.
+     *
+     * @return the buffer
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Gets the size of a frame slot within the buffer.
+     *
+     * @return the frame stride
+     */
+    public int getFrameStride() {
+        return frameStride;
+    }
+
+    /**
+     * Gets the amount of frames in this batch.
+     *
+     * @return the amount of frames
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Gets the size of a frame of this batch.
+     *
+     * @param index the index of the frame
+     * @return the size of the frame in bytes
+     */
+    public int getFrameLength(int index) {
+        checkIndex(index);
+        return frameLengths[index];
+    }
+
+    /**
+     * Gets the message header of a frame of this batch.
+     *
+     * @param index the index of the frame
+     * @return the message header
+     */
+    public RawReceiveMessageHeaderBuffer getHeader(int index) {
+        checkIndex(index);
+        return headers[index];
+    }
+
+    /**
+     * Points the given view to a frame of this batch.
+     *
+     * @param index the index of the frame
+     * @param view the view to re-point
+     * @return the given view
+     */
+    public CanFrameView view(int index, CanFrameView view) {
+        checkIndex(index);
+        return view.point(buffer, index * frameStride, frameLengths[index]);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Frame " + index + " is not part of a batch of " + count + " frames!");
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.jdt.annotation.Nullable;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.platform.linux.UnixFileDescriptor;
+import tel.schich.javacan.select.IOSelector;
+
+/**
+ * This publisher receives up to a whole {@link FrameBatch} per requested item using a single system call. The batch is
+ * reused and only valid during the call to {@link FrameFlow.Subscriber#onNext(Object)}.
+ *
+ * @see ChannelPublisher
+ */
+public class FrameBatchPublisher extends ChannelPublisher<FrameBatch> {
+    private final FrameBatch batch;
+
+    /**
+     * Creates a new publisher.
+     *
+     * @param threadFactory the thread factory for the polling thread
+     * @param selector the selector
+     * @param timeout the timeout for each selection
+     * @param channel the channel to receive from
+     * @param frameStride the size of a frame slot, either {@link RawCanChannel#MTU} or {@link RawCanChannel#FD_MTU}
+     * @param batchSize the maximum amount of frames per batch, at most {@link RawCanChannel#MAX_BATCH_SIZE}
+     * @throws IOException if the channel could not be configured
+     */
+    public FrameBatchPublisher(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector, Duration timeout, RawCanChannel channel, int frameStride, int batchSize) throws IOException {
+        super("CAN-batch-publisher", threadFactory, selector, timeout, channel);
+        if (batchSize < 1 || batchSize > RawCanChannel.MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("The batch size must be within [1, " + RawCanChannel.MAX_BATCH_SIZE + "]!");
+        }
+        this.batch = new FrameBatch(frameStride, batchSize);
+    }
+
+    @Override
+    protected @Nullable FrameBatch read(RawCanChannel ch) throws IOException {
+        return batch.receive(ch) > 0 ? batch : null;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+/**
+ * <p>
+ * These interfaces mirror {@code java.util.concurrent.Flow} (and the Reactive Streams specification it is based on),
+ * which is not available on the Java version targeted by this library. They follow the same contracts, so bridging
+ * a {@link ChannelPublisher} to {@code Flow.Publisher} or to a Reactive Streams library only takes a method
+ * reference per signal and no copying.
+ * </p>
+ */
+public final class FrameFlow {
+    private FrameFlow() {
+    }
+
+    /**
+     * A producer of items that are received by a {@link Subscriber} according to its demand.
+     *
+     * @param <T> the type of the published items
+     */
+    @FunctionalInterface
+    public interface Publisher<T> {
+        /**
+         * Adds the given subscriber, which will receive {@link Subscriber#onSubscribe(Subscription)} first.
+         *
+         * @param subscriber the subscriber
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * A receiver of items.
+     *
+     * @param <T> the type of the received items
+     */
+    public interface Subscriber<T> {
+        /**
+         * Called before any other signal, no items are sent before {@link Subscription#request(long)} is called.
+         *
+         * @param subscription the subscription
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with the next item.
+         *
+         * @param item the item
+         */
+        void onNext(T item);
+
+        /**
+         * Called when the publisher failed, no other signals follow.
+         *
+         * @param throwable the failure
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called when the publisher completed, no other signals follow.
+         */
+        void onComplete();
+    }
+
+    /**
+     * The link between a {@link Publisher} and a {@link Subscriber}.
+     */
+    public interface Subscription {
+        /**
+         * Adds the given amount of items to the demand of the subscriber.
+         *
+         * @param n the amount of items, must be positive
+         */
+        void request(long n);
+
+        /**
+         * Stops the publisher from sending further items.
+         */
+        void cancel();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.jdt.annotation.Nullable;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.platform.linux.UnixFileDescriptor;
+import tel.schich.javacan.select.IOSelector;
+
+/**
+ * This publisher reads one {@link CanFrame} per requested item. The frames share a single buffer and are only valid
+ * during the call to {@link FrameFlow.Subscriber#onNext(Object)}.
+ *
+ * @see ChannelPublisher
+ */
+public class FramePublisher extends ChannelPublisher<CanFrame> {
+    private final ByteBuffer readBuffer = RawCanChannel.allocateSufficientMemory();
+
+    public FramePublisher(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector, RawCanChannel channel) throws IOException {
+        this(threadFactory, selector, CanBroker.DEFAULT_TIMEOUT, channel);
+    }
+
+    public FramePublisher(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector, Duration timeout, RawCanChannel channel) throws IOException {
+        super("CAN-publisher", threadFactory, selector, timeout, channel);
+    }
+
+    @Override
+    protected @Nullable CanFrame read(RawCanChannel ch) throws IOException {
+        readBuffer.clear();
+        if (ch.tryRead(readBuffer) == RawCanChannel.WOULD_BLOCK) {
+            return null;
+        }
+        readBuffer.flip();
+        return CanFrame.create(readBuffer);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.CompiledCanFilter;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.platform.linux.UnixFileDescriptor;
+import tel.schich.javacan.platform.linux.epoll.EPollSelector;
+import tel.schich.javacan.select.SelectorRegistration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.time.Duration;
+import java.util.concurrent.ThreadFactory;
+
+import static tel.schich.javacan.platform.linux.epoll.EPollSelector.*;
+
+/**
+ * <p>
+ * This is a variant of the {@link CanBroker} for latency sensitive applications. Instead of selecting the ready
+ * channels and then reading from each of them, it waits for events and reads the pending frames of all ready channels
+ * within a single native call (see {@link EPollSelector#selectAndRead(Duration, ByteBuffer, int)}), which saves
+ * several JNI transitions per frame.
+ * </p>
+ * <p>
+ * Handlers that implement {@link TimestampedFrameHandler} additionally receive the receive timestamp of each frame.
+ * The frames passed to the handlers are only valid during the handler call, use {@link CopyingFrameHandlerProxy} if
+ * they need to be retained.
+ * </p>
+ * <p>
+ * The {@link EPollSelector} must be level-triggered.
+ * </p>
+ */
+public class FusedCanBroker extends CanBroker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FusedCanBroker.class);
+
+    public static final int DEFAULT_RECORD_CAPACITY = 256;
+
+    private final EPollSelector selector;
+    private final ByteBuffer records;
+
+    public FusedCanBroker(ThreadFactory threadFactory, EPollSelector selector) {
+        this(threadFactory, selector, DEFAULT_TIMEOUT);
+    }
+
+    public FusedCanBroker(ThreadFactory threadFactory, EPollSelector selector, Duration timeout) {
+        this(threadFactory, selector, timeout, DEFAULT_RECORD_CAPACITY);
+    }
+
+    /**
+     * Creates a new broker.
+     *
+     * @param threadFactory the thread factory for the polling thread
+     * @param selector the level-triggered selector
+     * @param timeout the timeout for each wait
+     * @param recordCapacity the maximum amount of frames read per wait
+     */
+    public FusedCanBroker(ThreadFactory threadFactory, EPollSelector selector, Duration timeout, int recordCapacity) {
+        super(threadFactory, selector, timeout);
+        if (selector.isEdgeTriggered()) {
+            throw new IllegalArgumentException("The selector must be level-triggered!");
+        }
+        if (recordCapacity < 1) {
+            throw new IllegalArgumentException("The record capacity must be at least 1!");
+        }
+        this.selector = selector;
+        this.records = JavaCAN.allocateOrdered(recordCapacity * FRAME_RECORD_SIZE);
+    }
+
+    @Override
+    protected boolean poll(Duration timeout) throws IOException {
+        if (lazyShutdown()) {
+            return false;
+        }
+        records.clear();
+        int n = selector.selectAndRead(limitTimeout(timeout), records, getReadBudget());
+        for (int i = 0; i < n; i++) {
+            dispatch(i * FRAME_RECORD_SIZE);
+        }
+        flushAll();
+        return true;
+    }
+
+    private void dispatch(int offset) {
+        int fd = records.getInt(offset + FRAME_RECORD_FD_OFFSET);
+        SelectorRegistration<UnixFileDescriptor, ?> registration = selector.getRegistration(fd);
+        if (registration == null) {
+            // the device has been removed after reading
+            return;
+        }
+        Channel ch = registration.getChannel();
+        if (!(ch instanceof RawCanChannel)) {
+            LOGGER.warn("Unsupported channel: " + ch);
+            return;
+        }
+        RawCanChannel raw = (RawCanChannel) ch;
+        int length = records.getInt(offset + FRAME_RECORD_LENGTH_OFFSET);
+        if (length < 0) {
+            LOGGER.warn("Failed to read from channel " + ch + ": errno " + (-length));
+            return;
+        }
+        FrameHandler handler = getHandler(raw);
+        if (handler == null) {
+            LOGGER.warn("Handler not found for channel: " + ch);
+            return;
+        }
+
+        int frameOffset = offset + FRAME_RECORD_FRAME_OFFSET;
+        CompiledCanFilter filter = getFrameFilter();
+        if (filter != null && !filter.matches(records.getInt(frameOffset))) {
+            return;
+        }
+        records.limit(frameOffset + length).position(frameOffset);
+        CanFrame frame = CanFrame.create(records);
+        if (handler instanceof TimestampedFrameHandler) {
+            long seconds = records.getLong(offset + FRAME_RECORD_TIMESTAMP_SECONDS_OFFSET);
+            long nanos = records.getLong(offset + FRAME_RECORD_TIMESTAMP_NANOS_OFFSET);
+            ((TimestampedFrameHandler) handler).handle(raw, frame, seconds, nanos);
+        } else {
+            handler.handle(raw, frame);
+        }
+        records.clear();
+    }
+}
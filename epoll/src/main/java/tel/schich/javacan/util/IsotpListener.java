@@ -29,13 +29,14 @@ import java.nio.ByteBuffer;
 import java.nio.channels.Channel;
 import java.time.Duration;
 import java.util.EnumSet;
+import java.util.Collections;
 import java.util.IdentityHashMap;
-import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ThreadFactory;
 
 import tel.schich.javacan.IsotpCanChannel;
 import tel.schich.javacan.platform.linux.UnixFileDescriptor;
-import tel.schich.javacan.select.IOEvent;
+import tel.schich.javacan.select.IOEventBatch;
 import tel.schich.javacan.select.IOSelector;
 import tel.schich.javacan.select.SelectorRegistration;
 
@@ -60,7 +61,8 @@ public class IsotpListener extends EventLoop<UnixFileDescriptor, IsotpCanChannel
 
     private final ByteBuffer readBuffer = IsotpCanChannel.allocateSufficientMemory();
 
-    private final IdentityHashMap<IsotpCanChannel, MessageHandler> handlerMap = new IdentityHashMap<>();
+    // an immutable snapshot that is replaced while holding the handlerLock, so it can be read without it
+    private volatile Map<IsotpCanChannel, MessageHandler> handlerMap = Collections.emptyMap();
     private final Object handlerLock = new Object();
 
     public IsotpListener(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector, Duration timeout) {
@@ -87,7 +89,9 @@ public class IsotpListener extends EventLoop<UnixFileDescriptor, IsotpCanChannel
                 ch.configureBlocking(false);
             }
             register(ch, EnumSet.of(SelectorRegistration.Operation.READ));
-            this.handlerMap.put(ch, handler);
+            IdentityHashMap<IsotpCanChannel, MessageHandler> handlers = new IdentityHashMap<>(this.handlerMap);
+            handlers.put(ch, handler);
+            this.handlerMap = handlers;
             this.start();
         }
     }
@@ -104,7 +108,9 @@ public class IsotpListener extends EventLoop<UnixFileDescriptor, IsotpCanChannel
                 throw new IllegalArgumentException("Channel not known!");
             }
 
-            this.handlerMap.remove(ch);
+            IdentityHashMap<IsotpCanChannel, MessageHandler> handlers = new IdentityHashMap<>(this.handlerMap);
+            handlers.remove(ch);
+            this.handlerMap = handlers;
             cancel(ch);
 
             if (isEmpty()) {
@@ -118,30 +124,28 @@ public class IsotpListener extends EventLoop<UnixFileDescriptor, IsotpCanChannel
 
     @Override
     protected boolean isEmpty() {
-        synchronized (handlerLock) {
-            return this.handlerMap.isEmpty();
-        }
+        return this.handlerMap.isEmpty();
     }
 
     @Override
-    protected void processEvents(List<IOEvent<UnixFileDescriptor>> events) throws IOException {
-        synchronized (handlerLock) {
-            for (IOEvent<UnixFileDescriptor> event : events) {
-                Channel ch = event.getRegistration().getChannel();
-                if (ch instanceof IsotpCanChannel) {
-                    IsotpCanChannel isotp = (IsotpCanChannel) ch;
-                    MessageHandler handler = handlerMap.get(ch);
-                    if (handler != null) {
-                        readBuffer.clear();
-                        isotp.read(readBuffer);
+    protected void processEvents(IOEventBatch<UnixFileDescriptor> events) throws IOException {
+        final Map<IsotpCanChannel, MessageHandler> handlers = this.handlerMap;
+        for (int i = 0; i < events.size(); i++) {
+            Channel ch = events.getRegistration(i).getChannel();
+            if (ch instanceof IsotpCanChannel) {
+                IsotpCanChannel isotp = (IsotpCanChannel) ch;
+                MessageHandler handler = handlers.get(ch);
+                if (handler != null) {
+                    readBuffer.clear();
+                    if (isotp.tryRead(readBuffer) != IsotpCanChannel.WOULD_BLOCK) {
                         readBuffer.flip();
                         handler.handle(isotp, readBuffer.asReadOnlyBuffer());
-                    } else {
-                        LOGGER.warn("Handler not found for channel: " + ch);
                     }
                 } else {
-                    LOGGER.warn("Unsupported channel: " + ch);
+                    LOGGER.warn("Handler not found for channel: " + ch);
                 }
+            } else {
+                LOGGER.warn("Unsupported channel: " + ch);
             }
         }
     }
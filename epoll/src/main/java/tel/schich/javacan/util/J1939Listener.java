@@ -0,0 +1,356 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+
+import tel.schich.javacan.J1939CanChannel;
+import tel.schich.javacan.J1939ReceiveMessageHeaderBuffer;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
+import tel.schich.javacan.platform.linux.UnixFileDescriptor;
+import tel.schich.javacan.platform.linux.epoll.EPollSelector;
+import tel.schich.javacan.select.IOEventBatch;
+import tel.schich.javacan.select.IOSelector;
+import tel.schich.javacan.select.SelectorRegistration;
+
+/**
+ * <p>
+ * This class implements an event driven interface over several {@link tel.schich.javacan.J1939CanChannel}s to
+ * receive messages with callbacks, so many J1939 sockets can be served by a single thread.
+ * </p>
+ * <p>
+ * Received messages are dispatched by their parameter group number (PGN): handlers registered with
+ * {@link #subscribe(int, J1939MessageHandler)} apply to all channels, messages with other PGNs are passed to the
+ * handler of the channel that received them, if it has one. The PGN handlers are kept in a precomputed two-level table
+ * indexed by the 18 bit PGN, which is replaced as a whole when subscriptions change, so dispatching never locks. For
+ * PDU1 PGNs (PDU format below 240) the destination address byte is ignored.
+ * </p>
+ * <p>
+ * Messages are read into a single shared {@link ByteBuffer} together with their headers in a single shared
+ * {@link J1939ReceiveMessageHeaderBuffer}, both are only valid during the handler call. Messages longer than the
+ * configured maximum message size are truncated.
+ * </p>
+ * <p>
+ * When a channel becomes readable, the listener keeps reading messages from it until the socket would block or until
+ * the read budget (see {@link #setReadBudget(int)}) has been exhausted. When used with an edge-triggered
+ * {@link EPollSelector}, channels that exhausted their budget are revisited on the next iteration of the event loop
+ * without blocking, as no further event would be reported for them.
+ * </p>
+ *
+ * @see tel.schich.javacan.util.EventLoop
+ */
+public class J1939Listener extends EventLoop<UnixFileDescriptor, J1939CanChannel> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(J1939Listener.class);
+
+    /**
+     * The maximum size of a message transferred with the J1939 transport protocol.
+     */
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 1785;
+    public static final int DEFAULT_READ_BUDGET = 16;
+
+    private static final int PGN_BITS = 18;
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PDU2_THRESHOLD = 240;
+    private static final J1939MessageHandler @Nullable [] @Nullable [] NO_SUBSCRIPTIONS = new J1939MessageHandler[1 << (PGN_BITS - PAGE_BITS)][];
+
+    private final ByteBuffer readBuffer;
+    private final J1939ReceiveMessageHeaderBuffer headerBuffer = new J1939ReceiveMessageHeaderBuffer();
+
+    // immutable snapshots that are replaced while holding the handlerLock, so they can be read without it
+    private volatile Map<J1939CanChannel, @Nullable J1939MessageHandler> channelMap = Collections.emptyMap();
+    private volatile J1939MessageHandler @Nullable [] @Nullable [] pgnTable = NO_SUBSCRIPTIONS;
+    private final Object handlerLock = new Object();
+
+    private final boolean edgeTriggered;
+    private final ChannelBacklog<J1939CanChannel> backlog = new ChannelBacklog<>();
+    private volatile int readBudget = DEFAULT_READ_BUDGET;
+
+    public J1939Listener(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector, Duration timeout) {
+        this(threadFactory, selector, timeout, DEFAULT_MAX_MESSAGE_SIZE);
+    }
+
+    /**
+     * Creates a new listener.
+     *
+     * @param threadFactory the thread factory for the polling thread
+     * @param selector the selector to register the channels with
+     * @param timeout the poll timeout
+     * @param maxMessageSize the size of the shared read buffer, longer messages are truncated
+     */
+    public J1939Listener(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector, Duration timeout, int maxMessageSize) {
+        super("J1939", threadFactory, selector, timeout);
+        if (maxMessageSize < 1) {
+            throw new IllegalArgumentException("The maximum message size must be positive!");
+        }
+        this.readBuffer = JavaCAN.allocateOrdered(maxMessageSize);
+        this.edgeTriggered = selector instanceof EPollSelector && ((EPollSelector) selector).isEdgeTriggered();
+    }
+
+    /**
+     * Sets the maximum amount of messages that will be read from a single channel before moving on to the other
+     * channels. A budget of 1 reads exactly one message per readiness event.
+     *
+     * @param readBudget the maximum amount of messages to read from a channel in one go
+     */
+    public void setReadBudget(int readBudget) {
+        if (readBudget < 1) {
+            throw new IllegalArgumentException("The read budget must be at least 1!");
+        }
+        this.readBudget = readBudget;
+    }
+
+    /**
+     * Gets the maximum amount of messages that will be read from a single channel before moving on to the other
+     * channels.
+     *
+     * @return the read budget
+     */
+    public int getReadBudget() {
+        return readBudget;
+    }
+
+    /**
+     * Normalizes the given PGN for the dispatch table: PDU1 PGNs carry the destination address in their lower byte,
+     * which is cleared.
+     *
+     * @param pgn the PGN
+     * @return the normalized PGN
+     */
+    private static int normalize(int pgn) {
+        if (pgn < 0 || pgn >= 1 << PGN_BITS) {
+            throw new IllegalArgumentException("Invalid PGN: " + pgn);
+        }
+        if (((pgn >>> PAGE_BITS) & 0xFF) < PDU2_THRESHOLD) {
+            return pgn & ~(PAGE_SIZE - 1);
+        }
+        return pgn;
+    }
+
+    /**
+     * Adds the given {@link tel.schich.javacan.J1939CanChannel} to this listener. Its messages are only dispatched to
+     * the handlers subscribed to their PGN.
+     *
+     * @param ch the channel to add
+     * @throws IOException if native calls fail
+     */
+    public void addChannel(J1939CanChannel ch) throws IOException {
+        addChannelWithHandler(ch, null);
+    }
+
+    /**
+     * Adds the given {@link tel.schich.javacan.J1939CanChannel} together with a handler for all messages that have no
+     * handler subscribed to their PGN.
+     *
+     * @param ch the channel to add
+     * @param handler the handler for messages of unsubscribed PGNs
+     * @throws IOException if native calls fail
+     */
+    public void addChannel(J1939CanChannel ch, J1939MessageHandler handler) throws IOException {
+        if (handler == null) {
+            throw new NullPointerException("handler must not be null!");
+        }
+        addChannelWithHandler(ch, handler);
+    }
+
+    private void addChannelWithHandler(J1939CanChannel ch, @Nullable J1939MessageHandler handler) throws IOException {
+        synchronized (handlerLock) {
+            if (this.channelMap.containsKey(ch)) {
+                throw new IllegalArgumentException("Channel already added!");
+            }
+            if (ch.isBlocking()) {
+                ch.configureBlocking(false);
+            }
+            register(ch, EnumSet.of(SelectorRegistration.Operation.READ));
+            IdentityHashMap<J1939CanChannel, @Nullable J1939MessageHandler> channels = new IdentityHashMap<>(this.channelMap);
+            channels.put(ch, handler);
+            this.channelMap = channels;
+            this.start();
+        }
+    }
+
+    /**
+     * Removes the given {@link tel.schich.javacan.J1939CanChannel} from this listener.
+     *
+     * @param ch the channel to remove
+     * @throws IOException if the underlying selector is unable cancel the registration
+     */
+    public void removeChannel(J1939CanChannel ch) throws IOException {
+        synchronized (handlerLock) {
+            if (!this.channelMap.containsKey(ch)) {
+                throw new IllegalArgumentException("Channel not known!");
+            }
+
+            IdentityHashMap<J1939CanChannel, @Nullable J1939MessageHandler> channels = new IdentityHashMap<>(this.channelMap);
+            channels.remove(ch);
+            this.channelMap = channels;
+            cancel(ch);
+
+            if (isEmpty()) {
+                try {
+                    this.shutdown();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Subscribes a handler to all messages with the given PGN received by any channel of this listener, replacing a
+     * previously subscribed handler.
+     *
+     * @param pgn the PGN
+     * @param handler the handler
+     */
+    public void subscribe(int pgn, J1939MessageHandler handler) {
+        if (handler == null) {
+            throw new NullPointerException("handler must not be null!");
+        }
+        updateTable(normalize(pgn), handler);
+    }
+
+    /**
+     * Removes the handler subscribed to the given PGN.
+     *
+     * @param pgn the PGN
+     */
+    public void unsubscribe(int pgn) {
+        updateTable(normalize(pgn), null);
+    }
+
+    private void updateTable(int pgn, @Nullable J1939MessageHandler handler) {
+        synchronized (handlerLock) {
+            J1939MessageHandler @Nullable [] @Nullable [] table = this.pgnTable.clone();
+            int pageIndex = pgn >>> PAGE_BITS;
+            J1939MessageHandler @Nullable [] page = table[pageIndex];
+            page = page == null ? new J1939MessageHandler[PAGE_SIZE] : page.clone();
+            page[pgn & (PAGE_SIZE - 1)] = handler;
+            boolean empty = true;
+            for (J1939MessageHandler entry : page) {
+                if (entry != null) {
+                    empty = false;
+                    break;
+                }
+            }
+            table[pageIndex] = empty ? null : page;
+            this.pgnTable = table;
+        }
+    }
+
+    /**
+     * Finds the handler subscribed to the given PGN.
+     *
+     * @param pgn the PGN
+     * @return the handler or null if there is none
+     */
+    public @Nullable J1939MessageHandler getSubscription(int pgn) {
+        int normalized = normalize(pgn);
+        J1939MessageHandler @Nullable [] page = this.pgnTable[normalized >>> PAGE_BITS];
+        return page == null ? null : page[normalized & (PAGE_SIZE - 1)];
+    }
+
+    @Override
+    protected boolean isEmpty() {
+        return this.channelMap.isEmpty();
+    }
+
+    @Override
+    protected boolean hasPendingWork() {
+        return !backlog.isEmpty();
+    }
+
+    @Override
+    protected void processEvents(IOEventBatch<UnixFileDescriptor> events) throws IOException {
+        final int budget = readBudget;
+        final Map<J1939CanChannel, @Nullable J1939MessageHandler> channels = this.channelMap;
+        for (int i = backlog.size(); i > 0; i--) {
+            J1939CanChannel ch = backlog.poll();
+            if (channels.containsKey(ch)) {
+                drain(ch, channels.get(ch), budget);
+            }
+        }
+        for (int i = 0; i < events.size(); i++) {
+            Channel ch = events.getRegistration(i).getChannel();
+            if (ch instanceof J1939CanChannel) {
+                J1939CanChannel j1939 = (J1939CanChannel) ch;
+                if (channels.containsKey(j1939)) {
+                    drain(j1939, channels.get(j1939), budget);
+                } else {
+                    LOGGER.warn("Handler not found for channel: " + ch);
+                }
+            } else {
+                LOGGER.warn("Unsupported channel: " + ch);
+            }
+        }
+    }
+
+    private void drain(J1939CanChannel ch, @Nullable J1939MessageHandler channelHandler, int budget) throws IOException {
+        for (int n = 0; n < budget; n++) {
+            if (!ch.isOpen()) {
+                // the handler might have removed the channel
+                return;
+            }
+            readBuffer.clear();
+            try {
+                ch.receive(readBuffer, headerBuffer);
+            } catch (LinuxNativeOperationException e) {
+                if (e.mayTryAgain()) {
+                    return;
+                }
+                throw e;
+            }
+            readBuffer.flip();
+
+            // the PGN table is reread for every message, so handlers can change subscriptions
+            int pgn = headerBuffer.getSourceAddressBuffer().getParameterGroupNumber();
+            @Nullable J1939MessageHandler handler = null;
+            if (pgn >= 0 && pgn < 1 << PGN_BITS) {
+                J1939MessageHandler @Nullable [] page = this.pgnTable[pgn >>> PAGE_BITS];
+                if (page != null) {
+                    handler = page[normalize(pgn) & (PAGE_SIZE - 1)];
+                }
+            }
+            if (handler == null) {
+                handler = channelHandler;
+            }
+            if (handler != null) {
+                handler.handle(ch, readBuffer.asReadOnlyBuffer(), headerBuffer);
+            }
+        }
+        if (edgeTriggered) {
+            backlog.add(ch);
+        }
+    }
+}
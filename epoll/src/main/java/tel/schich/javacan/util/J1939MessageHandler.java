@@ -0,0 +1,46 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import java.nio.ByteBuffer;
+
+import tel.schich.javacan.J1939CanChannel;
+import tel.schich.javacan.J1939ReceiveMessageHeaderBuffer;
+
+/**
+ * J1939 message handlers are called by a {@link tel.schich.javacan.util.J1939Listener} for each message received by
+ * one of its {@link tel.schich.javacan.J1939CanChannel}s.
+ */
+@FunctionalInterface
+public interface J1939MessageHandler {
+    /**
+     * Handles a received message. The given {@link java.nio.ByteBuffer} is read-only and its position and limit is set
+     * so the message can be read from it. Both the buffer and the header are reused for the next message, so use
+     * {@link J1939ReceiveMessageHeaderBuffer#copy()} to keep the header around.
+     *
+     * @param ch the channel that received the message
+     * @param buffer the buffer containing the message
+     * @param header the headers of the message, including the source address and PGN
+     */
+    void handle(J1939CanChannel ch, ByteBuffer buffer, J1939ReceiveMessageHeaderBuffer header);
+}
@@ -0,0 +1,301 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.CanId;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.RawCanChannel;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * <p>
+ * This cache keeps the most recent frame for each CAN ID, together with the time it has been received at, the time its
+ * payload last changed and the amount of updates. It can be added to a {@link CanBroker} as a handler or be fed with
+ * {@link #update(CanFrame, long)} from frames read from a {@link RawCanChannel}, so services that only need the latest
+ * value of an ID can poll it instead of handling every single frame.
+ * </p>
+ * <p>
+ * All values live in direct buffers: a flat table for the 2048 standard IDs and an open-addressed table for extended
+ * IDs with a fixed capacity. The slots are grouped into segments, each guarded by a {@link StampedLock}. Writers take
+ * the write lock of the segment, while readers only ever read optimistically and retry if the slot has been written in
+ * the meantime (seqlock-style), so reading neither locks nor allocates. Error frames and remote transmission requests
+ * are ignored. This class is thread-safe.
+ * </p>
+ * <p>
+ * IDs are given as raw IDs, which means extended IDs must have the {@link CanId#EFF_FLAG} set.
+ * </p>
+ */
+public final class LatestFrameCache implements TimestampedFrameHandler {
+    public static final int DEFAULT_EXTENDED_CAPACITY = 1024;
+
+    public static final int OFFSET_TIMESTAMP = 0;
+    public static final int OFFSET_LAST_CHANGE = OFFSET_TIMESTAMP + Long.BYTES;
+    public static final int OFFSET_UPDATE_COUNT = OFFSET_LAST_CHANGE + Long.BYTES;
+    public static final int OFFSET_LENGTH = OFFSET_UPDATE_COUNT + Long.BYTES;
+    public static final int OFFSET_FRAME = OFFSET_LENGTH + Long.BYTES;
+    public static final int RECORD_SIZE = OFFSET_FRAME + RawCanChannel.FD_MTU;
+
+    private static final int STANDARD_SLOTS = CanId.SFF_MASK + 1;
+    private static final int SEGMENT_SHIFT = 4;
+
+    private final ByteBuffer standard;
+    private final StampedLock[] standardSegments;
+
+    private final CanIdTable extendedKeys;
+    private final ByteBuffer extended;
+    private final StampedLock[] extendedSegments;
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public LatestFrameCache() {
+        this(DEFAULT_EXTENDED_CAPACITY);
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param extendedCapacity the amount of distinct extended IDs that can be cached, must be a power of two
+     */
+    public LatestFrameCache(int extendedCapacity) {
+        if (extendedCapacity < 1 || Integer.bitCount(extendedCapacity) != 1) {
+            throw new IllegalArgumentException("The extended capacity must be a power of two, but was " + extendedCapacity + "!");
+        }
+        this.standard = JavaCAN.allocateOrdered(STANDARD_SLOTS * RECORD_SIZE);
+        this.standardSegments = createSegments(STANDARD_SLOTS);
+        this.extendedKeys = new CanIdTable(extendedCapacity);
+        this.extended = JavaCAN.allocateOrdered(extendedCapacity * RECORD_SIZE);
+        this.extendedSegments = createSegments(extendedCapacity);
+    }
+
+    private static StampedLock[] createSegments(int slots) {
+        StampedLock[] segments = new StampedLock[Math.max(1, slots >>> SEGMENT_SHIFT)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new StampedLock();
+        }
+        return segments;
+    }
+
+    @Override
+    public void handle(RawCanChannel ch, CanFrame frame, long timestampSeconds, long timestampNanos) {
+        update(frame, timestampSeconds * 1_000_000_000L + timestampNanos);
+    }
+
+    /**
+     * Stores the given frame as the latest value of its ID.
+     *
+     * @param frame the frame
+     * @param timestampNanos the receive timestamp in nanoseconds since the epoch
+     * @return false if the frame is an extended frame, but the extended table is full, otherwise true
+     */
+    public boolean update(CanFrame frame, long timestampNanos) {
+        final int rawId = frame.getRawId();
+        if ((rawId & (CanId.ERR_FLAG | CanId.RTR_FLAG)) != 0) {
+            return true;
+        }
+        final int key = key(rawId);
+        final ByteBuffer table;
+        final StampedLock[] segments;
+        final int slot;
+        if (CanId.isExtended(key)) {
+            slot = extendedKeys.claim(key);
+            if (slot == -1) {
+                rejectedCount.incrementAndGet();
+                return false;
+            }
+            table = extended;
+            segments = extendedSegments;
+        } else {
+            slot = key;
+            table = standard;
+            segments = standardSegments;
+        }
+
+        final ByteBuffer source = frame.getBuffer();
+        final int base = frame.getBase();
+        final int length = frame.getSize();
+        final int offset = slot * RECORD_SIZE;
+        final StampedLock segment = segments[slot >>> SEGMENT_SHIFT];
+        final long stamp = segment.writeLock();
+        try {
+            final long updates = table.getLong(offset + OFFSET_UPDATE_COUNT);
+            if (updates == 0 || !samePayload(table, offset, source, base, length)) {
+                table.putLong(offset + OFFSET_LAST_CHANGE, timestampNanos);
+            }
+            table.putLong(offset + OFFSET_TIMESTAMP, timestampNanos);
+            table.putLong(offset + OFFSET_UPDATE_COUNT, updates + 1);
+            table.putLong(offset + OFFSET_LENGTH, length);
+            for (int i = 0; i < length; i += Long.BYTES) {
+                table.putLong(offset + OFFSET_FRAME + i, source.getLong(base + i));
+            }
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+        return true;
+    }
+
+    private static boolean samePayload(ByteBuffer table, int offset, ByteBuffer source, int base, int length) {
+        if (table.getLong(offset + OFFSET_LENGTH) != length) {
+            return false;
+        }
+        // the header contains the ID, the length and the flags, the padding is always zeroed by the kernel
+        for (int i = 0; i < length; i += Long.BYTES) {
+            if (table.getLong(offset + OFFSET_FRAME + i) != source.getLong(base + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int key(int rawId) {
+        if (CanId.isExtended(rawId)) {
+            return CanId.EFF_FLAG | (rawId & CanId.EFF_MASK);
+        }
+        return rawId & CanId.SFF_MASK;
+    }
+
+
+    /**
+     * Copies the cached value of the given ID into the given buffer as a single record of {@link #RECORD_SIZE} bytes in
+     * native byte order: the receive timestamp at {@link #OFFSET_TIMESTAMP}, the time of the last payload change at
+     * {@link #OFFSET_LAST_CHANGE}, the update count at {@link #OFFSET_UPDATE_COUNT}, the frame length at
+     * {@link #OFFSET_LENGTH} and the frame at {@link #OFFSET_FRAME}. The position of the buffer is not changed.
+     *
+     * @param rawId the raw CAN ID
+     * @param dest the buffer to copy the record to, starting at its position
+     * @return true if a value has been copied, false if no frame has been received for the ID yet
+     */
+    public boolean read(int rawId, ByteBuffer dest) {
+        if (dest.order() != ByteOrder.nativeOrder()) {
+            throw new IllegalArgumentException("The buffer must use the native byte order!");
+        }
+        if (dest.remaining() < RECORD_SIZE) {
+            throw new IllegalArgumentException("The buffer needs at least " + RECORD_SIZE + " bytes remaining!");
+        }
+        final int key = key(rawId);
+        final int slot = CanId.isExtended(key) ? extendedKeys.find(key) : key;
+        if (slot == -1) {
+            return false;
+        }
+        final ByteBuffer table = CanId.isExtended(key) ? extended : standard;
+        final StampedLock segment = (CanId.isExtended(key) ? extendedSegments : standardSegments)[slot >>> SEGMENT_SHIFT];
+        final int offset = slot * RECORD_SIZE;
+        final int position = dest.position();
+        while (true) {
+            final long stamp = segment.tryOptimisticRead();
+            if (stamp == 0) {
+                Thread.yield();
+                continue;
+            }
+            for (int i = 0; i < RECORD_SIZE; i += Long.BYTES) {
+                dest.putLong(position + i, table.getLong(offset + i));
+            }
+            if (segment.validate(stamp)) {
+                return dest.getLong(position + OFFSET_UPDATE_COUNT) != 0;
+            }
+        }
+    }
+
+    /**
+     * Reads a single field of the cached value of the given ID.
+     *
+     * @param rawId the raw CAN ID
+     * @param field the offset of the field within the record, e.g. {@link #OFFSET_TIMESTAMP}
+     * @return the value of the field or 0 if no frame has been received for the ID yet
+     */
+    private long readField(int rawId, int field) {
+        final int key = key(rawId);
+        final int slot = CanId.isExtended(key) ? extendedKeys.find(key) : key;
+        if (slot == -1) {
+            return 0;
+        }
+        final ByteBuffer table = CanId.isExtended(key) ? extended : standard;
+        final StampedLock segment = (CanId.isExtended(key) ? extendedSegments : standardSegments)[slot >>> SEGMENT_SHIFT];
+        final int offset = slot * RECORD_SIZE + field;
+        while (true) {
+            final long stamp = segment.tryOptimisticRead();
+            if (stamp == 0) {
+                Thread.yield();
+                continue;
+            }
+            final long value = table.getLong(offset);
+            if (segment.validate(stamp)) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * The amount of frames that have been received for the given ID.
+     *
+     * @param rawId the raw CAN ID
+     * @return the update count
+     */
+    public long getUpdateCount(int rawId) {
+        return readField(rawId, OFFSET_UPDATE_COUNT);
+    }
+
+    /**
+     * The time the latest frame of the given ID has been received at.
+     *
+     * @param rawId the raw CAN ID
+     * @return the timestamp in nanoseconds since the epoch or 0 if no frame has been received
+     */
+    public long getTimestamp(int rawId) {
+        return readField(rawId, OFFSET_TIMESTAMP);
+    }
+
+    /**
+     * The time the frame of the given ID has last been received with a different payload (or flags) than before.
+     *
+     * @param rawId the raw CAN ID
+     * @return the timestamp in nanoseconds since the epoch or 0 if no frame has been received
+     */
+    public long getLastChange(int rawId) {
+        return readField(rawId, OFFSET_LAST_CHANGE);
+    }
+
+    /**
+     * The amount of extended frames that could not be cached, because the extended table was full.
+     *
+     * @return the amount of rejected frames
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Creates a frame backed by a record copied by {@link #read(int, ByteBuffer)}.
+     *
+     * @param record the buffer containing the record at its position
+     * @return the frame
+     */
+    public static CanFrame getFrame(ByteBuffer record) {
+        int offset = record.position();
+        int length = (int) record.getLong(offset + OFFSET_LENGTH);
+        return CanFrame.create(JavaCAN.sliceOrdered(record, offset + OFFSET_FRAME, length));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import tel.schich.javacan.select.IOEvent;
+import tel.schich.javacan.select.IOEventBatch;
+import tel.schich.javacan.select.IOSelector;
+
+import java.io.IOException;
+import java.nio.channels.Channel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This is an adapter for event loop implementations that process the events of a selection as a list of
+ * {@link IOEvent}s, as {@link EventLoop} did before it passed a reusable {@link IOEventBatch}. Each selection copies
+ * the events into a new list, so new implementations should extend {@link EventLoop} directly.
+ *
+ * @param <HandleType>  the type of handles that are supported by the underlying {@link IOSelector}
+ * @param <ChannelType> the type of channels that can be registered
+ */
+public abstract class ListEventLoop<HandleType, ChannelType extends Channel> extends EventLoop<HandleType, ChannelType> {
+
+    public ListEventLoop(String name, ThreadFactory threadFactory, IOSelector<HandleType> selector, Duration timeout) {
+        super(name, threadFactory, selector, timeout);
+    }
+
+    @Override
+    protected final void processEvents(IOEventBatch<HandleType> events) throws IOException {
+        final List<IOEvent<HandleType>> selectedKeys = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            selectedKeys.add(new IOEvent<>(events.getRegistration(i), events.getOperations(i)));
+        }
+        processEvents(selectedKeys);
+    }
+
+    /**
+     * <p>
+     * Processes the events of a single selection.
+     * </p>
+     * <p>
+     * The list is created for this call only. Processed events may be removed while iterating.
+     * </p>
+     *
+     * @param selectedKeys the events of the last selection
+     * @throws IOException if the implementation has IO failures
+     */
+    protected abstract void processEvents(List<IOEvent<HandleType>> selectedKeys) throws IOException;
+}
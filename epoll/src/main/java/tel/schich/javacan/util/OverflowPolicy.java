@@ -0,0 +1,45 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+/**
+ * The overflow policy decides what happens when a frame is sent asynchronously (see
+ * {@link CanBroker#sendAsync(tel.schich.javacan.NetworkDevice, tel.schich.javacan.CanFrame)}), but the transmit
+ * queue of the channel is already full.
+ */
+public enum OverflowPolicy {
+    /**
+     * The sending thread is blocked until there is space in the queue. This must not be used when sending from a
+     * handler, as the handlers are called by the thread that drains the queue.
+     */
+    BLOCK,
+    /**
+     * The oldest queued frame is dropped, its future completes exceptionally. A frame that is currently being written
+     * is never dropped, if it is the only queued frame the new frame is dropped instead.
+     */
+    DROP_OLDEST,
+    /**
+     * The new frame is rejected, its future completes exceptionally.
+     */
+    FAIL,
+}
@@ -0,0 +1,354 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.RawCanChannel;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * This {@link FrameHandler} hands the frames off from the polling thread to a pool of worker threads, which call the
+ * actual handler. Contrary to {@link CopyingFrameHandlerProxy} no frame is allocated: the frames are copied into the
+ * slots of a preallocated direct ring buffer, whose slots are reused once every worker has moved past them.
+ * </p>
+ * <p>
+ * The polling thread is the only producer and publishes frames by advancing a cursor sequence, each worker tracks its
+ * own sequence and processes all frames published since its last pass as one batch. Every worker looks at every slot,
+ * but only handles those assigned to it by the {@link Ordering}, so frames sharing the same key are always handled
+ * in order by the same worker.
+ * </p>
+ * <p>
+ * The frame given to the delegate handler is backed by the ring buffer and is only valid during the call, just like
+ * the frames given by a {@link CanBroker}. If the ring buffer is full the polling thread either waits for the slowest
+ * worker ({@link Overflow#BLOCK}) or drops the new frame ({@link Overflow#DROP}), which is counted by
+ * {@link #getDroppedCount()}.
+ * </p>
+ */
+public class RingBufferFrameHandler implements FrameHandler, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RingBufferFrameHandler.class);
+
+    private static final int SLOT_SIZE = RawCanChannel.FD_MTU;
+    /**
+     * The worker sequences are spread over separate cache lines to avoid false sharing between the workers.
+     */
+    private static final int SEQUENCE_PADDING = 8;
+    private static final int SPIN_TRIES = 100;
+    private static final long PARK_NANOS = 1_000_000;
+
+    /**
+     * The ordering decides which worker handles a frame. Frames with the same key will be handled by the same
+     * worker in the order they have been received.
+     */
+    public enum Ordering {
+        /**
+         * Frames with the same CAN ID are handled in order.
+         */
+        PER_ID,
+        /**
+         * Frames received by the same channel are handled in order.
+         */
+        PER_CHANNEL,
+        /**
+         * The frames are distributed over all workers in turn without any ordering guarantees.
+         */
+        NONE,
+    }
+
+    /**
+     * The overflow behavior decides what the polling thread does when the ring buffer is full. Frames that have been
+     * published can not be dropped, as they might already be in progress.
+     */
+    public enum Overflow {
+        /**
+         * The polling thread waits until the slowest worker has moved past the slot.
+         */
+        BLOCK,
+        /**
+         * The new frame is dropped and counted by {@link #getDroppedCount()}.
+         */
+        DROP,
+    }
+
+    private final FrameHandler delegate;
+    private final Ordering ordering;
+    private final Overflow overflow;
+    private final PollExceptionHandler exceptionHandler;
+
+    private final int mask;
+    private final ByteBuffer ring;
+    private final CanFrame[] frames;
+    private final CanFrame[] fdFrames;
+    private final boolean[] fd;
+    private final int[] keys;
+    private final RawCanChannel[] channels;
+
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private final AtomicLongArray sequences;
+    private final Thread[] workers;
+    private final AtomicIntegerArray sleeping;
+    private long cachedGatingSequence = -1;
+    private volatile long droppedCount;
+
+    private volatile boolean running = true;
+
+    /**
+     * Creates a new handler with workers that log exceptions of the delegate handler and continue.
+     *
+     * @param delegate the handler that will be called by the worker threads
+     * @param capacity the amount of slots in the ring buffer, must be a power of two
+     * @param workerCount the amount of worker threads
+     * @param ordering the ordering of the frames across workers
+     * @param overflow what to do when the ring buffer is full
+     * @param threadFactory the factory for the worker threads
+     */
+    public RingBufferFrameHandler(FrameHandler delegate, int capacity, int workerCount, Ordering ordering, Overflow overflow, ThreadFactory threadFactory) {
+        this(delegate, capacity, workerCount, ordering, overflow, threadFactory, RingBufferFrameHandler::logException);
+    }
+
+    /**
+     * Creates a new handler.
+     *
+     * @param delegate the handler that will be called by the worker threads
+     * @param capacity the amount of slots in the ring buffer, must be a power of two
+     * @param workerCount the amount of worker threads
+     * @param ordering the ordering of the frames across workers
+     * @param overflow what to do when the ring buffer is full
+     * @param threadFactory the factory for the worker threads
+     * @param exceptionHandler handles exceptions thrown by the delegate handler, the worker terminates if it returns false
+     */
+    public RingBufferFrameHandler(FrameHandler delegate, int capacity, int workerCount, Ordering ordering, Overflow overflow, ThreadFactory threadFactory, PollExceptionHandler exceptionHandler) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of two, but was " + capacity + "!");
+        }
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("At least one worker is required!");
+        }
+        this.delegate = delegate;
+        this.ordering = ordering;
+        this.overflow = overflow;
+        this.exceptionHandler = exceptionHandler;
+
+        this.mask = capacity - 1;
+        this.ring = JavaCAN.allocateOrdered(capacity * SLOT_SIZE);
+        this.frames = new CanFrame[capacity];
+        this.fdFrames = new CanFrame[capacity];
+        this.fd = new boolean[capacity];
+        this.keys = new int[capacity];
+        this.channels = new RawCanChannel[capacity];
+        for (int i = 0; i < capacity; i++) {
+            frames[i] = CanFrame.createUnsafe(JavaCAN.sliceOrdered(ring, i * SLOT_SIZE, RawCanChannel.MTU));
+            fdFrames[i] = CanFrame.createUnsafe(JavaCAN.sliceOrdered(ring, i * SLOT_SIZE, RawCanChannel.FD_MTU));
+        }
+
+        this.sequences = new AtomicLongArray(workerCount * SEQUENCE_PADDING);
+        this.sleeping = new AtomicIntegerArray(workerCount);
+        this.workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            sequences.set(i * SEQUENCE_PADDING, -1);
+            final int worker = i;
+            workers[i] = threadFactory.newThread(() -> work(worker));
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+    }
+
+    /**
+     * Copies the frame into the next slot of the ring buffer and publishes it to the workers.
+     * This must only ever be called from a single thread, usually the polling thread of a {@link CanBroker}.
+     *
+     * @param ch the channel that received the frame
+     * @param frame the frame that has been received
+     */
+    @Override
+    public void handle(RawCanChannel ch, CanFrame frame) {
+        if (!running) {
+            return;
+        }
+        final long next = cursor.get() + 1;
+        if (!awaitCapacity(next)) {
+            droppedCount++;
+            return;
+        }
+
+        final int slot = (int) (next & mask);
+        copy(frame, slot * SLOT_SIZE);
+        fd[slot] = frame.getSize() == RawCanChannel.FD_MTU;
+        channels[slot] = ch;
+        switch (ordering) {
+            case PER_ID:
+                keys[slot] = frame.getRawId();
+                break;
+            case PER_CHANNEL:
+                keys[slot] = System.identityHashCode(ch);
+                break;
+            default:
+                keys[slot] = (int) next;
+                break;
+        }
+
+        cursor.set(next);
+        for (int i = 0; i < workers.length; i++) {
+            if (sleeping.get(i) != 0) {
+                LockSupport.unpark(workers[i]);
+            }
+        }
+    }
+
+    private boolean awaitCapacity(long next) {
+        final long wrapPoint = next - frames.length;
+        if (wrapPoint <= cachedGatingSequence) {
+            return true;
+        }
+        int tries = 0;
+        while (running) {
+            cachedGatingSequence = minimumSequence();
+            if (wrapPoint <= cachedGatingSequence) {
+                return true;
+            }
+            if (overflow == Overflow.DROP) {
+                return false;
+            }
+            tries = idle(tries);
+        }
+        return false;
+    }
+
+    private void copy(CanFrame frame, int offset) {
+        final ByteBuffer source = frame.getBuffer();
+        final int base = frame.getBase();
+        for (int i = 0; i < frame.getSize(); i += Long.BYTES) {
+            ring.putLong(offset + i, source.getLong(base + i));
+        }
+    }
+
+    private long minimumSequence() {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < workers.length; i++) {
+            min = Math.min(min, sequences.get(i * SEQUENCE_PADDING));
+        }
+        return min;
+    }
+
+    private void work(int worker) {
+        final int workerCount = workers.length;
+        final int sequenceIndex = worker * SEQUENCE_PADDING;
+        long processed = sequences.get(sequenceIndex);
+        int tries = 0;
+        while (running) {
+            final long available = cursor.get();
+            if (available <= processed) {
+                if (tries < SPIN_TRIES) {
+                    tries++;
+                    Thread.yield();
+                } else {
+                    sleeping.set(worker, 1);
+                    if (cursor.get() <= processed && running) {
+                        LockSupport.parkNanos(this, PARK_NANOS);
+                    }
+                    sleeping.set(worker, 0);
+                }
+                continue;
+            }
+            tries = 0;
+            for (long sequence = processed + 1; sequence <= available; sequence++) {
+                final int slot = (int) (sequence & mask);
+                // spread consecutive IDs, the workers are selected by the lower bits
+                if (Math.floorMod(CanIdTable.hash(keys[slot]), workerCount) == worker) {
+                    try {
+                        delegate.handle(channels[slot], fd[slot] ? fdFrames[slot] : frames[slot]);
+                    } catch (RuntimeException e) {
+                        if (!exceptionHandler.handle(Thread.currentThread(), e, false)) {
+                            sequences.lazySet(sequenceIndex, Long.MAX_VALUE);
+                            return;
+                        }
+                    }
+                }
+            }
+            processed = available;
+            sequences.lazySet(sequenceIndex, processed);
+        }
+    }
+
+    private static int idle(int tries) {
+        if (tries < SPIN_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS / 100);
+        }
+        return tries + 1;
+    }
+
+    private static boolean logException(Thread thread, Throwable t, boolean terminal) {
+        LOGGER.error("Frame handler failed on worker " + thread.getName(), t);
+        return true;
+    }
+
+    /**
+     * The amount of frames that have been published but not yet processed by every worker.
+     *
+     * @return the amount of frames in the ring buffer
+     */
+    public int getBacklog() {
+        long backlog = cursor.get() - minimumSequence();
+        return (int) Math.max(0, backlog);
+    }
+
+    /**
+     * The amount of frames that have been dropped because the ring buffer was full. This is only updated by the
+     * producing thread.
+     *
+     * @return the amount of dropped frames
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Stops the worker threads and waits for them to terminate. Frames that have not been handled yet are discarded.
+     *
+     * @throws InterruptedException if waiting for the workers got interrupted
+     */
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+        for (Thread worker : workers) {
+            if (worker != Thread.currentThread()) {
+                worker.join();
+            }
+        }
+    }
+}
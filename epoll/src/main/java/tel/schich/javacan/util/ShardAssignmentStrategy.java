@@ -0,0 +1,90 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import tel.schich.javacan.NetworkDevice;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A shard assignment strategy decides which shard of a {@link ShardedCanBroker} a newly added
+ * {@link tel.schich.javacan.NetworkDevice} will be handled by.
+ */
+@FunctionalInterface
+public interface ShardAssignmentStrategy {
+    /**
+     * Assigns a shard to the given device.
+     *
+     * @param device the device that is being added
+     * @param deviceCounts the amount of devices currently assigned to each shard, must not be modified
+     * @return the index of the shard within {@code [0, deviceCounts.length)}
+     */
+    int assign(NetworkDevice device, int[] deviceCounts);
+
+    /**
+     * Assigns the shards in turn, regardless of their load.
+     *
+     * @return a new round-robin strategy
+     */
+    static ShardAssignmentStrategy roundRobin() {
+        AtomicInteger next = new AtomicInteger();
+        return (device, deviceCounts) -> Math.floorMod(next.getAndIncrement(), deviceCounts.length);
+    }
+
+    /**
+     * Assigns the shard with the least amount of devices, preferring lower indices.
+     *
+     * @return the least-loaded strategy
+     */
+    static ShardAssignmentStrategy leastLoaded() {
+        return (device, deviceCounts) -> {
+            int shard = 0;
+            for (int i = 1; i < deviceCounts.length; i++) {
+                if (deviceCounts[i] < deviceCounts[shard]) {
+                    shard = i;
+                }
+            }
+            return shard;
+        };
+    }
+
+    /**
+     * Assigns devices to explicitly configured shards, all other devices are assigned by the fallback strategy.
+     *
+     * @param pins the shard index for each pinned device
+     * @param fallback the strategy for devices that are not pinned
+     * @return a new pinning strategy
+     */
+    static ShardAssignmentStrategy pinned(Map<NetworkDevice, Integer> pins, ShardAssignmentStrategy fallback) {
+        Map<NetworkDevice, Integer> copy = new HashMap<>(pins);
+        return (device, deviceCounts) -> {
+            Integer shard = copy.get(device);
+            if (shard == null) {
+                return fallback.assign(device, deviceCounts);
+            }
+            return shard;
+        };
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.eclipse.jdt.annotation.Nullable;
+import tel.schich.javacan.CanFilter;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.CompiledCanFilter;
+import tel.schich.javacan.NetworkDevice;
+import tel.schich.javacan.platform.linux.epoll.EPollSelector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <p>
+ * This class spreads {@link tel.schich.javacan.NetworkDevice}s over several {@link CanBroker}s (shards), each with
+ * its own {@link EPollSelector} and polling thread, so that the traffic of several CAN interfaces can be handled by
+ * several cores.
+ * </p>
+ * <p>
+ * It offers the same API as the {@link CanBroker}. Filters, the loopback mode and the read budget apply to all shards.
+ * Which shard a device is assigned to is decided by a {@link ShardAssignmentStrategy} when the device is added,
+ * unless it is explicitly pinned to a shard using {@link #addDevice(NetworkDevice, FrameHandler, int)}.
+ * </p>
+ */
+public class ShardedCanBroker implements Closeable {
+    private final CanBroker[] shards;
+    private final int[] deviceCounts;
+    private final Map<NetworkDevice, Integer> deviceShards = new HashMap<>();
+    private final ShardAssignmentStrategy strategy;
+    private final Object shardLock = new Object();
+
+    public ShardedCanBroker(ThreadFactory threadFactory, int shardCount) throws IOException {
+        this(threadFactory, shardCount, ShardAssignmentStrategy.leastLoaded());
+    }
+
+    public ShardedCanBroker(ThreadFactory threadFactory, int shardCount, ShardAssignmentStrategy strategy) throws IOException {
+        this(threadFactory, shardCount, strategy, CanBroker.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Creates a new sharded broker with a new {@link EPollSelector} for each shard.
+     *
+     * @param threadFactory the thread factory for the polling threads of all shards
+     * @param shardCount the amount of shards
+     * @param strategy the strategy to assign devices to shards
+     * @param timeout the timeout used by the shards
+     * @throws IOException if a selector could not be created
+     */
+    public ShardedCanBroker(ThreadFactory threadFactory, int shardCount, ShardAssignmentStrategy strategy, Duration timeout) throws IOException {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("At least one shard is required!");
+        }
+        this.shards = new CanBroker[shardCount];
+        this.deviceCounts = new int[shardCount];
+        this.strategy = strategy;
+        for (int i = 0; i < shardCount; i++) {
+            try {
+                shards[i] = new CanBroker(threadFactory, EPollSelector.open(), timeout);
+            } catch (IOException e) {
+                IOException closeFailure = closeShards(i);
+                if (closeFailure != null) {
+                    e.addSuppressed(closeFailure);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * The amount of shards of this broker.
+     *
+     * @return the amount of shards
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Gets the shard the given device has been assigned to.
+     *
+     * @param device the device
+     * @return the index of the shard or -1 if the device is not known
+     */
+    public int getShard(NetworkDevice device) {
+        synchronized (shardLock) {
+            Integer shard = deviceShards.get(device);
+            return shard == null ? -1 : shard;
+        }
+    }
+
+    /**
+     * Adds a new {@link tel.schich.javacan.NetworkDevice} to the shard chosen by the {@link ShardAssignmentStrategy}.
+     *
+     * @param device the device
+     * @param handler the handler
+     * @throws IOException if the native call fails
+     */
+    public void addDevice(NetworkDevice device, FrameHandler handler) throws IOException {
+        synchronized (shardLock) {
+            addDevice(device, handler, strategy.assign(device, deviceCounts.clone()));
+        }
+    }
+
+    /**
+     * Adds a new {@link tel.schich.javacan.NetworkDevice} to the given shard.
+     *
+     * @param device the device
+     * @param handler the handler
+     * @param shard the index of the shard
+     * @throws IOException if the native call fails
+     */
+    public void addDevice(NetworkDevice device, FrameHandler handler, int shard) throws IOException {
+        if (shard < 0 || shard >= shards.length) {
+            throw new IllegalArgumentException("Shard " + shard + " does not exist!");
+        }
+        synchronized (shardLock) {
+            if (deviceShards.containsKey(device)) {
+                throw new IllegalArgumentException("Device already added!");
+            }
+            shards[shard].addDevice(device, handler);
+            deviceShards.put(device, shard);
+            deviceCounts[shard]++;
+        }
+    }
+
+    /**
+     * Removes a {@link tel.schich.javacan.NetworkDevice} from this broker.
+     *
+     * @param device the device to remove
+     * @throws IOException if the native call fails
+     */
+    public void removeDevice(NetworkDevice device) throws IOException {
+        final Integer shard;
+        synchronized (shardLock) {
+            shard = deviceShards.remove(device);
+            if (shard == null) {
+                throw new IllegalArgumentException("Device not known!");
+            }
+            deviceCounts[shard]--;
+        }
+        // removing might join the shard's polling thread, which must not happen while holding the lock
+        shards[shard].removeDevice(device);
+    }
+
+    /**
+     * Sends a {@link tel.schich.javacan.CanFrame} to all known devices.
+     *
+     * @param frame the frame to send
+     * @throws IOException if the native call fails
+     */
+    public void send(CanFrame frame) throws IOException {
+        for (CanBroker shard : shards) {
+            shard.send(frame);
+        }
+    }
+
+    /**
+     * Sends a {@link tel.schich.javacan.CanFrame} to the given known {@link tel.schich.javacan.NetworkDevice}.
+     *
+     * @param device the device to send the frame to
+     * @param frame the frame to send
+     * @throws IOException if the native call fails
+     */
+    public void send(NetworkDevice device, CanFrame frame) throws IOException {
+        int shard = getShard(device);
+        if (shard == -1) {
+            throw new IllegalArgumentException("CAN device not known!");
+        }
+        shards[shard].send(device, frame);
+    }
+
+    /**
+     * Queues a {@link tel.schich.javacan.CanFrame} to be sent to the given known {@link tel.schich.javacan.NetworkDevice}
+     * by the polling thread of its shard.
+     *
+     * @param device the device to send the frame to
+     * @param frame the frame to send
+     * @return a future that completes once the frame has been written
+     * @throws IOException if the native call fails
+     * @see CanBroker#sendAsync(NetworkDevice, CanFrame)
+     */
+    public CompletableFuture<Void> sendAsync(NetworkDevice device, CanFrame frame) throws IOException {
+        int shard = getShard(device);
+        if (shard == -1) {
+            throw new IllegalArgumentException("CAN device not known!");
+        }
+        return shards[shard].sendAsync(device, frame);
+    }
+
+    /**
+     * Configures the transmit queues of all shards.
+     *
+     * @param capacity the maximum amount of queued frames per device
+     * @param policy the policy that applies when a queue is full
+     * @see CanBroker#setTransmitQueue(int, OverflowPolicy)
+     */
+    public void setTransmitQueue(int capacity, OverflowPolicy policy) {
+        for (CanBroker shard : shards) {
+            shard.setTransmitQueue(capacity, policy);
+        }
+    }
+
+    /**
+     * Sets the loopback mode for all known devices.
+     *
+     * @param enable whether to enable loopback
+     * @throws IOException if the native call fails
+     */
+    public void setLoopback(boolean enable) throws IOException {
+        for (CanBroker shard : shards) {
+            shard.setLoopback(enable);
+        }
+    }
+
+    /**
+     * Checks if the devices of this broker are in loopback mode.
+     *
+     * @return true if the devices are in loopback mode
+     */
+    public boolean isLoopback() {
+        return shards[0].isLoopback();
+    }
+
+    /**
+     * Sets the read budget of all shards.
+     *
+     * @param readBudget the maximum amount of frames to read from a channel in one go
+     * @see CanBroker#setReadBudget(int)
+     */
+    public void setReadBudget(int readBudget) {
+        for (CanBroker shard : shards) {
+            shard.setReadBudget(readBudget);
+        }
+    }
+
+    /**
+     * Sets the user space frame filter of all shards.
+     *
+     * @param filter the filter or null to pass on all frames
+     * @see CanBroker#setFrameFilter(CompiledCanFilter)
+     */
+    public void setFrameFilter(@Nullable CompiledCanFilter filter) {
+        for (CanBroker shard : shards) {
+            shard.setFrameFilter(filter);
+        }
+    }
+
+    /**
+     * Adds a filter that will be added to all underlying channels.
+     *
+     * @param filter the new filter
+     * @throws IOException if the native call fails
+     */
+    public void addFilter(CanFilter filter) throws IOException {
+        for (CanBroker shard : shards) {
+            shard.addFilter(filter);
+        }
+    }
+
+    /**
+     * Remove a filter from all underlying channels.
+     *
+     * @param filter the new filter
+     * @throws IOException if the native call fails
+     */
+    public void removeFilter(CanFilter filter) throws IOException {
+        for (CanBroker shard : shards) {
+            shard.removeFilter(filter);
+        }
+    }
+
+    /**
+     * Clears all filters.
+     *
+     * @throws IOException if the native call fails
+     */
+    public void clearFilters() throws IOException {
+        for (CanBroker shard : shards) {
+            shard.clearFilters();
+        }
+    }
+
+    /**
+     * Returns the amount of filters that are actually applied to the underlying channels.
+     *
+     * @return the amount of kernel filters
+     * @see CanBroker#getKernelFilterCount()
+     */
+    public int getKernelFilterCount() {
+        return shards[0].getKernelFilterCount();
+    }
+
+    /**
+     * Checks if there are any devices known to this broker.
+     *
+     * @return true only if this broker has no known devices
+     */
+    public boolean isEmpty() {
+        synchronized (shardLock) {
+            return deviceShards.isEmpty();
+        }
+    }
+
+    /**
+     * Closes all shards.
+     *
+     * @throws IOException if any shard failed to close
+     */
+    @Override
+    public void close() throws IOException {
+        IOException e = closeShards(shards.length);
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    @Nullable
+    private IOException closeShards(int count) {
+        IOException e = null;
+        for (int i = 0; i < count; i++) {
+            try {
+                shards[i].close();
+            } catch (IOException e1) {
+                if (e != null) {
+                    e1.addSuppressed(e);
+                }
+                e = e1;
+            }
+        }
+        return e;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.RawCanChannel;
+
+import java.time.Instant;
+
+/**
+ * Timestamped frame handlers additionally receive the time a {@link tel.schich.javacan.CanFrame} has been received at,
+ * if the {@link tel.schich.javacan.util.CanBroker} is able to provide it (see {@link FusedCanBroker}).
+ * Brokers without timestamp information pass the current time.
+ */
+@FunctionalInterface
+public interface TimestampedFrameHandler extends FrameHandler {
+    /**
+     * Handles a received frame.
+     *
+     * @param ch the channel that received the frame
+     * @param frame the frame that has been received
+     * @param timestampSeconds the seconds since the epoch the frame has been received at
+     * @param timestampNanos the nanosecond adjustment to the seconds
+     */
+    void handle(RawCanChannel ch, CanFrame frame, long timestampSeconds, long timestampNanos);
+
+    @Override
+    default void handle(RawCanChannel ch, CanFrame frame) {
+        Instant now = Instant.now();
+        handle(ch, frame, now.getEpochSecond(), now.getNano());
+    }
+}
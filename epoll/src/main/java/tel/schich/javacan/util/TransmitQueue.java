@@ -0,0 +1,255 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.Nullable;
+import tel.schich.javacan.CanFrame;
+
+/**
+ * A bounded queue of frames waiting to be written to a channel once it becomes writable. The queue keeps track of
+ * whether write interest is currently registered for its channel, which must only be changed while holding the
+ * queue's monitor.
+ * <p>
+ * The writing thread takes the head entry with {@link #beginWrite()}, which marks it as in flight until it is either
+ * removed with {@link #remove(Entry)} or put back with {@link #abortWrite()}. An entry in flight is never dropped by
+ * {@link OverflowPolicy#DROP_OLDEST}, as it might already be on the bus.
+ * </p>
+ * <p>
+ * If the device rejects frames (e.g. with {@code ENOBUFS}), the writing thread backs off for an exponentially growing
+ * delay, see {@link #backOff(long)}. The back-off state is only accessed by the writing thread.
+ * </p>
+ */
+final class TransmitQueue {
+    static final long MIN_BACK_OFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    static final long MAX_BACK_OFF_NANOS = TimeUnit.MILLISECONDS.toNanos(64);
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private @Nullable Entry inFlight;
+    private boolean armed;
+    private boolean closed;
+
+    private long backOffNanos;
+    private long retryAt;
+    private boolean backingOff;
+
+    TransmitQueue(int capacity, OverflowPolicy policy) {
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    /**
+     * Enqueues a frame according to the overflow policy.
+     *
+     * @param frame the frame
+     * @param future the future to complete once the frame has been written
+     * @return true if write interest has to be registered for the channel
+     * @throws InterruptedIOException if the thread has been interrupted while blocked
+     */
+    synchronized boolean enqueue(CanFrame frame, CompletableFuture<Void> future) throws InterruptedIOException {
+        while (!closed && entries.size() >= capacity) {
+            switch (policy) {
+                case BLOCK:
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for space in the transmit queue!");
+                    }
+                    break;
+                case DROP_OLDEST:
+                    Entry dropped = dropOldest();
+                    if (dropped == null) {
+                        // the only queued frame is being written, so the new frame is the oldest one that can be dropped
+                        future.completeExceptionally(new IOException("The frame has been dropped from the transmit queue!"));
+                        return false;
+                    }
+                    dropped.future.completeExceptionally(new IOException("The frame has been dropped from the transmit queue!"));
+                    break;
+                default:
+                    future.completeExceptionally(new IOException("The transmit queue is full!"));
+                    return false;
+            }
+        }
+        if (closed) {
+            future.completeExceptionally(new ClosedChannelException());
+            return false;
+        }
+        entries.add(new Entry(frame, future));
+        if (armed) {
+            return false;
+        }
+        armed = true;
+        return true;
+    }
+
+    private @Nullable Entry dropOldest() {
+        Iterator<Entry> it = entries.iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry != inFlight) {
+                it.remove();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Takes the head entry for writing and marks it as in flight.
+     *
+     * @return the head entry or null if the queue is empty
+     */
+    synchronized @Nullable Entry beginWrite() {
+        Entry head = entries.peek();
+        inFlight = head;
+        return head;
+    }
+
+    /**
+     * Puts the entry in flight back, because it could not be written yet.
+     */
+    synchronized void abortWrite() {
+        inFlight = null;
+    }
+
+    synchronized void remove(Entry entry) {
+        if (inFlight == entry) {
+            inFlight = null;
+        }
+        if (entries.remove(entry)) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Marks the queue as not interested in writes anymore if it is empty.
+     *
+     * @return true if the write interest has to be removed from the channel
+     */
+    synchronized boolean disarmIfEmpty() {
+        if (!armed || !entries.isEmpty()) {
+            return false;
+        }
+        armed = false;
+        return true;
+    }
+
+    /**
+     * Reverts {@link #enqueue(CanFrame, CompletableFuture)} after write interest could not be registered: the frame's
+     * entry is removed unless it is already being written, its future completes exceptionally and the queue is
+     * disarmed, so the next frame tries to register write interest again.
+     *
+     * @param future the future of the enqueued frame
+     * @param cause the registration failure
+     */
+    synchronized void abortArm(CompletableFuture<Void> future, IOException cause) {
+        Iterator<Entry> it = entries.iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.future == future && entry != inFlight) {
+                it.remove();
+                future.completeExceptionally(cause);
+                notifyAll();
+                break;
+            }
+        }
+        armed = false;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Starts or extends backing off from writing, the delay doubles with every consecutive call up to
+     * {@link #MAX_BACK_OFF_NANOS}.
+     *
+     * @param now the current {@link System#nanoTime()}
+     * @return the {@link System#nanoTime()} at which writing should be retried
+     */
+    long backOff(long now) {
+        backOffNanos = backOffNanos == 0 ? MIN_BACK_OFF_NANOS : Math.min(backOffNanos * 2, MAX_BACK_OFF_NANOS);
+        retryAt = now + backOffNanos;
+        backingOff = true;
+        return retryAt;
+    }
+
+    /**
+     * Ends backing off, the next back-off continues with the current delay until {@link #resetBackOff()} is called.
+     */
+    void endBackOff() {
+        backingOff = false;
+    }
+
+    /**
+     * Resets the back-off delay after a frame has been written successfully.
+     */
+    void resetBackOff() {
+        backOffNanos = 0;
+    }
+
+    boolean isBackingOff() {
+        return backingOff;
+    }
+
+    long getRetryAt() {
+        return retryAt;
+    }
+
+    /**
+     * Closes this queue, all pending frames complete exceptionally and no more frames are accepted.
+     */
+    void close() {
+        Entry[] pending;
+        synchronized (this) {
+            closed = true;
+            pending = entries.toArray(new Entry[0]);
+            entries.clear();
+            inFlight = null;
+            notifyAll();
+        }
+        for (Entry entry : pending) {
+            entry.future.completeExceptionally(new ClosedChannelException());
+        }
+    }
+
+    static final class Entry {
+        final CanFrame frame;
+        final CompletableFuture<Void> future;
+
+        Entry(CanFrame frame, CompletableFuture<Void> future) {
+            this.frame = frame;
+            this.future = future;
+        }
+    }
+}
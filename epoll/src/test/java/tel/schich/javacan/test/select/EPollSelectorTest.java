@@ -33,14 +33,20 @@ import tel.schich.javacan.RawCanChannel;
 import tel.schich.javacan.platform.linux.UnixFileDescriptor;
 import tel.schich.javacan.platform.linux.epoll.EPollSelector;
 import tel.schich.javacan.select.IOEvent;
+import tel.schich.javacan.select.IOEventBatch;
 import tel.schich.javacan.select.IOSelector;
 import tel.schich.javacan.select.SelectorRegistration;
 import tel.schich.javacan.test.CanTestHelper;
 
 import java.io.IOException;
+import java.nio.channels.Channel;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import static java.time.Duration.ofMillis;
 import static org.junit.jupiter.api.Assertions.*;
@@ -79,6 +85,32 @@ public class EPollSelectorTest {
         }
     }
 
+    @Test
+    public void testWriteReadWithBatch() throws IOException {
+        try (RawCanChannel ch = CanChannels.newRawChannel()) {
+            try (EPollSelector selector = EPollSelector.open()) {
+                ch.setOption(RECV_OWN_MSGS, true);
+                ch.configureBlocking(false);
+                ch.bind(CAN_INTERFACE);
+                selector.register(ch, EnumSet.of(SelectorRegistration.Operation.READ));
+
+                IOEventBatch<UnixFileDescriptor> batch = new IOEventBatch<>(1);
+                CanFrame inputFrame = CanFrame.create(0x7EF, FD_NO_FLAGS, new byte[]{1, 2, 3, 4});
+                runDelayed(ofMillis(200), () -> ch.write(inputFrame));
+                assertTimeoutPreemptively(ofMillis(300), () -> {
+                    assertEquals(1, selector.select(null, batch), "With one registered channel there should only be one event!");
+                    assertSame(ch, batch.getRegistration(0).getChannel(), "Channel from the event should be the same as the registered channel!");
+                    assertEquals(EnumSet.of(SelectorRegistration.Operation.READ), batch.getOperations(0));
+                    CanFrame outputFrame = ch.read();
+                    assertEquals(inputFrame, outputFrame, "What goes in should come out!");
+                });
+
+                assertEquals(0, selector.select(Duration.ZERO, batch));
+                assertTrue(batch.isEmpty(), "The batch should be cleared by the selection!");
+            }
+        }
+    }
+
     @Test
     public void testWakeup() throws IOException {
         try (EPollSelector selector = EPollSelector.open()) {
@@ -127,6 +159,37 @@ public class EPollSelectorTest {
         }
     }
 
+    @Test
+    public void testManyRegistrations() throws IOException, InterruptedException {
+        final int channelCount = 200;
+        List<RawCanChannel> channels = new ArrayList<>();
+        try (final EPollSelector selector = EPollSelector.open(channelCount)) {
+            try {
+                for (int i = 0; i < channelCount; i++) {
+                    channels.add(configureAndRegisterChannel(selector).getChannel());
+                }
+                CanTestHelper.sendFrameViaUtils(CAN_INTERFACE, CanFrame.create(0x3, CanFrame.FD_NO_FLAGS, new byte[] {1}));
+
+                Set<Channel> ready = Collections.newSetFromMap(new IdentityHashMap<>());
+                IOEventBatch<UnixFileDescriptor> batch = new IOEventBatch<>();
+                long deadline = System.currentTimeMillis() + 500;
+                while (ready.size() < channelCount && System.currentTimeMillis() < deadline) {
+                    selector.select(Duration.ofMillis(100), batch);
+                    for (int i = 0; i < batch.size(); i++) {
+                        Channel ch = batch.getRegistration(i).getChannel();
+                        ((RawCanChannel) ch).read();
+                        ready.add(ch);
+                    }
+                }
+                assertEquals(channelCount, ready.size(), "Every registered channel should have received the frame!");
+            } finally {
+                for (RawCanChannel ch : channels) {
+                    ch.close();
+                }
+            }
+        }
+    }
+
     private static SelectorRegistration<UnixFileDescriptor, RawCanChannel> configureAndRegisterChannel(IOSelector<UnixFileDescriptor> selector) throws IOException {
         final RawCanChannel ch = CanChannels.newRawChannel(CAN_INTERFACE);
         LOGGER.debug("Created channel: " + ch);
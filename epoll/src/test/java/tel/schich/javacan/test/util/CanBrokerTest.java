@@ -25,18 +25,39 @@ package tel.schich.javacan.test.util;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import tel.schich.javacan.CanChannels;
 import tel.schich.javacan.CanFilter;
 import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.RawCanChannel;
 import tel.schich.javacan.platform.linux.epoll.EPollSelector;
 import tel.schich.javacan.test.CanTestHelper;
 import tel.schich.javacan.util.CanBroker;
+import tel.schich.javacan.util.FrameHandler;
+import tel.schich.javacan.util.OverflowPolicy;
+import tel.schich.javacan.util.FusedCanBroker;
+import tel.schich.javacan.util.TimestampedFrameHandler;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class CanBrokerTest {
     private static final Logger LOGGER = LoggerFactory.getLogger(CanBrokerTest.class);
@@ -96,4 +117,307 @@ class CanBrokerTest {
         assertNotNull(actual, "CAN frame should have been captured!");
         assertEquals(expected, actual, "What goes in should come out!");
     }
+
+    @Test
+    void testDrainEdgeTriggered() throws Exception {
+        final int frameCount = 10;
+        CountDownLatch latch = new CountDownLatch(frameCount);
+
+        try (CanBroker can = new CanBroker(FACTORY, EPollSelector.open(10, true))) {
+            can.setReadBudget(3);
+            can.addFilter(new CanFilter(0x7E1));
+            can.addDevice(CanTestHelper.CAN_INTERFACE, (ch, frame) -> latch.countDown());
+
+            try (RawCanChannel sender = CanChannels.newRawChannel(CanTestHelper.CAN_INTERFACE)) {
+                for (int i = 0; i < frameCount; i++) {
+                    sender.write(CanFrame.create(0x7E1, CanFrame.FD_NO_FLAGS, new byte[]{(byte) i}));
+                }
+            }
+
+            assertTrue(latch.await(2, SECONDS), "All frames should have been received!");
+        }
+    }
+
+    @Test
+    void testSubscribe() throws Exception {
+        CompletableFuture<CanFrame> first = new CompletableFuture<>();
+        CompletableFuture<CanFrame> second = new CompletableFuture<>();
+        CanFrame expected = CanFrame.create(0x7E6, CanFrame.FD_NO_FLAGS, new byte[]{1, 2, 3});
+        FrameHandler secondHandler = (ch, frame) -> second.complete(frame);
+
+        try (CanBroker can = new CanBroker(FACTORY, EPollSelector.open())) {
+            can.subscribe(CanTestHelper.CAN_INTERFACE, new CanFilter(0x7E5), (ch, frame) -> first.complete(frame));
+            can.subscribe(CanTestHelper.CAN_INTERFACE, new CanFilter(0x7E6), secondHandler);
+
+            CanTestHelper.sendFrameViaUtils(CanTestHelper.CAN_INTERFACE, expected);
+
+            assertEquals(expected, second.get(2, SECONDS), "What goes in should come out!");
+            assertFalse(first.isDone(), "The frame should only reach its subscriber!");
+
+            assertTrue(can.unsubscribe(CanTestHelper.CAN_INTERFACE, new CanFilter(0x7E6), secondHandler));
+            assertFalse(can.unsubscribe(CanTestHelper.CAN_INTERFACE, new CanFilter(0x7E6), secondHandler));
+        }
+    }
+
+    @Test
+    void testSendAsync() throws Exception {
+        final int frameCount = 100;
+        CountDownLatch latch = new CountDownLatch(frameCount);
+
+        try (CanBroker sender = new CanBroker(FACTORY, EPollSelector.open());
+             CanBroker receiver = new CanBroker(FACTORY, EPollSelector.open())) {
+            receiver.addFilter(new CanFilter(0x7E7));
+            receiver.addDevice(CanTestHelper.CAN_INTERFACE, (ch, frame) -> latch.countDown());
+            sender.addFilter(CanFilter.NONE);
+            sender.addDevice(CanTestHelper.CAN_INTERFACE, (ch, frame) -> {});
+            sender.setTransmitQueue(frameCount, OverflowPolicy.FAIL);
+
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[frameCount];
+            for (int i = 0; i < frameCount; i++) {
+                futures[i] = sender.sendAsync(CanTestHelper.CAN_INTERFACE, CanFrame.create(0x7E7, CanFrame.FD_NO_FLAGS, new byte[]{(byte) i}));
+            }
+
+            CompletableFuture.allOf(futures).get(2, SECONDS);
+            assertTrue(latch.await(2, SECONDS), "All frames should have been received!");
+            assertEquals(0, sender.getQueuedFrameCount(CanTestHelper.CAN_INTERFACE));
+        }
+    }
+
+    @Test
+    void testSendAsyncBacksOffWhenDeviceQueueIsFull() throws Exception {
+        final int frameCount = 200;
+        AtomicReference<Thread> poller = new AtomicReference<>();
+        ThreadFactory factory = r -> {
+            Thread t = FACTORY.newThread(r);
+            poller.set(t);
+            return t;
+        };
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[frameCount];
+        withThrottledDevice(factory, frameCount, OverflowPolicy.FAIL, sender -> {
+            for (int i = 0; i < frameCount; i++) {
+                futures[i] = sender.sendAsync(CanTestHelper.CAN_INTERFACE, CanFrame.create(0x7E5, CanFrame.FD_NO_FLAGS, new byte[8]));
+            }
+
+            Thread.sleep(200);
+            assertTrue(sender.getQueuedFrameCount(CanTestHelper.CAN_INTERFACE) > 0, "The device should not keep up");
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            long threadId = poller.get().getId();
+            long cpuBefore = threads.getThreadCpuTime(threadId);
+            long wallBefore = System.nanoTime();
+            Thread.sleep(1000);
+            long cpu = threads.getThreadCpuTime(threadId) - cpuBefore;
+            long wall = System.nanoTime() - wallBefore;
+            assertTrue(sender.getQueuedFrameCount(CanTestHelper.CAN_INTERFACE) > 0, "The device should still be busy");
+            assertTrue(cpu < wall / 4, "The poller must not busy-loop while the device queue is full, it used " + cpu + "ns CPU in " + wall + "ns");
+
+            unthrottle();
+            CompletableFuture.allOf(futures).get(5, SECONDS);
+        });
+    }
+
+    @Test
+    void testSendAsyncFailsNewFramesWhenTheQueueIsFull() throws Exception {
+        final int capacity = 4;
+        withThrottledDevice(FACTORY, capacity, OverflowPolicy.FAIL, sender -> {
+            List<CompletableFuture<Void>> accepted = new ArrayList<>();
+            int rejected = 0;
+            for (int i = 0; i < 100; i++) {
+                CompletableFuture<Void> future = sender.sendAsync(CanTestHelper.CAN_INTERFACE, CanFrame.create(0x7E5, CanFrame.FD_NO_FLAGS, new byte[8]));
+                if (future.isCompletedExceptionally()) {
+                    assertFailed(IOException.class, future);
+                    rejected++;
+                } else {
+                    accepted.add(future);
+                }
+            }
+            assertTrue(rejected > 0, "Frames must be rejected once the queue is full");
+            assertTrue(sender.getQueuedFrameCount(CanTestHelper.CAN_INTERFACE) <= capacity);
+
+            unthrottle();
+            CompletableFuture.allOf(accepted.toArray(new CompletableFuture<?>[0])).get(5, SECONDS);
+            assertEquals(0, sender.getQueuedFrameCount(CanTestHelper.CAN_INTERFACE));
+        });
+    }
+
+    @Test
+    void testSendAsyncDropsTheOldestFramesWhenTheQueueIsFull() throws Exception {
+        final int capacity = 4;
+        final int frameCount = 100;
+        withThrottledDevice(FACTORY, capacity, OverflowPolicy.DROP_OLDEST, sender -> {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < frameCount; i++) {
+                CompletableFuture<Void> future = sender.sendAsync(CanTestHelper.CAN_INTERFACE, CanFrame.create(0x7E5, CanFrame.FD_NO_FLAGS, new byte[8]));
+                assertFalse(future.isCompletedExceptionally(), "The newest frame must be kept while older ones are queued");
+                futures.add(future);
+            }
+            assertTrue(sender.getQueuedFrameCount(CanTestHelper.CAN_INTERFACE) <= capacity);
+
+            unthrottle();
+            // the newest frames are never dropped in favor of older ones
+            futures.get(frameCount - 1).get(5, SECONDS);
+            int dropped = 0;
+            for (CompletableFuture<Void> future : futures) {
+                if (future.isCompletedExceptionally()) {
+                    assertFailed(IOException.class, future);
+                    dropped++;
+                }
+            }
+            assertTrue(dropped > 0, "The oldest frames must be dropped once the queue is full");
+        });
+    }
+
+    @Test
+    void testSendAsyncBlocksWhileTheQueueIsFull() throws Exception {
+        final int frameCount = 100;
+        withThrottledDevice(FACTORY, 1, OverflowPolicy.BLOCK, sender -> {
+            List<CompletableFuture<Void>> futures = Collections.synchronizedList(new ArrayList<>());
+            CompletableFuture<Void> sent = CompletableFuture.runAsync(() -> {
+                try {
+                    for (int i = 0; i < frameCount; i++) {
+                        futures.add(sender.sendAsync(CanTestHelper.CAN_INTERFACE, CanFrame.create(0x7E5, CanFrame.FD_NO_FLAGS, new byte[8])));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            Thread.sleep(200);
+            assertFalse(sent.isDone(), "The sender should be blocked while the queue is full");
+            assertTrue(sender.getQueuedFrameCount(CanTestHelper.CAN_INTERFACE) <= 1);
+
+            unthrottle();
+            sent.get(5, SECONDS);
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(5, SECONDS);
+        });
+    }
+
+    @Test
+    void testRemoveDeviceReleasesBlockedSenders() throws Exception {
+        withThrottledDevice(FACTORY, 1, OverflowPolicy.BLOCK, sender -> {
+            List<CompletableFuture<Void>> futures = Collections.synchronizedList(new ArrayList<>());
+            CompletableFuture<Void> sent = CompletableFuture.runAsync(() -> {
+                try {
+                    while (true) {
+                        futures.add(sender.sendAsync(CanTestHelper.CAN_INTERFACE, CanFrame.create(0x7E5, CanFrame.FD_NO_FLAGS, new byte[8])));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (IllegalArgumentException e) {
+                    // the device has been removed
+                }
+            });
+            Thread.sleep(200);
+            assertFalse(sent.isDone(), "The sender should be blocked while the queue is full");
+
+            sender.removeDevice(CanTestHelper.CAN_INTERFACE);
+            sent.get(5, SECONDS);
+            CompletableFuture<Void> last = futures.get(futures.size() - 1);
+            assertFailed(ClosedChannelException.class, last);
+        });
+    }
+
+    private interface ThrottledTest {
+        void run(CanBroker sender) throws Exception;
+    }
+
+    /**
+     * Runs the test with a broker sending to the test device while it is throttled by a slow token bucket with a tiny
+     * queue, which makes the kernel reject frames with ENOBUFS. The test is skipped without the required privileges.
+     */
+    private static void withThrottledDevice(ThreadFactory factory, int capacity, OverflowPolicy policy, ThrottledTest test) throws Exception {
+        final String dev = CanTestHelper.CAN_INTERFACE.getName();
+        final String originalQueueLength = new String(Files.readAllBytes(Paths.get("/sys/class/net", dev, "tx_queue_len")), StandardCharsets.US_ASCII).trim();
+        assumeTrue(run("ip", "link", "set", dev, "txqueuelen", "1"), "Changing the device's queue length requires privileges");
+        try {
+            assumeTrue(run("tc", "qdisc", "replace", "dev", dev, "root", "tbf", "rate", "8kbit", "burst", "128", "limit", "32"),
+                    "Installing a qdisc requires tc and privileges");
+            try (CanBroker sender = new CanBroker(factory, EPollSelector.open())) {
+                sender.addFilter(CanFilter.NONE);
+                sender.addDevice(CanTestHelper.CAN_INTERFACE, (ch, frame) -> {});
+                sender.setTransmitQueue(capacity, policy);
+                try {
+                    test.run(sender);
+                } finally {
+                    unthrottle();
+                }
+            }
+        } finally {
+            run("ip", "link", "set", dev, "txqueuelen", originalQueueLength);
+        }
+    }
+
+    private static void unthrottle() throws InterruptedException {
+        run("tc", "qdisc", "del", "dev", CanTestHelper.CAN_INTERFACE.getName(), "root");
+    }
+
+    private static void assertFailed(Class<? extends Throwable> type, CompletableFuture<Void> future) {
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertInstanceOf(type, e.getCause());
+    }
+
+    private static boolean run(String... command) throws InterruptedException {
+        try {
+            Process proc = new ProcessBuilder(command).redirectErrorStream(true).start();
+            return proc.waitFor() == 0;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to run " + String.join(" ", command), e);
+            return false;
+        }
+    }
+
+    @Test
+    void testSendWhileHandling() throws Exception {
+        final int id = 0x7E4;
+        CountDownLatch handling = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (CanBroker can = new CanBroker(FACTORY, EPollSelector.open())) {
+            can.addFilter(new CanFilter(id));
+            can.addDevice(CanTestHelper.CAN_INTERFACE, (ch, frame) -> {
+                handling.countDown();
+                try {
+                    release.await(2, SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            CanTestHelper.sendFrameViaUtils(CanTestHelper.CAN_INTERFACE, CanFrame.create(id, CanFrame.FD_NO_FLAGS, new byte[]{1}));
+            assertTrue(handling.await(2, SECONDS), "The handler should have been called!");
+
+            // the handler is still blocked, sending must not wait for it
+            CompletableFuture<Void> sent = CompletableFuture.runAsync(() -> {
+                try {
+                    can.send(CanFrame.create(id, CanFrame.FD_NO_FLAGS, new byte[]{2}));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            sent.get(1, SECONDS);
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testFusedRead() throws Exception {
+        final int id = 0x7E2;
+        CanFrame expected = CanFrame.create(id, CanFrame.FD_NO_FLAGS, new byte[]{1, 2, 3});
+        CompletableFuture<CanFrame> f = new CompletableFuture<>();
+        AtomicLong timestamp = new AtomicLong();
+        long before = System.currentTimeMillis() / 1000;
+
+        try (FusedCanBroker can = new FusedCanBroker(FACTORY, EPollSelector.open())) {
+            can.addFilter(new CanFilter(id));
+            can.addDevice(CanTestHelper.CAN_INTERFACE, (TimestampedFrameHandler) (ch, frame, seconds, nanos) -> {
+                timestamp.set(seconds);
+                f.complete(frame.copy());
+            });
+
+            CanTestHelper.sendFrameViaUtils(CanTestHelper.CAN_INTERFACE, expected);
+
+            CanFrame actual = f.get(2, SECONDS);
+            assertEquals(expected, actual, "What goes in should come out!");
+            assertTrue(timestamp.get() >= before, "The timestamp should not be before the frame has been sent!");
+        }
+    }
 }
@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.util;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanFilter;
+import tel.schich.javacan.util.CanIdRouter;
+import tel.schich.javacan.util.FrameHandler;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.CanFilter.INVERTED_BIT;
+import static tel.schich.javacan.CanId.EFF_FLAG;
+
+class CanIdRouterTest {
+
+    private static final FrameHandler A = (ch, frame) -> {};
+    private static final FrameHandler B = (ch, frame) -> {};
+    private static final FrameHandler C = (ch, frame) -> {};
+
+    @Test
+    void exactAndMaskedRoutes() {
+        CanIdRouter router = CanIdRouter.EMPTY
+                .subscribe(new CanFilter(0x123), A)
+                .subscribe(new CanFilter(EFF_FLAG | 0x18FEF100), B)
+                .subscribe(new CanFilter(0x100, EFF_FLAG | 0x700), C)
+                .subscribe(new CanFilter(EFF_FLAG | 0x18FEF000, EFF_FLAG | 0x1FFFF000), C);
+
+        assertArrayEquals(new FrameHandler[] { A, C }, router.route(0x123));
+        assertArrayEquals(new FrameHandler[] { C }, router.route(0x1FF));
+        assertArrayEquals(new FrameHandler[0], router.route(0x200));
+        assertArrayEquals(new FrameHandler[] { B, C }, router.route(EFF_FLAG | 0x18FEF100));
+        assertArrayEquals(new FrameHandler[] { C }, router.route(EFF_FLAG | 0x18FEF1AB));
+        assertArrayEquals(new FrameHandler[0], router.route(EFF_FLAG | 0x18FEE100));
+        assertEquals(4, router.getFilters().length);
+    }
+
+    @Test
+    void handlersAreCalledOnce() {
+        CanIdRouter router = CanIdRouter.EMPTY
+                .subscribe(new CanFilter(0x123), A)
+                .subscribe(new CanFilter(0x120, 0x7F0), A)
+                .subscribe(new CanFilter(INVERTED_BIT | 0x7FF, 0x7FF), A);
+
+        assertArrayEquals(new FrameHandler[] { A }, router.route(0x123));
+        assertArrayEquals(new FrameHandler[] { A }, router.route(EFF_FLAG | 0x1234567));
+        assertArrayEquals(new FrameHandler[0], router.route(0x7FF));
+    }
+
+    @Test
+    void manyExtendedIds() {
+        CanIdRouter router = CanIdRouter.EMPTY;
+        for (int i = 0; i < 1000; i++) {
+            router = router.subscribe(new CanFilter(EFF_FLAG | (0x10000 + i)), i % 2 == 0 ? A : B);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertArrayEquals(new FrameHandler[] { i % 2 == 0 ? A : B }, router.route(EFF_FLAG | (0x10000 + i)));
+        }
+        assertArrayEquals(new FrameHandler[0], router.route(0x10000 + 1));
+    }
+
+    @Test
+    void unsubscribe() {
+        CanFilter filter = new CanFilter(0x123);
+        CanIdRouter router = CanIdRouter.EMPTY.subscribe(filter, A);
+
+        assertSame(router, router.subscribe(filter, A));
+        assertSame(router, router.unsubscribe(filter, B));
+        assertSame(CanIdRouter.EMPTY, router.unsubscribe(filter, A));
+        assertTrue(CanIdRouter.EMPTY.isEmpty());
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.util;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.CanFilter;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.platform.linux.epoll.EPollSelector;
+import tel.schich.javacan.test.CanTestHelper;
+import tel.schich.javacan.util.FrameBatch;
+import tel.schich.javacan.util.FrameBatchPublisher;
+import tel.schich.javacan.util.FrameFlow;
+import tel.schich.javacan.util.FramePublisher;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.CanSocketOptions.FILTER;
+
+class FramePublisherTest {
+
+    private static final ThreadFactory FACTORY = r -> {
+        Thread t = new Thread(r);
+        t.setName("frame-publisher-test" + Math.random());
+        return t;
+    };
+
+    private static RawCanChannel channel(int id) throws Exception {
+        RawCanChannel ch = CanChannels.newRawChannel(CanTestHelper.CAN_INTERFACE);
+        ch.setOption(FILTER, new CanFilter[]{ new CanFilter(id) });
+        return ch;
+    }
+
+    @Test
+    void testDemandDrivenReading() throws Exception {
+        final int id = 0x7E8;
+        BlockingQueue<CanFrame> received = new LinkedBlockingQueue<>();
+        CompletableFuture<FrameFlow.Subscription> subscription = new CompletableFuture<>();
+
+        try (FramePublisher publisher = new FramePublisher(FACTORY, EPollSelector.open(), channel(id))) {
+            publisher.subscribe(new FrameFlow.Subscriber<CanFrame>() {
+                @Override
+                public void onSubscribe(FrameFlow.Subscription s) {
+                    subscription.complete(s);
+                }
+
+                @Override
+                public void onNext(CanFrame item) {
+                    received.add(item.copy());
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    fail(throwable.getMessage());
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+
+            subscription.get(1, SECONDS).request(2);
+            for (int i = 0; i < 5; i++) {
+                CanTestHelper.sendFrameViaUtils(CanTestHelper.CAN_INTERFACE, CanFrame.create(id, CanFrame.FD_NO_FLAGS, new byte[]{(byte) i}));
+            }
+
+            assertNotNull(received.poll(2, SECONDS));
+            assertNotNull(received.poll(2, SECONDS));
+            assertNull(received.poll(200, MILLISECONDS), "No frames should be read without demand!");
+            assertEquals(0, publisher.getDemand());
+
+            subscription.get().request(3);
+            for (int i = 2; i < 5; i++) {
+                CanFrame frame = received.poll(2, SECONDS);
+                assertNotNull(frame, "The frames should have been kept by the kernel!");
+                assertEquals(i, frame.getBuffer().get(frame.getBase() + CanFrame.HEADER_LENGTH));
+            }
+        }
+    }
+
+    @Test
+    void testBatches() throws Exception {
+        final int id = 0x7E9;
+        CompletableFuture<Integer> received = new CompletableFuture<>();
+
+        try (FrameBatchPublisher publisher = new FrameBatchPublisher(FACTORY, EPollSelector.open(), Duration.ofSeconds(1), channel(id), RawCanChannel.MTU, 8)) {
+            publisher.subscribe(new FrameFlow.Subscriber<FrameBatch>() {
+                @Override
+                public void onSubscribe(FrameFlow.Subscription s) {
+                    s.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(FrameBatch item) {
+                    received.complete(item.size());
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    received.completeExceptionally(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+
+            CanTestHelper.sendFrameViaUtils(CanTestHelper.CAN_INTERFACE, CanFrame.create(id, CanFrame.FD_NO_FLAGS, new byte[]{1}));
+            assertTrue(received.get(2, SECONDS) >= 1);
+        }
+    }
+
+    @Test
+    void testInvalidRequestIsSignalledByThePollingThread() throws Exception {
+        final int id = 0x7EA;
+        CompletableFuture<FrameFlow.Subscription> subscription = new CompletableFuture<>();
+        CompletableFuture<Thread> pollingThread = new CompletableFuture<>();
+        CompletableFuture<Throwable> error = new CompletableFuture<>();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean inNext = new AtomicBoolean();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        AtomicInteger received = new AtomicInteger();
+
+        try (FramePublisher publisher = new FramePublisher(FACTORY, EPollSelector.open(), channel(id))) {
+            publisher.subscribe(new FrameFlow.Subscriber<CanFrame>() {
+                @Override
+                public void onSubscribe(FrameFlow.Subscription s) {
+                    subscription.complete(s);
+                }
+
+                @Override
+                public void onNext(CanFrame item) {
+                    inNext.set(true);
+                    received.incrementAndGet();
+                    pollingThread.complete(Thread.currentThread());
+                    try {
+                        release.await(2, SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    inNext.set(false);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    overlapped.compareAndSet(false, inNext.get());
+                    if (Thread.currentThread() != pollingThread.getNow(null)) {
+                        error.completeExceptionally(new AssertionError("onError must be signalled by the polling thread!"));
+                    }
+                    error.complete(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+
+            subscription.get(1, SECONDS).request(10);
+            for (int i = 0; i < 3; i++) {
+                CanTestHelper.sendFrameViaUtils(CanTestHelper.CAN_INTERFACE, CanFrame.create(id, CanFrame.FD_NO_FLAGS, new byte[]{(byte) i}));
+            }
+            pollingThread.get(2, SECONDS);
+
+            // the invalid request happens while the polling thread is still inside onNext
+            subscription.get().request(0);
+            assertFalse(error.isDone(), "The error must not be signalled concurrently to onNext!");
+            release.countDown();
+
+            assertInstanceOf(IllegalArgumentException.class, error.get(2, SECONDS));
+            assertFalse(overlapped.get(), "The error must not be signalled concurrently to onNext!");
+            assertEquals(1, received.get(), "No items should be published after the error!");
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.util;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.ImmutableJ1939Address;
+import tel.schich.javacan.J1939CanChannel;
+import tel.schich.javacan.platform.linux.epoll.EPollSelector;
+import tel.schich.javacan.util.J1939Listener;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.TestHelper.directBufferOf;
+import static tel.schich.javacan.test.CanTestHelper.CAN_INTERFACE;
+
+class J1939ListenerTest {
+
+    private static final ThreadFactory FACTORY = r -> {
+        Thread t = new Thread(r);
+        t.setName("j1939-listener-test-" + t.getName());
+        return t;
+    };
+
+    @Test
+    void testDispatchByPgn() throws Exception {
+        final int subscribedPgn = 0x1200;
+        final int otherPgn = 0xFEF1;
+        final byte receiverAddr = (byte) 0x30;
+        ImmutableJ1939Address receiver = new ImmutableJ1939Address(CAN_INTERFACE, ImmutableJ1939Address.NO_NAME, ImmutableJ1939Address.NO_PGN, receiverAddr);
+        ImmutableJ1939Address subscribedSource = new ImmutableJ1939Address(CAN_INTERFACE, ImmutableJ1939Address.NO_NAME, subscribedPgn, (byte) 0x20);
+        ImmutableJ1939Address otherSource = new ImmutableJ1939Address(CAN_INTERFACE, ImmutableJ1939Address.NO_NAME, otherPgn, (byte) 0x21);
+
+        CompletableFuture<Integer> subscribed = new CompletableFuture<>();
+        CompletableFuture<Integer> fallback = new CompletableFuture<>();
+
+        try (J1939Listener listener = new J1939Listener(FACTORY, EPollSelector.open(), Duration.ofSeconds(1))) {
+            // the destination address is part of PDU1 PGNs and must be ignored
+            listener.subscribe(subscribedPgn | receiverAddr, (ch, buffer, header) ->
+                    subscribed.complete(header.getSourceAddressBuffer().getParameterGroupNumber()));
+            assertNotNull(listener.getSubscription(subscribedPgn));
+
+            try (J1939CanChannel a = CanChannels.newJ1939Channel();
+                 J1939CanChannel b = CanChannels.newJ1939Channel();
+                 J1939CanChannel c = CanChannels.newJ1939Channel()) {
+                c.bind(receiver);
+                listener.addChannel(c, (ch, buffer, header) -> fallback.complete(buffer.remaining()));
+
+                a.bind(subscribedSource);
+                a.connect(receiver);
+                b.bind(otherSource);
+                b.connect(receiver);
+
+                assertEquals(2, a.send(directBufferOf(new byte[]{0x20, 0x33})));
+                assertEquals(subscribedPgn, subscribed.get(2, SECONDS) & ~0xFF);
+
+                ByteBuffer message = directBufferOf(new byte[]{1, 2, 3});
+                assertEquals(3, b.send(message));
+                assertEquals(3, (int) fallback.get(2, SECONDS));
+
+                listener.removeChannel(c);
+            }
+        }
+    }
+
+    @Test
+    void testDrainEdgeTriggered() throws Exception {
+        final int messageCount = 10;
+        ImmutableJ1939Address receiver = new ImmutableJ1939Address(CAN_INTERFACE, ImmutableJ1939Address.NO_NAME, ImmutableJ1939Address.NO_PGN, (byte) 0x32);
+        ImmutableJ1939Address source = new ImmutableJ1939Address(CAN_INTERFACE, ImmutableJ1939Address.NO_NAME, 0xFEF2, (byte) 0x22);
+        CountDownLatch latch = new CountDownLatch(messageCount);
+
+        try (J1939Listener listener = new J1939Listener(FACTORY, EPollSelector.open(10, true), Duration.ofSeconds(1))) {
+            listener.setReadBudget(3);
+            assertThrows(IllegalArgumentException.class, () -> listener.setReadBudget(0));
+            assertEquals(3, listener.getReadBudget());
+
+            try (J1939CanChannel sender = CanChannels.newJ1939Channel();
+                 J1939CanChannel ch = CanChannels.newJ1939Channel()) {
+                ch.bind(receiver);
+                listener.addChannel(ch, (c, buffer, header) -> latch.countDown());
+
+                sender.bind(source);
+                sender.connect(receiver);
+                for (int i = 0; i < messageCount; i++) {
+                    assertEquals(1, sender.send(directBufferOf(new byte[]{(byte) i})));
+                }
+
+                assertTrue(latch.await(2, SECONDS), "All messages should have been received!");
+                listener.removeChannel(ch);
+            }
+        }
+    }
+}
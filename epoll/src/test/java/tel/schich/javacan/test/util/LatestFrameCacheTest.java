@@ -0,0 +1,73 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.util;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.util.LatestFrameCache;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.CanFrame.FD_NO_FLAGS;
+import static tel.schich.javacan.CanId.EFF_FLAG;
+
+class LatestFrameCacheTest {
+
+    @Test
+    void keepsLatestValuePerId() {
+        LatestFrameCache cache = new LatestFrameCache(2);
+        ByteBuffer record = JavaCAN.allocateOrdered(LatestFrameCache.RECORD_SIZE);
+
+        assertFalse(cache.read(0x123, record));
+        assertEquals(0, cache.getUpdateCount(0x123));
+
+        assertTrue(cache.update(CanFrame.create(0x123, FD_NO_FLAGS, new byte[]{1}), 1000));
+        assertTrue(cache.update(CanFrame.create(0x123, FD_NO_FLAGS, new byte[]{1}), 2000));
+        assertTrue(cache.update(CanFrame.create(0x123, FD_NO_FLAGS, new byte[]{2}), 3000));
+        assertTrue(cache.update(CanFrame.create(0x123, FD_NO_FLAGS, new byte[]{2}), 4000));
+
+        assertEquals(4, cache.getUpdateCount(0x123));
+        assertEquals(4000, cache.getTimestamp(0x123));
+        assertEquals(3000, cache.getLastChange(0x123));
+        assertTrue(cache.read(0x123, record));
+        CanFrame frame = LatestFrameCache.getFrame(record);
+        assertEquals(0x123, frame.getId());
+        assertEquals(2, frame.getBuffer().get(frame.getBase() + CanFrame.HEADER_LENGTH));
+
+        // extended IDs are distinct from standard IDs with the same value
+        assertTrue(cache.update(CanFrame.createExtended(0x123, FD_NO_FLAGS, new byte[20]), 5000));
+        assertEquals(4, cache.getUpdateCount(0x123));
+        assertEquals(1, cache.getUpdateCount(EFF_FLAG | 0x123));
+        assertTrue(cache.read(EFF_FLAG | 0x123, record));
+        frame = LatestFrameCache.getFrame(record);
+        assertTrue(frame.isExtended());
+        assertEquals(20, frame.getDataLength());
+
+        assertTrue(cache.update(CanFrame.createExtended(0x18FEF100, FD_NO_FLAGS, new byte[8]), 6000));
+        assertFalse(cache.update(CanFrame.createExtended(0x18FEF200, FD_NO_FLAGS, new byte[8]), 7000));
+        assertEquals(1, cache.getRejectedCount());
+        assertEquals(0, cache.getUpdateCount(EFF_FLAG | 0x18FEF200));
+    }
+}
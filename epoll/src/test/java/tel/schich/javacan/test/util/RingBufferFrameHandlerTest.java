@@ -0,0 +1,110 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.util;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.util.RingBufferFrameHandler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferFrameHandlerTest {
+
+    private static final ThreadFactory FACTORY = r -> {
+        Thread t = new Thread(r);
+        t.setName("ring-buffer-test" + Math.random());
+        return t;
+    };
+
+    private static CanFrame frame(int id, int counter) {
+        return CanFrame.create(id, CanFrame.FD_NO_FLAGS, new byte[]{(byte) (counter >>> 8), (byte) counter});
+    }
+
+    private static int counter(CanFrame frame) {
+        int base = frame.getBase() + CanFrame.HEADER_LENGTH;
+        return ((frame.getBuffer().get(base) & 0xFF) << 8) | (frame.getBuffer().get(base + 1) & 0xFF);
+    }
+
+    @Test
+    void testPerIdOrdering() throws Exception {
+        final int ids = 8;
+        final int framesPerId = 2000;
+        final CountDownLatch done = new CountDownLatch(ids * framesPerId);
+        final Map<Integer, Integer> lastCounters = new ConcurrentHashMap<>();
+        final Map<Integer, Thread> threads = new ConcurrentHashMap<>();
+        final AtomicInteger outOfOrder = new AtomicInteger();
+
+        try (RingBufferFrameHandler handler = new RingBufferFrameHandler((ch, frame) -> {
+            int id = frame.getId();
+            int counter = counter(frame);
+            Integer last = lastCounters.put(id, counter);
+            Thread previous = threads.putIfAbsent(id, Thread.currentThread());
+            if ((last != null && last + 1 != counter) || (previous != null && previous != Thread.currentThread())) {
+                outOfOrder.incrementAndGet();
+            }
+            done.countDown();
+        }, 64, 4, RingBufferFrameHandler.Ordering.PER_ID, RingBufferFrameHandler.Overflow.BLOCK, FACTORY)) {
+            for (int i = 0; i < framesPerId; i++) {
+                for (int id = 0; id < ids; id++) {
+                    handler.handle(null, frame(0x100 + id, i));
+                }
+            }
+            assertTrue(done.await(10, SECONDS), "All frames should have been handled!");
+            assertEquals(0, outOfOrder.get());
+            assertEquals(0, handler.getDroppedCount());
+        }
+    }
+
+    @Test
+    void testDropWhenFull() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger handled = new AtomicInteger();
+
+        try (RingBufferFrameHandler handler = new RingBufferFrameHandler((ch, frame) -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.incrementAndGet();
+        }, 4, 1, RingBufferFrameHandler.Ordering.NONE, RingBufferFrameHandler.Overflow.DROP, FACTORY)) {
+            handler.handle(null, frame(0x123, 0));
+            assertTrue(blocked.await(1, SECONDS));
+            for (int i = 1; i < 8; i++) {
+                handler.handle(null, frame(0x123, i));
+            }
+            assertEquals(4, handler.getDroppedCount());
+            release.countDown();
+        }
+        assertTrue(handled.get() <= 4);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.util;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanFilter;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.NetworkDevice;
+import tel.schich.javacan.test.CanTestHelper;
+import tel.schich.javacan.util.ShardAssignmentStrategy;
+import tel.schich.javacan.util.ShardedCanBroker;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedCanBrokerTest {
+
+    private static final ThreadFactory FACTORY = r -> {
+        Thread t = new Thread(r);
+        t.setName("sharded-can-broker-test" + Math.random());
+        return t;
+    };
+
+    @Test
+    void testStrategies() {
+        ShardAssignmentStrategy roundRobin = ShardAssignmentStrategy.roundRobin();
+        int[] counts = {0, 0, 0};
+        assertEquals(0, roundRobin.assign(CanTestHelper.CAN_INTERFACE, counts));
+        assertEquals(1, roundRobin.assign(CanTestHelper.CAN_INTERFACE, counts));
+        assertEquals(2, roundRobin.assign(CanTestHelper.CAN_INTERFACE, counts));
+        assertEquals(0, roundRobin.assign(CanTestHelper.CAN_INTERFACE, counts));
+
+        ShardAssignmentStrategy leastLoaded = ShardAssignmentStrategy.leastLoaded();
+        assertEquals(0, leastLoaded.assign(CanTestHelper.CAN_INTERFACE, new int[]{0, 0, 0}));
+        assertEquals(2, leastLoaded.assign(CanTestHelper.CAN_INTERFACE, new int[]{2, 1, 0}));
+        assertEquals(1, leastLoaded.assign(CanTestHelper.CAN_INTERFACE, new int[]{1, 0, 1}));
+
+        ShardAssignmentStrategy pinned = ShardAssignmentStrategy.pinned(Collections.singletonMap(CanTestHelper.CAN_INTERFACE, 2), leastLoaded);
+        assertEquals(2, pinned.assign(CanTestHelper.CAN_INTERFACE, new int[]{0, 0, 5}));
+    }
+
+    @Test
+    void testExternal() throws Exception {
+        final int id = 0x7E3;
+        final NetworkDevice device = CanTestHelper.CAN_INTERFACE;
+        CanFrame expected = CanFrame.create(id, CanFrame.FD_NO_FLAGS, new byte[]{1, 2, 3});
+        CompletableFuture<CanFrame> f = new CompletableFuture<>();
+
+        try (ShardedCanBroker can = new ShardedCanBroker(FACTORY, 2)) {
+            can.addFilter(new CanFilter(id));
+            can.addDevice(device, (ch, frame) -> f.complete(frame.copy()), 1);
+            assertEquals(1, can.getShard(device));
+
+            CanTestHelper.sendFrameViaUtils(device, expected);
+
+            CanFrame actual = f.get(2, SECONDS);
+            assertEquals(expected, actual, "What goes in should come out!");
+
+            can.removeDevice(device);
+            assertTrue(can.isEmpty());
+            assertEquals(-1, can.getShard(device));
+        }
+    }
+}